@@ -0,0 +1,136 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Adaptive Replacement Cache (Megiddo and Modha).  Resident pages are split between T1,
+ * pages pinned once since they were read, and T2, pages pinned again while resident.  Ids of
+ * pages evicted from each are remembered on ghost lists B1 and B2.  A miss on a B1 ghost
+ * means T1 was too small and grows its target size p; a miss on a B2 ghost shrinks it.  The
+ * victim comes from T1 while T1 is above target, otherwise from T2.
+ * <p>
+ * The buffer manager evicts before it reads the missing page, so the target is adjusted
+ * after the victim is chosen rather than before, as in the paper.
+ * <p>
+ * Only a new reference moves a page from T1 to T2: a pin of a page that had been unpinned,
+ * with some other page used in between.  Repeated pins by one access, such as an insert
+ * that pins a page to check for room and again to add the tuple, are correlated and leave
+ * the page in T1, so one pass over a table cannot fill T2.  Pinned and dirty frames are kept
+ * out of the way of victim selection (see {@link EvictableFrames}).
+ */
+public class ARCPolicy implements ReplacementPolicy {
+
+    private final EvictableFrames t1 = new EvictableFrames(false);
+    private final EvictableFrames t2 = new EvictableFrames(false);
+    private final LinkedHashSet<PageId> b1 = new LinkedHashSet<PageId>();
+    private final LinkedHashSet<PageId> b2 = new LinkedHashSet<PageId>();
+    private int capacity;
+    private int p = 0;   // target size of t1
+
+    /**
+     * @param capacity number of frames in the buffer pool
+     */
+    public ARCPolicy(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public void capacityChanged(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        p = Math.min(p, this.capacity);
+        trimGhosts();
+    }
+
+    @Override
+    public void frameLoaded(Frame frame) {
+        PageId pid = frame.page.getId();
+        if (b1.remove(pid)) {
+            p = Math.min(capacity, p + Math.max(b2.size() / Math.max(1, b1.size()), 1));
+            t2.add(frame);
+        } else if (b2.remove(pid)) {
+            p = Math.max(0, p - Math.max(b1.size() / Math.max(1, b2.size()), 1));
+            t2.add(frame);
+        } else {
+            t1.add(frame);
+        }
+        trimGhosts();
+    }
+
+    @Override
+    public void framePinned(Frame frame) {
+        boolean newReference = (t1.isUnpinned(frame) || t2.isUnpinned(frame))
+                && frame.lastUsed - frame.unpinnedAt > 1;
+        if (newReference && t1.contains(frame)) {
+            t2.add(frame);   // a new reference makes the page frequent
+        } else {
+            t1.pinned(frame);
+            t2.pinned(frame);
+        }
+    }
+
+    @Override
+    public void frameUnpinned(Frame frame) {
+        t1.unpinned(frame);
+        t2.unpinned(frame);
+    }
+
+    @Override
+    public void frameRemoved(Frame frame) {
+        if (t1.remove(frame)) {
+            b1.add(frame.page.getId());
+        } else if (t2.remove(frame)) {
+            b2.add(frame.page.getId());
+        }
+        trimGhosts();
+    }
+
+    @Override
+    public void frameCleaned(Frame frame) {
+        t1.cleaned(frame);
+        t2.cleaned(frame);
+    }
+
+    @Override
+    public Frame chooseVictim(boolean allowDirty) {
+        EvictableFrames first = t1.size() > 0 && (t1.size() > p || t2.size() == 0) ? t1 : t2;
+        EvictableFrames second = first == t1 ? t2 : t1;
+        Frame victim = first.chooseVictim(allowDirty);
+        return victim != null ? victim : second.chooseVictim(allowDirty);
+    }
+
+    /**
+     * Keeps |T1| + |B1| and the total directory size within the bounds ARC requires.
+     */
+    private void trimGhosts() {
+        while (t1.size() + b1.size() > capacity && !b1.isEmpty()) {
+            removeOldest(b1);
+        }
+        while (t1.size() + t2.size() + b1.size() + b2.size() > 2 * capacity && !b2.isEmpty()) {
+            removeOldest(b2);
+        }
+    }
+
+    private static void removeOldest(LinkedHashSet<PageId> ghosts) {
+        Iterator<PageId> oldest = ghosts.iterator();
+        oldest.next();
+        oldest.remove();
+    }
+}
@@ -0,0 +1,71 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A hint passed to {@link BufferManager#pinPage(colgatedb.page.PageId, colgatedb.page.PageMaker, AccessStrategy)}
+ * describing how the caller will use the pages it pins.
+ * <p>
+ * {@link #NORMAL} pins pages the usual way.  A bulk-read strategy, meant for a sequential
+ * scan of a large table, gives the scan a small private ring of frames: once the scan has
+ * filled its ring, each page it reads replaces the one read a ring's length earlier, if that
+ * page is still there and unused.  Pages read this way are kept out of the replacement
+ * policy, so a scan reuses a handful of frames instead of flushing the whole pool.  A page
+ * read by the scan that someone else then pins joins the pool normally.
+ * <p>
+ * A bulk-read strategy holds per-scan state and must not be shared between scans.
+ */
+public class AccessStrategy {
+
+    public static final AccessStrategy NORMAL = new AccessStrategy(0);
+
+    private final Frame[] ring;
+    private int next = 0;
+
+    private AccessStrategy(int ringSize) {
+        this.ring = new Frame[ringSize];
+    }
+
+    /**
+     * @param ringSize number of frames the scan may occupy once the pool is full
+     * @return a new strategy for one sequential scan
+     */
+    public static AccessStrategy bulkRead(int ringSize) {
+        if (ringSize < 1) {
+            throw new IllegalArgumentException("ring size must be positive: " + ringSize);
+        }
+        return new AccessStrategy(ringSize);
+    }
+
+    public boolean isRing() {
+        return ring.length > 0;
+    }
+
+    /**
+     * @return the frame read a ring's length ago, or null while the ring is filling
+     */
+    Frame current() {
+        return ring[next];
+    }
+
+    /**
+     * Records the frame just read into the current slot and moves on to the next.
+     */
+    void advance(Frame frame) {
+        ring[next] = frame;
+        next = (next + 1) % ring.length;
+    }
+}
@@ -29,6 +29,27 @@ public interface BufferManager {
      */
     Page pinPage(PageId pid, PageMaker pageMaker);
 
+    /**
+     * Like {@link #pinPage(PageId, PageMaker)}, with a hint about how the caller uses the
+     * pages it pins.  A buffer manager may ignore the hint.
+     *
+     * @param pid pid of desired page
+     * @param pageMaker used to create Page object if it must be read from disk
+     * @param strategy how the page will be used, e.g. one of many read by a sequential scan
+     * @return Page object
+     */
+    default Page pinPage(PageId pid, PageMaker pageMaker, AccessStrategy strategy) {
+        return pinPage(pid, pageMaker);
+    }
+
+    /**
+     * @param tablePages number of pages in the table about to be scanned
+     * @return the strategy a sequential scan of the table should pass to pinPage
+     */
+    default AccessStrategy scanStrategy(int tablePages) {
+        return AccessStrategy.NORMAL;
+    }
+
     /**
      * Decrements pin count on page and updates its dirty status.
      * @param pid pid of page to unpin
@@ -44,7 +65,8 @@ public interface BufferManager {
     void flushPage(PageId pid);
 
     /**
-     * Flush all pages to disk.  Pages should only be flushed if they are dirty.
+     * Flush all pages to disk.  Pages should only be flushed if they are dirty.  If the disk
+     * manager's {@link Durability} calls for it, the written files are then forced.
      */
     void flushAllPages();
 
@@ -111,4 +133,29 @@ public interface BufferManager {
      */
     void discardPage(PageId pid);
 
+    /**
+     * Hints that the given page will be pinned soon.  The buffer manager may read it into
+     * the pool in the background, unpinned, so that the later pin finds it there.  The hint
+     * may be ignored, and it never delays other calls.
+     * @param pid pid of the page
+     * @param pageMaker used to create Page object if it must be read from disk
+     */
+    default void prefetch(PageId pid, PageMaker pageMaker) {
+    }
+
+    /**
+     * Stops any background work started by this buffer manager.  Called when the buffer
+     * manager is being replaced; pages are not flushed.
+     */
+    default void shutdown() {
+    }
+
+    /**
+     * Change the number of pages the buffer pool may hold, without dropping the pages it
+     * holds.  Safe to call while other threads are using the pool.
+     * @param numPages the new maximum size of the buffer pool
+     * @throws BufferManagerException if the pool cannot take on the new size
+     */
+    void resize(int numPages);
+
 }
@@ -1,13 +1,31 @@
 package colgatedb;
 
+import colgatedb.logging.LogFile;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ColgateDB
@@ -25,11 +43,57 @@ import java.util.Map;
  */
 public class BufferManagerImpl implements BufferManager {
 
-    private boolean allowEvictDirty = false;  // a flag indicating whether a dirty page is candidate for eviction
-    private int numPages;
-    private DiskManager dm;
-    private HashMap<PageId, Frame> cache = new HashMap<PageId, Frame>();
-    private int LRUcount;
+    public static final int DEFAULT_READAHEAD_TRIGGER = 4;
+    public static final int DEFAULT_READAHEAD_PAGES = 16;
+    public static final int PREFETCH_THREADS = 2;
+    public static final int PREFETCH_QUEUE_SIZE = 64;
+    public static final int SCAN_RING_FRACTION = 4;   // scans of tables over 1/4 of the pool use a ring
+    public static final int MAX_SCAN_RING_SIZE = 16;
+    public static final int WRITER_ROUND_MILLIS = 100;
+    public static final int MAX_WRITE_RUN = 64;       // most pages flushAllPages writes in one request
+    private static final int EVENT_DRAIN_THRESHOLD = 128;
+    private static final Comparator<Frame> PAGE_ORDER = new Comparator<Frame>() {   // by table, then page number
+        @Override
+        public int compare(Frame a, Frame b) {
+            int cmp = Integer.compare(a.pid.getTableId(), b.pid.getTableId());
+            return cmp != 0 ? cmp : Integer.compare(a.pid.pageNumber(), b.pid.pageNumber());
+        }
+    };
+
+    private volatile boolean allowEvictDirty = false;  // a flag indicating whether a dirty page is candidate for eviction
+    private volatile int numPages;
+    private final DiskManager dm;
+    private final ConcurrentHashMap<PageId, Frame> cache = new ConcurrentHashMap<PageId, Frame>();
+    private volatile int readaheadTrigger = DEFAULT_READAHEAD_TRIGGER;
+    private volatile int readaheadPages = DEFAULT_READAHEAD_PAGES;
+    private final Map<Integer, ScanRun> scanRuns = new ConcurrentHashMap<Integer, ScanRun>();  // tableid -> current run
+    private final Map<PageId, Object> inFlight = new HashMap<PageId, Object>();     // pid -> token of prefetch reading it
+    private int outstandingPrefetches = 0;
+    private final ThreadPoolExecutor prefetcher;
+    private final BufferManagerStats stats = new BufferManagerStats();
+    private final BufferPartition defaultPartition;
+    private final Map<String, BufferPartition> partitions = new LinkedHashMap<String, BufferPartition>();  // guarded by this
+    private final Map<Integer, BufferPartition> tablePartitions = new ConcurrentHashMap<Integer, BufferPartition>();
+    private final FrameList prefetchedFrames = new FrameList();   // prefetched, not yet pinned; oldest first
+    private final FrameList ringFrames = new FrameList();         // read through a bulk-read ring; oldest first
+    private final Queue<FrameEvent> events = new ConcurrentLinkedQueue<FrameEvent>();  // lock-free pins/unpins
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final Object allocationLock = new Object();
+    private long useClock = 0;       // orders Frame.lastUsed; guarded by this
+    private final PageArena arena;   // null unless pages are read into off-heap frames
+    private volatile LogFile log;    // forced before the background writer writes pages
+    private BackgroundWriter writer; // null unless started
+    private volatile long frameWaitMillis = 0;    // how long a miss waits for a frame; 0 to fail at once
+    private volatile boolean fairFrameWait = false;
+    private final ArrayDeque<Thread> frameWaiters = new ArrayDeque<Thread>();   // guarded by this; arrival order
+    private volatile int numFrameWaiters = 0;     // frameWaiters.size(), readable without the lock
+    private volatile int pinLimit = 0;            // most pins one thread may hold; 0 for no limit
+    private final ThreadLocal<AtomicInteger> threadPins = new ThreadLocal<AtomicInteger>() {
+        @Override
+        protected AtomicInteger initialValue() {
+            return new AtomicInteger();
+        }
+    };
 
     /**
      * Construct a new buffer manager.
@@ -37,108 +101,1284 @@ public class BufferManagerImpl implements BufferManager {
      * @param dm the disk manager to call to read/write pages
      */
     public BufferManagerImpl(int numPages, DiskManager dm) {
+        this(numPages, dm, new LRUPolicy());
+    }
+
+    /**
+     * Construct a new buffer manager that uses the given replacement policy.
+     * @param numPages maximum size of the buffer pool
+     * @param dm the disk manager to call to read/write pages
+     * @param policy chooses pages to evict; must not be shared with another buffer manager
+     */
+    public BufferManagerImpl(int numPages, DiskManager dm, ReplacementPolicy policy) {
+        this(numPages, dm, policy, null);
+    }
+
+    /**
+     * Construct a new buffer manager whose frames are the slots of an off-heap arena.  A miss
+     * reads the page straight into the frame's slot with {@link DiskManager#readPageInto} and
+     * builds the page over the slot with {@link PageMaker#makePageOver}, so that the page's
+     * bytes live off the heap for as long as the page is in the pool.  A page that leaves the
+     * pool is detached from its slot first, so references to it stay usable.
+     * @param numPages maximum size of the buffer pool
+     * @param dm the disk manager to call to read/write pages
+     * @param policy chooses pages to evict; must not be shared with another buffer manager
+     * @param arena holds the frames; must have a slot for each page of the pool and must not
+     *              be shared with another buffer manager.  If null, pages are read into the heap.
+     */
+    public BufferManagerImpl(int numPages, DiskManager dm, ReplacementPolicy policy, PageArena arena) {
+        if (arena != null && arena.getNumSlots() < numPages) {
+            throw new IllegalArgumentException("arena has " + arena.getNumSlots() + " slots for a pool of " + numPages);
+        }
         this.numPages = numPages;
         this.dm = dm;
-        LRUcount = 0;
+        this.defaultPartition = new BufferPartition("default", 0, Integer.MAX_VALUE, policy);
+        partitions.put(defaultPartition.getName(), defaultPartition);
+        this.arena = arena;
+        prefetcher = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "colgatedb-prefetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        prefetcher.allowCoreThreadTimeOut(true);
     }
 
 
+    /**
+     * Configure what a miss does when every frame is pinned (or dirty, if dirty pages may not
+     * be evicted).  By default it fails at once with a {@link BufferManagerException}; with
+     * a timeout, it waits for a page to be unpinned and fails only when the time is up.
+     * @param timeoutMillis how long to wait for a frame; 0 to fail at once
+     * @param fair whether waiting threads get frames in the order they started waiting.  If
+     *             not, a newly arrived miss may take a frame ahead of threads that waited.
+     */
+    public synchronized void setFrameWait(long timeoutMillis, boolean fair) {
+        this.frameWaitMillis = Math.max(0, timeoutMillis);
+        this.fairFrameWait = fair;
+        notifyAll();
+    }
+
+    /**
+     * Limit how many pins one thread may hold at once, so that a single runaway query
+     * cannot pin the whole pool.  A pin beyond the limit fails with a
+     * {@link BufferManagerException} rather than waiting, since only the thread itself
+     * could release its pins.  The BufferManager API does not carry transaction ids, so
+     * the limit applies per thread, which is per transaction when each runs on its own
+     * thread.  A pin is charged to the thread that took it even if another thread unpins
+     * the page.  Set the limit before pinning: pins taken before it was set are not counted.
+     * @param maxPins most pins one thread may hold; 0 for no limit
+     */
+    public void setPinLimit(int maxPins) {
+        this.pinLimit = Math.max(0, maxPins);
+    }
+
+    /**
+     * Configure sequential readahead.  When a table's pages are pinned in page number order
+     * (as HeapFile's iterator does), a pin that extends a run of at least triggerRun
+     * consecutive pins has the prefetcher read the next windowPages pages with one
+     * {@link DiskManager#readPages} call.  The window is topped up once the scan has
+     * consumed half of it.
+     * @param triggerRun number of consecutive pins that marks a scan as sequential
+     * @param windowPages number of pages kept read ahead of the scan (values below 1 disable readahead)
+     */
+    public void setReadahead(int triggerRun, int windowPages) {
+        this.readaheadTrigger = triggerRun;
+        this.readaheadPages = windowPages;
+    }
+
+    /**
+     * @return the counters kept by this buffer manager
+     */
+    public BufferManagerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the maximum number of pages in the pool
+     */
+    public int getNumPages() {
+        return numPages;
+    }
+
+    /**
+     * Growing takes effect at once.  Shrinking evicts unpinned pages right away (dirty ones
+     * only if {@link #evictDirty(boolean)} allows it); the rest of the excess goes as pages
+     * are unpinned, since a miss in a pool over its size evicts until there is room.  With
+     * an off-heap arena, pages beyond the arena's size are read into the heap.
+     */
     @Override
-    public synchronized Page pinPage(PageId pid, PageMaker pageMaker) {
-        Page page;
+    public synchronized void resize(int numPages) {
+        if (numPages < 1) {
+            throw new BufferManagerException("buffer pool must hold at least one page");
+        }
+        this.numPages = numPages;
+        for (BufferPartition partition : partitions.values()) {
+            partition.policy.capacityChanged(Math.min(numPages, partition.getMaxPages()));
+        }
+        drainEvents();
+        while (cache.size() > numPages) {
+            Frame victim = claimVictim(true, null);
+            if (victim == null) {
+                break;
+            }
+            evictFrame(victim);
+        }
+        notifyAll();   // a larger pool may have room for waiting misses
+    }
+
+    /**
+     * Carve a partition out of the pool (see {@link BufferPartition}).  Tables are placed in
+     * it with {@link #assignTable}.
+     * @param minPages pages the partition keeps while others have pages to give; the
+     *                 minimums of all partitions must fit in the pool
+     * @param maxPages most pages the partition may hold
+     * @param policy chooses among the partition's pages; must not be shared
+     */
+    public synchronized BufferPartition addPartition(String name, int minPages, int maxPages,
+                                                     ReplacementPolicy policy) {
+        if (partitions.containsKey(name)) {
+            throw new BufferManagerException("partition " + name + " already exists");
+        }
+        int reserved = minPages;
+        for (BufferPartition partition : partitions.values()) {
+            reserved += partition.getMinPages();
+        }
+        if (minPages < 0 || maxPages < Math.max(1, minPages) || reserved > numPages) {
+            throw new BufferManagerException("invalid quotas for partition " + name + ": min=" + minPages +
+                    " max=" + maxPages + " with " + (reserved - minPages) + " of " + numPages + " pages reserved");
+        }
+        BufferPartition partition = new BufferPartition(name, minPages, maxPages, policy);
+        partitions.put(name, partition);
+        return partition;
+    }
+
+    /**
+     * Place a table's pages in the named partition.  Pages of the table already in the pool
+     * stay where they are until they are evicted.
+     */
+    public synchronized void assignTable(int tableid, String partitionName) {
+        BufferPartition partition = partitions.get(partitionName);
+        if (partition == null) {
+            throw new BufferManagerException("no partition named " + partitionName);
+        }
+        if (partition == defaultPartition) {
+            tablePartitions.remove(tableid);
+        } else {
+            tablePartitions.put(tableid, partition);
+        }
+    }
+
+    /**
+     * @return the partitions, the default one first
+     */
+    public synchronized List<BufferPartition> getPartitions() {
+        return new ArrayList<BufferPartition>(partitions.values());
+    }
+
+    /**
+     * @return the partition that pages of the given table are read into
+     */
+    public BufferPartition getPartition(int tableid) {
+        BufferPartition partition = tablePartitions.get(tableid);
+        return partition != null ? partition : defaultPartition;
+    }
+
+    /**
+     * @return the number of pages in the pool, including those still being read
+     */
+    public int getNumResidentPages() {
+        return cache.size();
+    }
+
+    /**
+     * @return the pages in the pool, most recently used first.  Pages read ahead or through a
+     * bulk-read ring and not used otherwise are left out.
+     */
+    public synchronized List<PageId> residentPages() {
+        drainEvents();
+        List<Frame> frames = new ArrayList<Frame>();
+        for (Frame frame : cache.values()) {
+            if (frame.page != null && !frame.prefetched && frame.ring == null) {
+                frames.add(frame);
+            }
+        }
+        Collections.sort(frames, new Comparator<Frame>() {
+            @Override
+            public int compare(Frame a, Frame b) {
+                return Long.compare(b.lastUsed, a.lastUsed);
+            }
+        });
+        List<PageId> pids = new ArrayList<PageId>(frames.size());
+        for (Frame frame : frames) {
+            pids.add(frame.pid);
+        }
+        return pids;
+    }
+
+    /**
+     * Set the log to force before the background writer writes dirty pages, so that no page
+     * reaches disk ahead of the log records describing it.
+     */
+    public void setLogFile(LogFile log) {
+        this.log = log;
+    }
+
+    /**
+     * Start a thread that writes dirty, unpinned pages in the background so that misses find
+     * clean pages to evict.  Every {@link #WRITER_ROUND_MILLIS} ms it counts the clean,
+     * unpinned pages and, if there are fewer than cleanTarget, writes the pages that have been
+     * dirty longest, in page number order, up to the rate limit.  The log is forced before each
+     * round's writes.  While the writer runs, evictions prefer clean pages to dirty ones.
+     * <p>
+     * Uncommitted changes must not reach disk unless dirty pages may be evicted, so the
+     * writer only writes while {@link #evictDirty(boolean)} allows it.  A writer already
+     * running is replaced.
+     * @param cleanTarget number of clean, unpinned pages to keep available
+     * @param pagesPerSecond most pages to write per second
+     */
+    public synchronized void startBackgroundWriter(int cleanTarget, int pagesPerSecond) {
+        stopBackgroundWriter();
+        int pagesPerRound = Math.max(1, pagesPerSecond * WRITER_ROUND_MILLIS / 1000);
+        writer = new BackgroundWriter(cleanTarget, pagesPerRound);
+        writer.start();
+    }
+
+    /**
+     * Stop the background writer, if any.  A round under way finishes its current page.
+     */
+    public synchronized void stopBackgroundWriter() {
+        if (writer != null) {
+            writer.running = false;
+            writer.interrupt();
+            writer = null;
+        }
+    }
+
+    /**
+     * One round of the background writer (see {@link #startBackgroundWriter}).  The pool is
+     * locked only while each page is written, so pins and misses proceed between writes.
+     */
+    private void writeRound(int cleanTarget, int pagesPerRound) {
+        List<Frame> dirty = new ArrayList<Frame>();
+        int clean = 0;
+        for (Frame frame : cache.values()) {
+            if (frame.page == null || frame.pinCount.get() != 0) {
+                continue;
+            }
+            if (frame.isDirty) {
+                dirty.add(frame);
+            } else {
+                clean++;
+            }
+        }
+        int wanted = Math.min(pagesPerRound, cleanTarget - clean);
+        if (allowEvictDirty && wanted > 0 && !dirty.isEmpty()) {
+            Collections.sort(dirty, new Comparator<Frame>() {
+                @Override
+                public int compare(Frame a, Frame b) {
+                    return Long.compare(a.dirtiedAt, b.dirtiedAt);
+                }
+            });
+            List<Frame> batch = new ArrayList<Frame>(dirty.subList(0, Math.min(wanted, dirty.size())));
+            Collections.sort(batch, PAGE_ORDER);
+            LogFile log = this.log;
+            if (log != null) {
+                log.force();   // outside the pool's lock: a checkpoint holds the log's lock and flushes the pool
+            }
+            for (Frame frame : batch) {
+                writeBack(frame);
+            }
+        }
+        stats.writerRounds.increment();
+        updateLag();
+    }
+
+    /**
+     * Writes a dirty, unpinned page, claiming the frame so that no one can pin it meanwhile.
+     */
+    private synchronized void writeBack(Frame frame) {
+        if (frame.removed || !frame.isDirty || !frame.pinCount.compareAndSet(0, Frame.CLAIMED)) {
+            return;
+        }
+        try {
+            frame.isDirty = false;
+            try {
+                dm.writePage(frame.page);
+            } catch (RuntimeException e) {
+                frame.isDirty = true;
+                throw e;
+            }
+        } finally {
+            frame.pinCount.set(0);
+        }
+        countWrites(frame);
+        cleaned(frame);
+        stats.writerWrites.increment();
+    }
+
+    private void updateLag() {
+        long now = System.nanoTime();
+        long dirtyPages = 0;
+        long oldest = now;
+        for (Frame frame : cache.values()) {
+            if (frame.isDirty && frame.page != null) {
+                dirtyPages++;
+                oldest = Math.min(oldest, frame.dirtiedAt);
+            }
+        }
+        stats.dirtyPages = dirtyPages;
+        stats.oldestDirtyMillis = TimeUnit.NANOSECONDS.toMillis(now - oldest);
+    }
+
+    /**
+     * @return the off-heap arena holding this pool's frames, or null if pages live on the heap
+     */
+    public PageArena getArena() {
+        return arena;
+    }
+
+    @Override
+    public Page pinPage(PageId pid, PageMaker pageMaker) {
+        return pinPage(pid, pageMaker, AccessStrategy.NORMAL);
+    }
+
+    /**
+     * A hit pins the frame with an atomic increment and does not lock; the replacement
+     * policy learns of it later (see {@link #drainEvents()}).  A miss locks only long enough
+     * to make room and place an empty frame for the page in the page table, then reads the
+     * page without the lock.  Other threads that want the same page pin the empty frame and
+     * wait for that one read.
+     * <p>
+     * With a bulk-read strategy, a miss first tries to free the frame in the strategy's
+     * current ring slot, and the page read is kept on the ring list instead of being
+     * handed to the replacement policy.  Pages on the ring list are evicted before pages
+     * the policy tracks, since a scan is unlikely to come back for them soon.
+     */
+    @Override
+    public Page pinPage(PageId pid, PageMaker pageMaker, AccessStrategy strategy) {
+        AtomicInteger owner = takePinQuota();
+        Frame frame;
+        try {
+            frame = pinFrame(pid, pageMaker, strategy);
+        } catch (RuntimeException e) {
+            if (owner != null) {
+                owner.decrementAndGet();
+            }
+            throw e;
+        }
+        if (owner != null) {
+            frame.pinOwners.add(owner);
+        }
+        return frame.page;
+    }
+
+    private Frame pinFrame(PageId pid, PageMaker pageMaker, AccessStrategy strategy) {
         Frame frame = cache.get(pid);
-        if (frame == null){
-            if (numPages <= cache.size()){
-                evict();
+        int previousPins = Frame.CLAIMED;
+        if (frame != null && frame.page != null && !frame.prefetched
+                && (frame.ring == null || frame.ring == strategy)) {
+            previousPins = frame.tryPin();
+        }
+        if (previousPins != Frame.CLAIMED) {
+            countHit(frame, previousPins);
+            if (frame.ring == null) {
+                queueEvent(frame, false);
             }
-            page = dm.readPage(pid, pageMaker);
-            frame = new Frame(page);
-            cache.put(pid, frame);
+        } else {
+            frame = pinSlow(pid, pageMaker, strategy);
         }
-        else {
-            page = frame.page;
+        recordAccess(pid, pageMaker);
+        return frame;
+    }
+
+    /**
+     * When no frame can be freed, waits up to the frame wait timeout for one to be unpinned,
+     * in arrival order if waiting is fair (see {@link #setFrameWait}).  The page is looked
+     * up again after each wait, since another thread may have read it in the meantime.
+     */
+    private Frame pinSlow(PageId pid, PageMaker pageMaker, AccessStrategy strategy) {
+        Frame frame;
+        boolean mustRead = false;
+        synchronized (this) {
+            long deadline = 0;
+            boolean queued = false;
+            try {
+                while (true) {
+                    drainEvents();
+                    frame = cache.get(pid);
+                    if (frame != null) {
+                        // cannot fail: frames are claimed and removed under this lock
+                        countHit(frame, frame.tryPin());
+                        if (frame.page != null) {
+                            pinned(frame, strategy);
+                        }
+                        break;
+                    }
+                    BufferPartition partition = getPartition(pid.getTableId());
+                    BufferTableStats tableStats = stats.table(pid.getTableId());
+                    if (mayTakeFrame() && makeRoom(strategy, partition)) {
+                        stats.misses.increment();
+                        partition.misses.increment();
+                        tableStats.misses.increment();
+                        inFlight.remove(pid);   // a pending prefetch of this page is superseded, don't wait for it
+                        frame = new Frame(pid, null);
+                        frame.pinCount.set(1);
+                        stats.pinnedFrames.increment();
+                        stats.samplePinnedFrames();
+                        frame.tableStats = tableStats;
+                        addToPartition(frame, partition);
+                        if (arena != null) {
+                            frame.slot = arena.allocate();
+                        }
+                        cache.put(pid, frame);
+                        mustRead = true;
+                        break;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (!queued && frameWaitMillis > 0) {
+                        deadline = now + frameWaitMillis;
+                        frameWaiters.addLast(Thread.currentThread());
+                        numFrameWaiters = frameWaiters.size();
+                        queued = true;
+                    }
+                    if (now >= deadline) {
+                        stats.misses.increment();
+                        partition.misses.increment();
+                        tableStats.misses.increment();
+                        stats.samplePinnedFrames();
+                        stats.noVictimFailures.increment();
+                        tableStats.noVictimFailures.increment();
+                        throw new BufferManagerException(queued ? "timed out waiting for a free frame"
+                                : "there is no page to evict");
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        awaitFreeFrame(deadline - now);
+                    } finally {
+                        countPinWait(tableStats, System.nanoTime() - start);
+                    }
+                }
+            } finally {
+                if (queued) {
+                    frameWaiters.remove(Thread.currentThread());
+                    numFrameWaiters = frameWaiters.size();
+                    notifyAll();   // the next in line may now take a frame
+                }
+            }
+        }
+        if (mustRead) {
+            load(frame, pageMaker, strategy);
+            return frame;
+        }
+        return awaitLoad(frame);
+    }
+
+    private void countHit(Frame frame, int previousPins) {
+        stats.hits.increment();
+        frame.partition.hits.increment();
+        frame.tableStats.hits.increment();
+        if (previousPins == 0) {
+            stats.pinnedFrames.increment();
+        }
+    }
+
+    /**
+     * Drops a pin on a frame whose page could not be read.
+     */
+    private void unpinFailed(Frame frame) {
+        if (frame.pinCount.decrementAndGet() == 0) {
+            stats.pinnedFrames.decrement();
+        }
+    }
+
+    private void countPinWait(BufferTableStats tableStats, long nanos) {
+        stats.pinWaitNanos.add(nanos);
+        tableStats.pinWaitNanos.add(nanos);
+    }
+
+    private void countReads(BufferTableStats tableStats, int pages, long nanos) {
+        stats.pagesRead.add(pages);
+        stats.readNanos.add(nanos);
+        tableStats.pagesRead.add(pages);
+        tableStats.readNanos.add(nanos);
+    }
+
+    private void countWrites(Frame frame) {
+        stats.pagesWritten.increment();
+        frame.tableStats.pagesWritten.increment();
+    }
+
+    /**
+     * Tells the replacement policy, or the prefetch and ring lists, that a resident frame
+     * was pinned under the lock.
+     */
+    private void pinned(Frame frame, AccessStrategy strategy) {
+        frame.lastUsed = ++useClock;
+        if (frame.prefetched) {
+            prefetchedFrames.remove(frame);
+            frame.prefetched = false;
+            stats.prefetchUsed.increment();
+            if (strategy.isRing()) {
+                addToRing(frame, strategy);
+            } else {
+                frame.partition.policy.frameLoaded(frame);
+            }
+        } else if (frame.ring != null && frame.ring != strategy) {
+            // someone other than the scan that read it wants the page: it joins the pool
+            ringFrames.remove(frame);
+            frame.ring = null;
+            frame.partition.policy.frameLoaded(frame);
+        } else if (frame.ring == null) {
+            frame.partition.policy.framePinned(frame);
+        }
+    }
+
+    /**
+     * Reads the page into a frame placed by {@link #pinSlow}, without holding the lock,
+     * and wakes any threads waiting for it.
+     */
+    private void load(Frame frame, PageMaker pageMaker, AccessStrategy strategy) {
+        Page page;
+        long start = System.nanoTime();
+        try {
+            page = arena == null ? dm.readPage(frame.pid, pageMaker) : readIntoSlot(frame, pageMaker);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (!frame.removed) {   // unless discarded while being read, which removed it already
+                    removeFrame(frame);
+                }
+                releaseSlot(frame);
+            }
+            unpinFailed(frame);
+            frame.loadError = e;
+            synchronized (frame) {
+                frame.notifyAll();
+            }
+            throw e;
+        }
+        countReads(frame.tableStats, 1, System.nanoTime() - start);
+        synchronized (this) {
+            if (!frame.removed) {   // unless discarded while being read
+                frame.lastUsed = ++useClock;
+                if (strategy.isRing()) {
+                    addToRing(frame, strategy);
+                    frame.page = page;
+                } else {
+                    frame.page = page;
+                    frame.partition.policy.frameLoaded(frame);
+                }
+            } else {
+                page.detach();
+                frame.page = page;
+                releaseSlot(frame);
+            }
+        }
+        synchronized (frame) {
+            frame.notifyAll();
+        }
+    }
+
+    /**
+     * Reads the page into the frame's arena slot and builds the page over it, so that the
+     * page's bytes stay in the slot while the frame holds it.  A frame got no slot only if
+     * every slot is held by frames discarded while their pages were being read; it then
+     * reads into a heap buffer instead.
+     */
+    private Page readIntoSlot(Frame frame, PageMaker pageMaker) {
+        ByteBuffer data = frame.slot == Frame.NO_SLOT ?
+                ByteBuffer.allocate(arena.getPageSize()) : arena.slot(frame.slot);
+        dm.readPageInto(frame.pid, data);
+        data.flip();
+        return pageMaker.makePageOver(frame.pid, data);
+    }
+
+    /**
+     * Counts a pin against the calling thread's limit, if there is one.  The pin is recorded
+     * on its frame with the counter it was charged to, so that whichever thread unpins it
+     * credits that counter.
+     * @return the calling thread's pin counter, or null if there is no limit
+     * @throws BufferManagerException if the thread already holds as many pins as allowed
+     */
+    private AtomicInteger takePinQuota() {
+        int limit = pinLimit;
+        if (limit <= 0) {
+            return null;
+        }
+        AtomicInteger pins = threadPins.get();
+        if (pins.get() >= limit) {
+            throw new BufferManagerException("thread already holds " + pins.get() + " pins, the most allowed");
+        }
+        pins.incrementAndGet();
+        return pins;
+    }
+
+    /**
+     * Credits an unpin to the counter of a thread that pinned the frame: the unpinning
+     * thread's own if it holds a pin there, else any.  Pins taken with no limit in force
+     * were charged to no one.
+     */
+    private void releasePinQuota(Frame frame) {
+        if (frame.pinOwners.isEmpty()) {
+            return;
+        }
+        AtomicInteger owner = threadPins.get();
+        if (!frame.pinOwners.remove(owner)) {
+            owner = frame.pinOwners.poll();
+        }
+        if (owner != null) {
+            owner.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the frame's slot to the arena (the caller holds the lock).  The slot of a frame
+     * whose page is still being read is only released once the read is done with it.  A page
+     * built over the slot must have been detached from it first.
+     */
+    private void releaseSlot(Frame frame) {
+        if (frame.slot != Frame.NO_SLOT) {
+            arena.release(frame.slot);
+            frame.slot = Frame.NO_SLOT;
         }
-        LRUcount ++;
-        frame.pinCount ++;
-        frame.timeCounter = LRUcount;
-        cache.replace(pid, frame);
-        return page;
     }
 
+    /**
+     * Waits until the frame's page has been read by another thread.
+     * @throws RuntimeException the exception that reading the page failed with
+     */
+    private Frame awaitLoad(Frame frame) {
+        if (frame.page != null) {
+            return frame;
+        }
+        boolean interrupted = false;
+        long start = System.nanoTime();
+        synchronized (frame) {
+            while (frame.page == null && frame.loadError == null) {
+                try {
+                    frame.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        countPinWait(frame.tableStats, System.nanoTime() - start);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (frame.page == null) {
+            unpinFailed(frame);
+            throw frame.loadError;
+        }
+        return frame;
+    }
+
+    /**
+     * Frees frames until a page of the given partition fits (the caller holds the lock).
+     * More than one is freed only after the pool shrank or the table changed partitions.
+     * @return false if not enough unpinned pages could be evicted
+     */
+    private boolean makeRoom(AccessStrategy strategy, BufferPartition partition) {
+        while (numPages <= cache.size() || isFull(partition)) {
+            Frame reusable = strategy.isRing() ? strategy.current() : null;
+            if (reusable != null && reusable.ring == strategy && !reusable.removed
+                    && (allowEvictDirty || !reusable.isDirty)
+                    && (reusable.partition == partition || !isFull(partition))
+                    && reusable.pinCount.compareAndSet(0, Frame.CLAIMED)) {
+                evictFrame(reusable);
+            } else if (!evict(partition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether this thread may take a free frame now, rather than wait its turn behind
+     * threads already waiting (the caller holds the lock).
+     */
+    private boolean mayTakeFrame() {
+        return !fairFrameWait || frameWaiters.isEmpty() || frameWaiters.peekFirst() == Thread.currentThread();
+    }
+
+    /**
+     * Waits, releasing the lock, until a frame is unpinned or the time is up (the caller
+     * holds the lock).
+     */
+    private void awaitFreeFrame(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BufferManagerException("interrupted while waiting for a free frame");
+        }
+    }
+
+    private static boolean isFull(BufferPartition partition) {
+        return partition != null && partition.getMaxPages() <= partition.residentPages;
+    }
+
+    private void addToPartition(Frame frame, BufferPartition partition) {
+        frame.partition = partition;
+        partition.residentPages++;
+    }
+
+    /**
+     * Tables larger than 1/{@link #SCAN_RING_FRACTION} of the pool are scanned through a
+     * ring of up to {@link #MAX_SCAN_RING_SIZE} frames, but no more than an eighth of the pool.
+     */
+    @Override
+    public AccessStrategy scanStrategy(int tablePages) {
+        if (tablePages <= numPages / SCAN_RING_FRACTION) {
+            return AccessStrategy.NORMAL;
+        }
+        return AccessStrategy.bulkRead(Math.max(1, Math.min(MAX_SCAN_RING_SIZE, numPages / 8)));
+    }
+
+    private void addToRing(Frame frame, AccessStrategy strategy) {
+        frame.ring = strategy;
+        ringFrames.addLast(frame);
+        strategy.advance(frame);
+    }
+
+    /**
+     * Queues a background read of the page unless it is already in the pool or being read.
+     * The page is placed in the pool unpinned, into a free frame or in place of a clean
+     * unpinned page, and is the first candidate for eviction until it is pinned.
+     */
+    @Override
+    public synchronized void prefetch(PageId pid, PageMaker pageMaker) {
+        if (cache.containsKey(pid) || inFlight.containsKey(pid)) {
+            return;
+        }
+        submitPrefetch(pid.getTableId(), pid.pageNumber(), 1, pageMaker);
+    }
+
+    /**
+     * Stops the prefetch threads.  Reads already under way finish but are not installed.
+     */
+    @Override
+    public synchronized void shutdown() {
+        stopBackgroundWriter();
+        prefetcher.shutdownNow();
+        inFlight.clear();
+    }
+
+    /**
+     * Blocks until every prefetch queued so far has completed or been dropped.
+     */
+    public synchronized void waitForPrefetches() {
+        while (outstandingPrefetches > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tracks runs of consecutive page numbers pinned per table and keeps a sequential
+     * scan's readahead window filled.
+     */
+    private void recordAccess(PageId pid, PageMaker pageMaker) {
+        int window = readaheadPages;
+        if (window < 1) {
+            return;
+        }
+        ScanRun run = scanRuns.get(pid.getTableId());
+        if (run == null) {
+            scanRuns.putIfAbsent(pid.getTableId(), new ScanRun());
+            run = scanRuns.get(pid.getTableId());
+        }
+        int first;
+        int count;
+        synchronized (run) {
+            int pageno = pid.pageNumber();
+            if (pageno == run.lastPage + 1) {
+                run.length++;
+            } else if (pageno != run.lastPage) {
+                run.length = 1;
+                run.readaheadEnd = 0;
+            }
+            run.lastPage = pageno;
+            if (run.length < readaheadTrigger || run.readaheadEnd - (pageno + 1) >= (window + 1) / 2) {
+                return;
+            }
+            first = Math.max(pageno + 1, run.readaheadEnd);
+            count = pageno + 1 + window - first;
+            if (count <= 0) {
+                return;
+            }
+            run.readaheadEnd = first + count;
+        }
+        synchronized (this) {
+            submitPrefetch(pid.getTableId(), first, count, pageMaker);
+        }
+    }
+
+    /**
+     * Hands a run of pages to the prefetcher (the caller holds the lock).  Pages already in
+     * the pool or being read are left out of the install (the run is still read with one
+     * call), and pages past the end of the file are left out altogether.
+     */
+    private void submitPrefetch(final int tableid, final int firstPage, final int count,
+                                final PageMaker pageMaker) {
+        final Object token = new Object();
+        int end = Math.min(firstPage + count, dm.getNumPages(tableid));
+        boolean wanted = false;
+        for (int pageno = firstPage; pageno < end; pageno++) {
+            PageId pid = new SimplePageId(tableid, pageno);
+            if (!cache.containsKey(pid) && !inFlight.containsKey(pid)) {
+                inFlight.put(pid, token);
+                stats.prefetchIssued.increment();
+                wanted = true;
+            }
+        }
+        if (!wanted) {
+            return;
+        }
+        try {
+            prefetcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<Page> pages = Collections.emptyList();
+                    long start = System.nanoTime();
+                    try {
+                        pages = dm.readPages(tableid, firstPage, count, pageMaker);
+                    } catch (RuntimeException e) {
+                        // a failed prefetch is only a missed opportunity; a later pin reports the error
+                    }
+                    countReads(stats.table(tableid), pages.size(), System.nanoTime() - start);
+                    installPrefetched(pages, token, pageMaker);
+                }
+            });
+            outstandingPrefetches++;
+        } catch (RejectedExecutionException e) {
+            dropPrefetches(token);
+        }
+    }
+
+    /**
+     * Places prefetched pages into the pool, unpinned.  A page is installed only if this
+     * prefetch still owns it: a foreground pin may have read it in the meantime, and the
+     * copy in the pool may since have been modified.
+     */
+    private synchronized void installPrefetched(List<Page> pages, Object token, PageMaker pageMaker) {
+        try {
+            drainEvents();
+            for (Page page : pages) {
+                PageId pid = page.getId();
+                if (!inFlight.remove(pid, token)) {
+                    continue;
+                }
+                if (numPages < cache.size()) {
+                    stats.prefetchDropped.increment();   // the pool is shrinking
+                    continue;
+                }
+                BufferPartition partition = getPartition(pid.getTableId());
+                if (numPages <= cache.size() || isFull(partition)) {
+                    Frame victim = claimVictim(false, partition);
+                    if (victim == null) {
+                        stats.prefetchDropped.increment();
+                        continue;
+                    }
+                    removeFrame(victim);  // clean, so no write needed
+                    stats.cleanEvictions.increment();
+                    victim.tableStats.cleanEvictions.increment();
+                }
+                if (isFull(partition)) {
+                    stats.prefetchDropped.increment();   // the table has changed partitions
+                    continue;
+                }
+                Frame frame = new Frame(pid, page);
+                frame.tableStats = stats.table(pid.getTableId());
+                if (arena != null && !copyIntoSlot(frame, pageMaker)) {
+                    stats.prefetchDropped.increment();
+                    continue;
+                }
+                addToPartition(frame, partition);
+                frame.prefetched = true;
+                cache.put(pid, frame);
+                prefetchedFrames.addLast(frame);
+            }
+            dropPrefetches(token);  // pages past the end of the file, or not read at all
+        } finally {
+            outstandingPrefetches--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gives a prefetched page a slot holding its image and rebuilds the page over it, as if it
+     * had been read there.  Prefetches read whole runs into one buffer, so the bytes are
+     * copied over.
+     * @return false if there is no free slot
+     */
+    private boolean copyIntoSlot(Frame frame, PageMaker pageMaker) {
+        frame.slot = arena.allocate();
+        if (frame.slot == Frame.NO_SLOT) {
+            return false;
+        }
+        ByteBuffer data = arena.slot(frame.slot);
+        data.put(frame.page.getPageBuffer());
+        data.flip();
+        frame.page = pageMaker.makePageOver(frame.pid, data);
+        return true;
+    }
+
+    private void dropPrefetches(Object token) {
+        Iterator<Map.Entry<PageId, Object>> it = inFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() == token) {
+                it.remove();
+                stats.prefetchDropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Does not lock: the pin count is decremented atomically, and when it reaches zero the
+     * replacement policy is told later (see {@link #drainEvents()}).
+     */
     @Override
-    public synchronized void unpinPage(PageId pid, boolean isDirty) {
+    public void unpinPage(PageId pid, boolean isDirty) {
 
         //Checks if page is in the cache, if it isn't in the cache it will throw and exception
         Frame frame = cache.get(pid);
         if (frame == null){
             throw new BufferManagerException ("page is not in the cache");
         }
-        if (frame.pinCount == 0){
-            throw new BufferManagerException ("Pin Count is already 0");
+        int count;
+        do {
+            count = frame.pinCount.get();
+            if (count <= 0) {
+                throw new BufferManagerException ("Pin Count is already 0");
+            }
+            if (isDirty) {
+                if (!frame.isDirty) {
+                    frame.dirtiedAt = System.nanoTime();
+                }
+                frame.isDirty = true;   // before the unpin, so an evictor that claims the frame sees it
+            }
+        } while (!frame.pinCount.compareAndSet(count, count - 1));
+        releasePinQuota(frame);
+        if (count == 1) {
+            stats.pinnedFrames.decrement();
+            if (frame.ring == null) {
+                queueEvent(frame, true);
+            }
+            if (numFrameWaiters > 0) {   // read after queueing, so a waiter that missed this unpin sees the event
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a pin or unpin made without the lock, for the replacement policy.  Once
+     * enough have accumulated, the thread that recorded the last one delivers them.
+     */
+    private void queueEvent(Frame frame, boolean unpinned) {
+        events.add(new FrameEvent(frame, unpinned));
+        if (pendingEvents.incrementAndGet() >= EVENT_DRAIN_THRESHOLD) {
+            synchronized (this) {
+                drainEvents();
+            }
         }
-        if (!frame.isDirty) {
-            frame.isDirty = isDirty;
+    }
+
+    /**
+     * Delivers queued pins and unpins to the replacement policy (the caller holds the lock).
+     * This happens before every decision the policy takes part in, so it always decides
+     * with everything that happened up to that point.  Events for frames that have since
+     * left the pool, or that the policy does not track, are dropped.
+     */
+    private void drainEvents() {
+        FrameEvent event;
+        while ((event = events.poll()) != null) {
+            pendingEvents.decrementAndGet();
+            Frame frame = event.frame;
+            if (frame.removed || frame.prefetched || frame.ring != null || frame.page == null) {
+                continue;
+            }
+            frame.lastUsed = ++useClock;
+            if (event.unpinned) {
+                frame.partition.policy.frameUnpinned(frame);
+            } else {
+                frame.partition.policy.framePinned(frame);
+            }
         }
-        frame.pinCount --;
-        cache.replace(pid,frame);
     }
 
     @Override
     public synchronized void flushPage(PageId pid) {
         Frame frame = getFrame(pid);
-        if (frame.isDirty){
-            dm.writePage(frame.page);
-            frame.isDirty = false;
-            cache.replace(pid, frame);
+        if (frame.isDirty && frame.page != null){
+            frame.isDirty = false;   // cleared first: a concurrent unpin that dirties it again is not lost
+            try {
+                dm.writePage(frame.page);
+            } catch (RuntimeException e) {
+                frame.isDirty = true;
+                throw e;
+            }
+            countWrites(frame);
+            cleaned(frame);
         }
     }
 
+    /**
+     * Dirty pages are written table by table in page number order, with each run of
+     * consecutive page numbers (up to {@link #MAX_WRITE_RUN} pages) handed to
+     * {@link DiskManager#writePages} as one request.  Written files are then forced once each,
+     * if the disk manager's durability calls for it.
+     */
     @Override
     public synchronized void flushAllPages() {
-        for(PageId pid : cache.keySet()){
-            flushPage(pid);
+        List<Frame> dirty = new ArrayList<Frame>();
+        for (Frame frame : cache.values()) {
+            if (frame.isDirty && frame.page != null) {
+                dirty.add(frame);
+            }
+        }
+        Collections.sort(dirty, PAGE_ORDER);
+        int start = 0;
+        while (start < dirty.size()) {
+            int end = start + 1;
+            while (end < dirty.size() && end - start < MAX_WRITE_RUN && follows(dirty.get(end - 1), dirty.get(end))) {
+                end++;
+            }
+            writeRun(dirty.subList(start, end));
+            start = end;
+        }
+        if (dm.getDurability().forceOnFlushAll()) {
+            dm.force();
+        }
+    }
+
+    private static boolean follows(Frame previous, Frame frame) {
+        return frame.pid.getTableId() == previous.pid.getTableId()
+                && frame.pid.pageNumber() == previous.pid.pageNumber() + 1;
+    }
+
+    /**
+     * Writes a run of dirty frames with one request (the caller holds the lock).  As in
+     * flushPage, the dirty flags are cleared first and restored if the write fails.
+     */
+    private void writeRun(List<Frame> run) {
+        List<Page> pages = new ArrayList<Page>(run.size());
+        for (Frame frame : run) {
+            frame.isDirty = false;
+            pages.add(frame.page);
+        }
+        try {
+            dm.writePages(pages);
+        } catch (RuntimeException e) {
+            for (Frame frame : run) {
+                frame.isDirty = true;
+            }
+            throw e;
+        }
+        for (Frame frame : run) {
+            countWrites(frame);
+            cleaned(frame);
+        }
+    }
+
+    /**
+     * Tells the replacement policy that a frame it tracks was written (the caller holds the
+     * lock), so that a policy keeping clean frames apart can offer it for eviction.
+     */
+    private void cleaned(Frame frame) {
+        if (!frame.removed && !frame.prefetched && frame.ring == null && frame.page != null) {
+            frame.partition.policy.frameCleaned(frame);
         }
     }
 
     @Override
-    public synchronized void evictDirty(boolean allowEvictDirty) {
+    public void evictDirty(boolean allowEvictDirty) {
         this.allowEvictDirty = allowEvictDirty;
     }
 
     public synchronized boolean evict(){
-        boolean pageCanBeEvicted = false;
-        int LRUpage = 0;
-        Frame frameToRemove = null;
-        PageId pidToRemove = null;
-        for (PageId pid : cache.keySet()){
-            Frame frame = getFrame(pid);
-            if (LRUpage < frame.timeCounter) {
-                if (this.allowEvictDirty || !isDirty(pid)) {
-                    if (frame.pinCount <= 0) {
-                        LRUpage = frame.timeCounter;
-                        pidToRemove = pid;
-                        frameToRemove = frame;
-                        pageCanBeEvicted = true;
-                    }
+        if (!evict(null)) {
+            stats.noVictimFailures.increment();
+            throw new BufferManagerException ("there is no page to evict");
+        }
+        return true;
+    }
+
+    /**
+     * Evicts a page to make room for one of the given partition, or for any page if null.
+     * @return false if no page could be evicted
+     */
+    private synchronized boolean evict(BufferPartition partition) {
+        drainEvents();
+        Frame frameToRemove = claimVictim(true, partition);
+        if (frameToRemove == null){
+            return false;
+        }
+        evictFrame(frameToRemove);
+        return true;
+    }
+
+    /**
+     * Chooses a victim and claims it, so that it can no longer be pinned.  A lock-free pin
+     * can slip in between the choice and the claim, and the page may have been dirtied
+     * and unpinned again by then; then another victim is chosen.
+     * @return the claimed frame, or null if there is no unpinned frame to evict
+     */
+    private Frame claimVictim(boolean takePrefetched, BufferPartition partition) {
+        for (int attempt = 0; attempt <= numPages; attempt++) {
+            Frame victim = chooseVictim(takePrefetched, partition);
+            if (victim == null) {
+                return null;
+            }
+            if (victim.pinCount.compareAndSet(0, Frame.CLAIMED)) {
+                if (!victim.isDirty || (takePrefetched && allowEvictDirty)) {
+                    return victim;
                 }
+                victim.pinCount.set(0);   // dirtied since it was reported unpinned
             }
+            drainEvents();
         }
-        if (! pageCanBeEvicted){
-            throw new BufferManagerException ("there is no page to evict");
+        return null;
+    }
+
+    /**
+     * Prefetched pages that were never pinned go first, oldest first, then pages read
+     * through a bulk-read ring.  Otherwise a partition's replacement policy chooses: the
+     * partition furthest above its minimum, or the requesting partition itself if it is
+     * full, in which case only its own pages are taken.  Dirty frames are skipped unless
+     * evictDirty allows them, and while the background writer runs, clean frames are
+     * preferred.
+     * @param takePrefetched false when making room for a prefetched page: then only clean,
+     *                       non-prefetched frames are chosen, so installing costs no I/O and
+     *                       one prefetch does not push out another
+     * @param requester the partition that needs the frame, or null if any page will do
+     * @return the unpinned frame to evict next, or null if there is none
+     */
+    private Frame chooseVictim(boolean takePrefetched, BufferPartition requester) {
+        boolean allowDirty = takePrefetched && allowEvictDirty;
+        if (isFull(requester)) {
+            Frame frame = takePrefetched ? firstEvictable(prefetchedFrames, requester, true) : null;
+            if (frame == null) {
+                frame = firstEvictable(ringFrames, requester, allowDirty);
+            }
+            return frame != null ? frame : partitionVictim(requester, allowDirty);
+        }
+        if (takePrefetched && prefetchedFrames.size() > 0) {
+            return prefetchedFrames.first();
+        }
+        Frame frame = ringFrames.firstEvictable(allowDirty && writer == null);
+        if (frame != null) {
+            return frame;
+        }
+        for (BufferPartition partition : partitionsByExcess(requester)) {
+            frame = partitionVictim(partition, allowDirty);
+            if (frame != null) {
+                return frame;
+            }
+        }
+        return writer != null ? ringFrames.firstEvictable(allowDirty) : null;
+    }
+
+    private Frame partitionVictim(BufferPartition partition, boolean allowDirty) {
+        if (allowDirty && writer != null) {
+            // leave dirty pages to the background writer if a clean one will do
+            Frame clean = partition.policy.chooseVictim(false);
+            if (clean != null) {
+                return clean;
+            }
+        }
+        return partition.policy.chooseVictim(allowDirty);
+    }
+
+    /**
+     * @return the partitions, the ones furthest above their minimum first; the requester
+     * comes first among equals
+     */
+    private List<BufferPartition> partitionsByExcess(final BufferPartition requester) {
+        if (partitions.size() == 1) {
+            return Collections.singletonList(defaultPartition);
+        }
+        List<BufferPartition> ordered = new ArrayList<BufferPartition>(partitions.values());
+        Collections.sort(ordered, new Comparator<BufferPartition>() {
+            @Override
+            public int compare(BufferPartition a, BufferPartition b) {
+                int cmp = Integer.compare(b.residentPages - b.getMinPages(), a.residentPages - a.getMinPages());
+                return cmp != 0 ? cmp : Boolean.compare(b == requester, a == requester);
+            }
+        });
+        return ordered;
+    }
+
+    private static Frame firstEvictable(FrameList list, BufferPartition partition, boolean allowDirty) {
+        for (Frame frame = list.first(); frame != null; frame = list.next(frame)) {
+            if (frame.partition == partition && frame.pinCount.get() == 0 && (allowDirty || !frame.isDirty)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a claimed frame, writing it out first if it is dirty.  Clean victims cost no
+     * I/O.  Dirty victims are written while holding the lock, so that no one can read the
+     * page's old contents from disk in the meantime.
+     */
+    private void evictFrame(Frame frame) {
+        if (frame.isDirty) {   // stable: the frame is claimed, so no one can unpin it dirty now
+            try {
+                dm.writePage(frame.page);
+            } catch (RuntimeException e) {
+                frame.pinCount.set(0);   // release the claim; the page stays
+                throw e;
+            }
+            countWrites(frame);
+            stats.dirtyEvictions.increment();
+            frame.tableStats.dirtyEvictions.increment();
+        } else {
+            stats.cleanEvictions.increment();
+            frame.tableStats.cleanEvictions.increment();
+        }
+        removeFrame(frame);
+    }
+
+    private void removeFrame(Frame frame) {
+        cache.remove(frame.pid, frame);
+        frame.removed = true;
+        if (frame.prefetched) {
+            prefetchedFrames.remove(frame);
+            stats.prefetchWasted.increment();
+        } else if (frame.ring != null) {
+            ringFrames.remove(frame);
+        } else if (frame.page != null) {
+            frame.partition.policy.frameRemoved(frame);
+        }
+        frame.partition.residentPages--;
+        if (frame.page != null) {
+            frame.page.detach();   // for anyone still holding the page
+            releaseSlot(frame);
         }
-        dm.writePage(frameToRemove.page);
-        cache.remove(pidToRemove, frameToRemove);
-        return true;
     }
 
 
     @Override
-    public synchronized void allocatePage(PageId pid) {
-        dm.allocatePage(pid);
+    public void allocatePage(PageId pid) {
+        synchronized (allocationLock) {
+            dm.allocatePage(pid);
+        }
     }
 
     @Override
-    public synchronized boolean isDirty(PageId pid) {
+    public boolean isDirty(PageId pid) {
         Frame frame = cache.get(pid);
         if (frame == null){
             return false;
@@ -147,14 +1387,14 @@ public class BufferManagerImpl implements BufferManager {
     }
 
     @Override
-    public synchronized boolean inBufferPool(PageId pid) {
+    public boolean inBufferPool(PageId pid) {
         Frame frame = cache.get(pid);
-        return (frame != null);
+        return (frame != null && frame.page != null);
     }
 
 
 
-    public synchronized Frame getFrame(PageId pid) {
+    public Frame getFrame(PageId pid) {
         Frame frame = cache.get(pid);
         if (frame == null){
             throw new BufferManagerException ("page is not in the cache");
@@ -165,9 +1405,9 @@ public class BufferManagerImpl implements BufferManager {
     }
 
     @Override
-    public synchronized Page getPage(PageId pid) {
+    public Page getPage(PageId pid) {
         Frame frame = cache.get(pid);
-        if (frame == null){
+        if (frame == null || frame.page == null){
             throw new BufferManagerException ("page is not in the cache");
         }
         else {
@@ -177,28 +1417,65 @@ public class BufferManagerImpl implements BufferManager {
 
     @Override
     public synchronized void discardPage(PageId pid) {
-        if(inBufferPool(pid)) {
-            cache.remove(pid);
+        Frame frame = cache.get(pid);
+        if (frame != null) {
+            removeFrame(frame);
         }
     }
 
 
     /**
-     * A frame holds one page and maintains state about that page.  You are encouraged to use this
-     * in your design of a BufferManager.  You may also make any warranted modifications.
+     * The most recent run of consecutively numbered pins on one table.
+     */
+    private static class ScanRun {
+        private int lastPage = -2;
+        private int length = 0;
+        private int readaheadEnd = 0;  // pages before this have been handed to the prefetcher
+    }
+
+    /**
+     * The thread started by {@link #startBackgroundWriter}.
+     */
+    private class BackgroundWriter extends Thread {
+        private final int cleanTarget;
+        private final int pagesPerRound;
+        private volatile boolean running = true;
+
+        BackgroundWriter(int cleanTarget, int pagesPerRound) {
+            super("colgatedb-page-writer");
+            setDaemon(true);
+            this.cleanTarget = cleanTarget;
+            this.pagesPerRound = pagesPerRound;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    writeRound(cleanTarget, pagesPerRound);
+                } catch (RuntimeException e) {
+                    // the page stays dirty; a later round or an eviction writes it
+                }
+                try {
+                    Thread.sleep(WRITER_ROUND_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A pin or unpin waiting to be delivered to the replacement policy.
      */
-    private class Frame {
-        private Page page;
-        private int pinCount;
-        public boolean isDirty;
-        private int timeCounter;
+    private static class FrameEvent {
+        private final Frame frame;
+        private final boolean unpinned;
 
-        public Frame(Page page) {
-            this.page = page;
-            this.pinCount = 0;   // assumes Frame is created on first pin -- feel free to modify as you see fit
-            this.isDirty = false;
-            this.timeCounter = 0;
+        FrameEvent(Frame frame, boolean unpinned) {
+            this.frame = frame;
+            this.unpinned = unpinned;
         }
     }
 
-}
\ No newline at end of file
+}
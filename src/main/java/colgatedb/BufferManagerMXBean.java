@@ -0,0 +1,65 @@
+package colgatedb;
+
+import java.util.Map;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The buffer pool's counters as published over JMX, under the name
+ * {@value BufferManagerMetrics#OBJECT_NAME}.  See {@link BufferManagerStats} for what each
+ * counter means.
+ */
+public interface BufferManagerMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getPagesRead();
+
+    long getPagesWritten();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getReadMillis();
+
+    long getPinWaitMillis();
+
+    long getCleanEvictions();
+
+    long getDirtyEvictions();
+
+    long getNoVictimFailures();
+
+    long getPinnedFrames();
+
+    long getPinnedFramesHighWater();
+
+    int getPoolPages();
+
+    int getResidentPages();
+
+    /**
+     * @return the per-table counters, by table id
+     */
+    Map<Integer, BufferTableStats> getTableStats();
+
+    void resetStats();
+}
@@ -0,0 +1,157 @@
+package colgatedb;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Publishes a {@link BufferManagerImpl}'s counters as a platform MXBean, so they can be
+ * watched with jconsole or any other JMX client while the database runs.  Only one buffer
+ * manager is published at a time: registering a new one replaces the old.
+ */
+public class BufferManagerMetrics implements BufferManagerMXBean {
+
+    public static final String OBJECT_NAME = "colgatedb:type=BufferManager";
+
+    private final BufferManagerImpl bufferManager;
+    private final BufferManagerStats stats;
+    private final int pageSize;
+
+    public BufferManagerMetrics(BufferManagerImpl bufferManager, int pageSize) {
+        this.bufferManager = bufferManager;
+        this.stats = bufferManager.getStats();
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Registers the given buffer manager's metrics with the platform MBean server, in place
+     * of any registered before.
+     * @throws JMException if the bean cannot be registered
+     */
+    public static BufferManagerMetrics register(BufferManagerImpl bufferManager, int pageSize) throws JMException {
+        BufferManagerMetrics metrics = new BufferManagerMetrics(bufferManager, pageSize);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        synchronized (BufferManagerMetrics.class) {
+            while (true) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                try {
+                    server.registerMBean(metrics, name);
+                    return metrics;
+                } catch (InstanceAlreadyExistsException e) {
+                    // registered by someone else in the meantime; replace it
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return stats.getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return stats.getMisses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return stats.getHitRatio();
+    }
+
+    @Override
+    public long getPagesRead() {
+        return stats.getPagesRead();
+    }
+
+    @Override
+    public long getPagesWritten() {
+        return stats.getPagesWritten();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return stats.getPagesRead() * pageSize;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return stats.getPagesWritten() * pageSize;
+    }
+
+    @Override
+    public long getReadMillis() {
+        return stats.getReadMillis();
+    }
+
+    @Override
+    public long getPinWaitMillis() {
+        return stats.getPinWaitMillis();
+    }
+
+    @Override
+    public long getCleanEvictions() {
+        return stats.getCleanEvictions();
+    }
+
+    @Override
+    public long getDirtyEvictions() {
+        return stats.getDirtyEvictions();
+    }
+
+    @Override
+    public long getNoVictimFailures() {
+        return stats.getNoVictimFailures();
+    }
+
+    @Override
+    public long getPinnedFrames() {
+        return stats.getPinnedFrames();
+    }
+
+    @Override
+    public long getPinnedFramesHighWater() {
+        return stats.getPinnedFramesHighWater();
+    }
+
+    @Override
+    public int getPoolPages() {
+        return bufferManager.getNumPages();
+    }
+
+    @Override
+    public int getResidentPages() {
+        return bufferManager.getNumResidentPages();
+    }
+
+    @Override
+    public Map<Integer, BufferTableStats> getTableStats() {
+        return stats.getTableStats();
+    }
+
+    @Override
+    public void resetStats() {
+        stats.reset();
+    }
+}
@@ -0,0 +1,273 @@
+package colgatedb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Counters kept by a {@link BufferManagerImpl}.  They are updated without locking and
+ * may be read at any time; a snapshot taken while the buffer manager is busy is not
+ * guaranteed to be consistent across counters.  The counters that matter for sizing the
+ * pool are also kept per table (see {@link BufferTableStats}), and the whole set is
+ * published over JMX by {@link BufferManagerMetrics}.
+ */
+public class BufferManagerStats {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder prefetchIssued = new LongAdder();
+    final LongAdder prefetchUsed = new LongAdder();
+    final LongAdder prefetchWasted = new LongAdder();
+    final LongAdder prefetchDropped = new LongAdder();
+    final LongAdder cleanEvictions = new LongAdder();
+    final LongAdder dirtyEvictions = new LongAdder();
+    final LongAdder writerWrites = new LongAdder();
+    final LongAdder writerRounds = new LongAdder();
+    volatile long dirtyPages;         // as of the background writer's last round
+    volatile long oldestDirtyMillis;  // as of the background writer's last round
+    final LongAdder pagesRead = new LongAdder();
+    final LongAdder pagesWritten = new LongAdder();
+    final LongAdder readNanos = new LongAdder();
+    final LongAdder pinWaitNanos = new LongAdder();
+    final LongAdder noVictimFailures = new LongAdder();
+    final LongAdder pinnedFrames = new LongAdder();
+    private volatile long pinnedFramesHighWater;
+    private final Map<Integer, BufferTableStats> tables = new ConcurrentHashMap<Integer, BufferTableStats>();
+
+    /**
+     * @return the counters for the given table, created on first use
+     */
+    BufferTableStats table(int tableid) {
+        BufferTableStats table = tables.get(tableid);
+        if (table == null) {
+            tables.putIfAbsent(tableid, new BufferTableStats());
+            table = tables.get(tableid);
+        }
+        return table;
+    }
+
+    /**
+     * Records the number of pinned frames if it is a new high (the caller holds the buffer
+     * manager's lock).  Called on every miss, which is when frames run short.
+     */
+    void samplePinnedFrames() {
+        long pinned = pinnedFrames.sum();
+        if (pinned > pinnedFramesHighWater) {
+            pinnedFramesHighWater = pinned;
+        }
+    }
+
+    /**
+     * @return number of pins that found the page in the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of pins that had to read the page from disk
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of pages handed to the prefetcher
+     */
+    public long getPrefetchIssued() {
+        return prefetchIssued.sum();
+    }
+
+    /**
+     * @return number of prefetched pages that were later pinned
+     */
+    public long getPrefetchUsed() {
+        return prefetchUsed.sum();
+    }
+
+    /**
+     * @return number of prefetched pages evicted or discarded before anyone pinned them
+     */
+    public long getPrefetchWasted() {
+        return prefetchWasted.sum();
+    }
+
+    /**
+     * @return number of prefetches that never reached the pool: the queue was full, no
+     * frame could be freed, the read failed, or a foreground pin got there first
+     */
+    public long getPrefetchDropped() {
+        return prefetchDropped.sum();
+    }
+
+    /**
+     * @return number of pages evicted without being written, because they were clean
+     */
+    public long getCleanEvictions() {
+        return cleanEvictions.sum();
+    }
+
+    /**
+     * @return number of pages written out when evicted, by the thread that needed the frame
+     */
+    public long getDirtyEvictions() {
+        return dirtyEvictions.sum();
+    }
+
+    /**
+     * @return number of dirty pages written by the background writer
+     */
+    public long getWriterWrites() {
+        return writerWrites.sum();
+    }
+
+    /**
+     * @return number of rounds the background writer has completed
+     */
+    public long getWriterRounds() {
+        return writerRounds.sum();
+    }
+
+    /**
+     * @return number of dirty pages left in the pool after the background writer's last round
+     */
+    public long getDirtyPages() {
+        return dirtyPages;
+    }
+
+    /**
+     * @return how long, in milliseconds, the oldest dirty page had been dirty after the
+     * background writer's last round; 0 if there were none
+     */
+    public long getOldestDirtyMillis() {
+        return oldestDirtyMillis;
+    }
+
+    /**
+     * @return number of pages read from disk, by misses and prefetches
+     */
+    public long getPagesRead() {
+        return pagesRead.sum();
+    }
+
+    /**
+     * @return number of pages written to disk, by evictions, flushes and the background writer
+     */
+    public long getPagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    /**
+     * @return time spent in DiskManager reads, in milliseconds
+     */
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.sum());
+    }
+
+    /**
+     * @return time pins spent blocked, in milliseconds: waiting for a frame to be unpinned
+     * when none could be freed, or for another thread to finish reading the page
+     */
+    public long getPinWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(pinWaitNanos.sum());
+    }
+
+    /**
+     * @return number of times a page had to be evicted and none could be: the failures
+     * reported as "there is no page to evict"
+     */
+    public long getNoVictimFailures() {
+        return noVictimFailures.sum();
+    }
+
+    /**
+     * @return number of frames currently pinned
+     */
+    public long getPinnedFrames() {
+        return pinnedFrames.sum();
+    }
+
+    /**
+     * @return the most frames seen pinned at once, sampled on misses
+     */
+    public long getPinnedFramesHighWater() {
+        return pinnedFramesHighWater;
+    }
+
+    /**
+     * @return the counters of the given table, or null if none of its pages has been used
+     */
+    public BufferTableStats getTableStats(int tableid) {
+        return tables.get(tableid);
+    }
+
+    /**
+     * @return the counters of every table whose pages have been used, by table id
+     */
+    public Map<Integer, BufferTableStats> getTableStats() {
+        return Collections.unmodifiableMap(new TreeMap<Integer, BufferTableStats>(tables));
+    }
+
+    /**
+     * @return fraction of pins that were hits, or 0 if there have been no pins
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        prefetchIssued.reset();
+        prefetchUsed.reset();
+        prefetchWasted.reset();
+        prefetchDropped.reset();
+        cleanEvictions.reset();
+        dirtyEvictions.reset();
+        writerWrites.reset();
+        writerRounds.reset();
+        pagesRead.reset();
+        pagesWritten.reset();
+        readNanos.reset();
+        pinWaitNanos.reset();
+        noVictimFailures.reset();
+        pinnedFramesHighWater = 0;
+        for (BufferTableStats table : tables.values()) {
+            table.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses() +
+                " prefetchIssued=" + getPrefetchIssued() + " prefetchUsed=" + getPrefetchUsed() +
+                " prefetchWasted=" + getPrefetchWasted() + " prefetchDropped=" + getPrefetchDropped() +
+                " cleanEvictions=" + getCleanEvictions() + " dirtyEvictions=" + getDirtyEvictions() +
+                " writerWrites=" + getWriterWrites() +
+                " dirtyPages=" + getDirtyPages() + " oldestDirtyMillis=" + getOldestDirtyMillis() +
+                " pagesRead=" + getPagesRead() + " pagesWritten=" + getPagesWritten() +
+                " readMillis=" + getReadMillis() + " pinWaitMillis=" + getPinWaitMillis() +
+                " noVictimFailures=" + getNoVictimFailures() +
+                " pinnedFrames=" + getPinnedFrames() + " pinnedFramesHighWater=" + getPinnedFramesHighWater();
+    }
+}
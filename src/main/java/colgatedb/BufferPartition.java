@@ -0,0 +1,94 @@
+package colgatedb;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A named share of a {@link BufferManagerImpl}'s pool, for the pages of the tables assigned
+ * to it.  A partition holding its maximum number of pages makes room by evicting one of its
+ * own.  Otherwise pages are taken from whichever partition is furthest above its minimum, so
+ * a partition at its minimum keeps its pages while others have any to give.  Each partition
+ * has its own replacement policy, which decides among its pages.
+ * <p>
+ * Tables not assigned to a partition share the default partition, which has no minimum or
+ * maximum.
+ */
+public class BufferPartition {
+
+    private final String name;
+    private final int minPages;
+    private final int maxPages;
+    final ReplacementPolicy policy;
+    int residentPages = 0;   // guarded by the buffer manager's lock
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+    BufferPartition(String name, int minPages, int maxPages, ReplacementPolicy policy) {
+        this.name = name;
+        this.minPages = minPages;
+        this.maxPages = maxPages;
+        this.policy = policy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of pages the partition keeps while other partitions have pages to give
+     */
+    public int getMinPages() {
+        return minPages;
+    }
+
+    /**
+     * @return most pages the partition may hold
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * @return number of pages currently held, including pages being read
+     */
+    public int getResidentPages() {
+        return residentPages;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return fraction of pins of the partition's pages that were hits, or 0 if there have been none
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[min=" + minPages + " max=" + maxPages + " resident=" + residentPages +
+                " hits=" + getHits() + " misses=" + getMisses() + "]";
+    }
+}
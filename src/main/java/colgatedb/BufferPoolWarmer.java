@@ -0,0 +1,157 @@
+package colgatedb;
+
+import colgatedb.dbfile.DbFile;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Saves the list of pages in the buffer pool so that, after a restart, the pool can be
+ * refilled in the background instead of one miss at a time.
+ * <p>
+ * The snapshot file holds a header (a magic number and a count) followed by a (tableid,
+ * pageno) pair of ints per page, most recently used first, so a page's position is its
+ * recency rank.  The warm-up reads the most recent pages that fit in the pool, in file
+ * order (table by table, by page number), pinning and unpinning each at a limited rate.
+ */
+public class BufferPoolWarmer {
+
+    public static final int DEFAULT_PAGES_PER_SECOND = 2000;
+    private static final int MAGIC = 0x436f6c57;
+
+    /**
+     * Writes the snapshot to a temporary file first, so a crash never leaves a partial one.
+     * @param pids pages to record, most recently used first
+     */
+    public static void save(List<PageId> pids, File file) throws IOException {
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(pids.size());
+            for (PageId pid : pids) {
+                out.writeInt(pid.getTableId());
+                out.writeInt(pid.pageNumber());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+        }
+    }
+
+    /**
+     * @return the pages recorded in the snapshot, most recently used first
+     */
+    public static List<PageId> load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a buffer pool snapshot");
+            }
+            int count = in.readInt();
+            List<PageId> pids = new ArrayList<PageId>(count);
+            for (int i = 0; i < count; i++) {
+                int tableid = in.readInt();
+                pids.add(new SimplePageId(tableid, in.readInt()));
+            }
+            return pids;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Starts a daemon thread that reads pages from a snapshot into the pool.  Pages of tables
+     * that are no longer in the catalog, or past the end of their file, are skipped, as are
+     * pages already in the pool.  The thread stops early if the pool has no room.
+     * @param pids pages from the snapshot, most recently used first
+     * @param maxPages most pages to read, typically the size of the pool
+     * @param pagesPerSecond most pages to read per second
+     * @return the thread, already started
+     */
+    public static Thread warmUp(final BufferManager bm, final Catalog catalog, List<PageId> pids,
+                                int maxPages, final int pagesPerSecond) {
+        final List<PageId> pages = new ArrayList<PageId>(pids.subList(0, Math.min(maxPages, pids.size())));
+        Collections.sort(pages, new Comparator<PageId>() {
+            @Override
+            public int compare(PageId a, PageId b) {
+                int cmp = Integer.compare(a.getTableId(), b.getTableId());
+                return cmp != 0 ? cmp : Integer.compare(a.pageNumber(), b.pageNumber());
+            }
+        });
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long nanosPerPage = 1000000000L / Math.max(1, pagesPerSecond);
+                long next = System.nanoTime();
+                for (PageId pid : pages) {
+                    HeapFile file = heapFile(catalog, pid.getTableId());
+                    if (file == null || pid.pageNumber() >= file.numPages() || bm.inBufferPool(pid)) {
+                        continue;
+                    }
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    next = Math.max(next, System.nanoTime() - nanosPerPage) + nanosPerPage;
+                    try {
+                        bm.pinPage(pid, file.getPageMaker());
+                        bm.unpinPage(pid, false);
+                    } catch (BufferManagerException | DiskManagerException e) {
+                        return;   // no room, or the database is being replaced
+                    }
+                }
+            }
+        }, "colgatedb-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static HeapFile heapFile(Catalog catalog, int tableid) {
+        try {
+            DbFile file = catalog.getDatabaseFile(tableid);
+            return file instanceof HeapFile ? (HeapFile) file : null;
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package colgatedb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The counters of {@link BufferManagerStats} that are broken down by table.  Like those,
+ * they are updated without locking.
+ */
+public class BufferTableStats {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder pagesRead = new LongAdder();
+    final LongAdder pagesWritten = new LongAdder();
+    final LongAdder readNanos = new LongAdder();
+    final LongAdder pinWaitNanos = new LongAdder();
+    final LongAdder cleanEvictions = new LongAdder();
+    final LongAdder dirtyEvictions = new LongAdder();
+    final LongAdder noVictimFailures = new LongAdder();
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return fraction of pins that were hits, or 0 if there have been no pins
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * @return number of pages read from disk, by misses and prefetches
+     */
+    public long getPagesRead() {
+        return pagesRead.sum();
+    }
+
+    /**
+     * @return number of pages written to disk, by evictions, flushes and the background writer
+     */
+    public long getPagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    /**
+     * @return time spent in DiskManager reads, in milliseconds
+     */
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.sum());
+    }
+
+    /**
+     * @return time pins of this table's pages spent blocked, in milliseconds
+     */
+    public long getPinWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(pinWaitNanos.sum());
+    }
+
+    public long getCleanEvictions() {
+        return cleanEvictions.sum();
+    }
+
+    public long getDirtyEvictions() {
+        return dirtyEvictions.sum();
+    }
+
+    /**
+     * @return number of misses that failed because every page was pinned (or dirty, if dirty
+     * pages may not be evicted)
+     */
+    public long getNoVictimFailures() {
+        return noVictimFailures.sum();
+    }
+
+    void reset() {
+        hits.reset();
+        misses.reset();
+        pagesRead.reset();
+        pagesWritten.reset();
+        readNanos.reset();
+        pinWaitNanos.reset();
+        cleanEvictions.reset();
+        dirtyEvictions.reset();
+        noVictimFailures.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses() + " pagesRead=" + getPagesRead() +
+                " pagesWritten=" + getPagesWritten() + " readMillis=" + getReadMillis() +
+                " pinWaitMillis=" + getPinWaitMillis() +
+                " cleanEvictions=" + getCleanEvictions() + " dirtyEvictions=" + getDirtyEvictions() +
+                " noVictimFailures=" + getNoVictimFailures();
+    }
+}
@@ -2,6 +2,7 @@ package colgatedb;
 
 import colgatedb.dbfile.DbFile;
 import colgatedb.dbfile.HeapFile;
+import colgatedb.tuple.StringDictionary;
 import colgatedb.tuple.TupleDesc;
 import colgatedb.tuple.Type;
 
@@ -27,11 +28,15 @@ import java.util.*;
  */
 public class Catalog {
 
+    public static final String DICTIONARY_SUFFIX = ".dict";   // names a table's StringDictionary file
+
     private final DiskManagerImpl dm;
     private final int pageSize;
 
     private final Map<Integer, TableInfo> id2info;
     private final HashMap<String, Integer> name2id;
+    private final Map<String, StringDictionary> dictionaries =
+            new HashMap<String, StringDictionary>();   // open dictionaries, by file path
 
     /**
      * TableInfo data structure used to hold information about each table.
@@ -129,6 +134,33 @@ public class Catalog {
     public void clear() {
         id2info.clear();
         name2id.clear();
+        closeDictionaries();
+    }
+
+    /**
+     * Returns the dictionary of the table stored in the given file, opening it the first
+     * time.  Every table added over the same file shares one dictionary, so that codes
+     * are never handed out twice and appends to the file do not collide.
+     */
+    synchronized StringDictionary dictionaryFor(File dataFile) {
+        String path = dataFile.getAbsolutePath() + DICTIONARY_SUFFIX;
+        StringDictionary dictionary = dictionaries.get(path);
+        if (dictionary == null) {
+            dictionary = new StringDictionary(new File(path));
+            dictionaries.put(path, dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Closes the files of every dictionary opened by this catalog.  Called when the catalog
+     * is cleared and when the database is closed or replaced.
+     */
+    synchronized void closeDictionaries() {
+        for (StringDictionary dictionary : dictionaries.values()) {
+            dictionary.close();
+        }
+        dictionaries.clear();
     }
 
     /**
@@ -140,9 +172,10 @@ public class Catalog {
      Director(id int pk, fname string, lname string)
      Casts(pid int, mid int, role string)
      Movie_Director(did int, mid int)
-     Genre(mid int, genre string)
+     Genre(mid int, genre string dict)
 
-     * in the above, "pk" indicates that the field is the primary key for that table.
+     * in the above, "pk" indicates that the field is the primary key for that table, and "dict"
+     * that a string field is dictionary encoded (see {@link TableOptions#dictionaryEncoded(int...)}).
      *
      * This implementation assumes that (a) each table is stored in a separate file whose name is the name
      * of the table followed by ".dat" and (b) is located in the same directory as catalogFile and (c) each
@@ -165,6 +198,7 @@ public class Catalog {
                 ArrayList<String> names = new ArrayList<String>();
                 ArrayList<Type> types = new ArrayList<Type>();
                 String primaryKey = "";
+                ArrayList<Integer> dictionaryFields = new ArrayList<Integer>();
                 for (String e : els) {
                     String[] els2 = e.trim().split(" ");
                     names.add(els2[0].trim());
@@ -179,6 +213,8 @@ public class Catalog {
                     if (els2.length == 3) {
                         if (els2[2].trim().equals("pk"))
                             primaryKey = els2[0].trim();
+                        else if (els2[2].trim().equals("dict") && types.get(types.size() - 1) == Type.STRING_TYPE)
+                            dictionaryFields.add(types.size() - 1);
                         else {
                             System.out.println("Unknown annotation " + els2[2]);
                             System.exit(0);
@@ -189,7 +225,12 @@ public class Catalog {
                 String[] namesAr = names.toArray(new String[names.size()]);
                 TupleDesc td = new TupleDesc(typeAr, namesAr);
                 File dataFile = new File(baseFolder, name + ".dat");
-                HeapFile tabHf = addHeapFile(name, td, primaryKey, dataFile);
+                int[] dictionaryAr = new int[dictionaryFields.size()];
+                for (int i = 0; i < dictionaryAr.length; i++) {
+                    dictionaryAr[i] = dictionaryFields.get(i);
+                }
+                HeapFile tabHf = addHeapFile(name, td, primaryKey, dataFile,
+                        new TableOptions().dictionaryEncoded(dictionaryAr));
                 System.out.print("Added table : " + name + " with schema " + td + (primaryKey.equals("") ? "" : (" key is " + primaryKey)));
                 System.out.println(" Table has " + dm.getNumPages(tabHf.getId()) + " pages.");
             }
@@ -220,10 +261,26 @@ public class Catalog {
     }
 
     public static HeapFile addHeapFile(String name, TupleDesc td, String primaryKey, File dataFile) {
+        return addHeapFile(name, td, primaryKey, dataFile, new TableOptions());
+    }
+
+    /**
+     * Adds a heap file to the catalog, storing it as described by the given options.
+     * @see TableOptions
+     */
+    public static HeapFile addHeapFile(String name, TupleDesc td, String primaryKey, File dataFile,
+                                       TableOptions options) {
         int tableid = tableIdForFile(dataFile);
-        Database.getDiskManager().addFileEntry(tableid, dataFile.getAbsolutePath());
-        HeapFile hf = new HeapFile(td, Database.getPageSize(), tableid, Database.getDiskManager().getNumPages(tableid));
+        Database.getDiskManager().addFileEntry(tableid, dataFile.getAbsolutePath(), options);
+        int[] dictionaryFields = options.getDictionaryFields();
+        StringDictionary dictionary = dictionaryFields.length == 0 ? null
+                : Database.getCatalog().dictionaryFor(dataFile);
+        HeapFile hf = new HeapFile(td, Database.getPageSize(), tableid, Database.getDiskManager().getNumPages(tableid),
+                options.getPageLayout(), dictionary, dictionaryFields);
         Database.getCatalog().addTable(name, hf, primaryKey, dataFile);
+        if (options.getBufferPartition() != null) {
+            Database.assignBufferPartition(tableid, options.getBufferPartition());
+        }
         return hf;
     }
 
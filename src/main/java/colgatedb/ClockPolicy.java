@@ -0,0 +1,80 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * CLOCK replacement, an approximation of LRU.  All frames sit on a ring with a reference
+ * bit that is set whenever the frame is pinned.  To find a victim, the hand sweeps the ring:
+ * an unpinned frame whose bit is set gets its bit cleared and a second chance, and the first
+ * unpinned frame found with a clear bit is the victim.
+ */
+public class ClockPolicy implements ReplacementPolicy {
+
+    private final FrameList ring = new FrameList();
+    private Frame hand;   // next frame to inspect, null if the ring is empty
+
+    @Override
+    public void frameLoaded(Frame frame) {
+        ring.addLast(frame);
+        frame.referenced = true;
+        if (hand == null) {
+            hand = frame;
+        }
+    }
+
+    @Override
+    public void framePinned(Frame frame) {
+        frame.referenced = true;
+    }
+
+    @Override
+    public void frameUnpinned(Frame frame) {
+    }
+
+    @Override
+    public void frameRemoved(Frame frame) {
+        if (!ring.contains(frame)) {
+            return;
+        }
+        if (hand == frame) {
+            hand = ring.size() == 1 ? null : advance(frame);
+        }
+        ring.remove(frame);
+    }
+
+    @Override
+    public Frame chooseVictim(boolean allowDirty) {
+        // two full turns: the first may only clear reference bits
+        for (int i = 0; i < 2 * ring.size(); i++) {
+            Frame frame = hand;
+            hand = advance(frame);
+            if (frame.pinCount.get() != 0 || (frame.isDirty && !allowDirty)) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+            } else {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private Frame advance(Frame frame) {
+        Frame next = ring.next(frame);
+        return next != null ? next : ring.first();
+    }
+}
@@ -0,0 +1,573 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * This DiskManager stores each page of a table compressed, which suits cold tables whose
+ * pages are mostly padding (e.g., short values in {@link colgatedb.tuple.Type#STRING_TYPE}
+ * fields).  Pages are compressed with the JDK's {@link Deflater} at its fastest level.
+ * <p>
+ * Compressed pages vary in size, so a table takes two files:
+ * - the data file, named as in the catalog, holds the compressed pages one after another.
+ *   Each page is given room in multiples of {@link #ALIGNMENT} bytes.
+ * - the page map, named with {@link #MAP_SUFFIX} appended, holds an entry of
+ *   {@link #MAP_ENTRY_SIZE} bytes per page: the page's offset in the data file (a long),
+ *   the number of bytes stored (an int) and the room it was given (an int).
+ * A page is stored as is if it does not compress to less than the page size, and a page
+ * that has only been allocated is stored as no bytes at all: it reads as zeros.
+ * <p>
+ * A page that still fits in its room is rewritten in place.  One that has grown is given
+ * new room, the smallest free piece of the file that fits, or else at the end of the file.
+ * Its page map entry is pointed at the new room only once the data file has been forced,
+ * which is at once under {@link Durability#SYNC_EVERY_WRITE} and otherwise at the next sync
+ * point, so the page map on disk never points at bytes that may not have reached the disk.
+ * Until the page map is forced in turn, it may still point at the old room, so that room
+ * joins the free pieces, the only place new room is taken from besides the end, only once
+ * the file has been forced.  Free space is not recorded on disk; when a table is
+ * opened, it is found as the gaps between the rooms in the page map.  The data file never
+ * shrinks.
+ * <p>
+ * It is selected per table with {@link TableOptions#compressed(boolean)}.
+ */
+public class CompressedDiskManager implements DiskManager {
+
+    public static final String MAP_SUFFIX = ".pagemap";
+    public static final int MAP_ENTRY_SIZE = 16;
+    public static final int ALIGNMENT = 64;
+
+    private final int pageSize;
+    private volatile Durability durability;
+    private final Map<Integer, CompressedFile> files = new ConcurrentHashMap<Integer, CompressedFile>();
+    private final Set<Integer> unforced = ConcurrentHashMap.newKeySet(); // tableids written since last force
+    private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+        @Override
+        protected Codec initialValue() {
+            return new Codec();
+        }
+    };
+
+    public CompressedDiskManager(int pageSize) {
+        this(pageSize, Durability.SYNC_EVERY_WRITE);
+    }
+
+    public CompressedDiskManager(int pageSize, Durability durability) {
+        this.pageSize = pageSize;
+        this.durability = durability;
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, creating the file and its
+     * page map if they do not exist.
+     * @param tableid
+     * @param filename
+     */
+    public void addFileEntry(int tableid, String filename) {
+        removeFileEntry(tableid);
+        FileChannel data = null;
+        try {
+            data = new RandomAccessFile(filename, "rw").getChannel();
+            FileChannel map = new RandomAccessFile(filename + MAP_SUFFIX, "rw").getChannel();
+            files.put(tableid, new CompressedFile(data, map));
+        } catch (IOException e) {
+            closeQuietly(data);
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Forget the given table (if present), forcing and closing its files.
+     * @param tableid
+     */
+    public void removeFileEntry(int tableid) {
+        CompressedFile file = files.remove(tableid);
+        if (file != null) {
+            if (unforced.remove(tableid)) {
+                file.force();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * @return true if the given table is stored by this disk manager
+     */
+    public boolean hasFileEntry(int tableid) {
+        return files.containsKey(tableid);
+    }
+
+    @Override
+    public int getNumPages(int tableid) {
+        return lookupFile(tableid).numPages;
+    }
+
+    /**
+     * @return size in bytes of the table's data file, which is what its pages take on disk,
+     * free pieces included
+     */
+    public long getStoredBytes(int tableid) {
+        CompressedFile file = lookupFile(tableid);
+        synchronized (file) {
+            return file.end;
+        }
+    }
+
+    @Override
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(Durability durability) {
+        force();
+        this.durability = durability;
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+        CompressedFile file = lookupFile(pid.getTableId());
+        synchronized (file) {
+            int pagenoRequested = pid.pageNumber();
+            if (pagenoRequested < file.numPages) {
+                throw new DiskManagerException("Attempting to allocate a page that already exists!" +
+                        " You requested that page " + pagenoRequested + " be allocated but file has " +
+                        file.numPages + "pages.");
+            } else if (pagenoRequested > file.numPages) {
+                throw new DiskManagerException("Attempting to allocate pageno = " + pagenoRequested +
+                        " but file currently has only " + file.numPages + " pages.");
+            }
+            file.grow();
+            file.writeEntry(pagenoRequested);   // no bytes stored: the page is all zeros
+        }
+        written(pid.getTableId());
+    }
+
+    @Override
+    public Page readPage(PageId pid, PageMaker pageMaker) {
+        ByteBuffer data = ByteBuffer.allocate(pageSize);   // the page may keep it; the codec's is reused
+        readPageInto(pid, data);
+        data.flip();
+        return pageMaker.makePage(pid, data);
+    }
+
+    @Override
+    public void readPageInto(PageId pid, ByteBuffer dst) {
+        if (dst.remaining() < pageSize) {
+            throw new DiskManagerException("buffer has room for " + dst.remaining() + " bytes, page is " + pageSize);
+        }
+        Codec codec = codecs.get();
+        readPageData(pid, codec);
+        dst.put(codec.page);
+    }
+
+    /**
+     * Reads the page's stored bytes and expands them into the codec's page array.
+     */
+    private void readPageData(PageId pid, Codec codec) {
+        CompressedFile file = lookupFile(pid.getTableId());
+        int length = file.read(pid.pageNumber(), codec.stored);
+        if (length == 0) {
+            Arrays.fill(codec.page, (byte) 0);
+        } else if (length == pageSize) {
+            System.arraycopy(codec.stored, 0, codec.page, 0, pageSize);
+        } else {
+            codec.inflate(length);
+        }
+    }
+
+    @Override
+    public void writePage(Page page) {
+        PageId pid = page.getId();
+        ByteBuffer pageData = page.getPageBuffer();
+        if (pageData.remaining() != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.remaining() + " bytes, expected " + pageSize);
+        }
+        CompressedFile file = lookupFile(pid.getTableId());
+        Codec codec = codecs.get();
+        pageData.duplicate().get(codec.page);
+        int length = codec.deflate();
+        file.write(pid.pageNumber(), codec.stored, length);
+        written(pid.getTableId());
+    }
+
+    private void written(int tableid) {
+        if (durability.syncEveryWrite()) {
+            lookupFile(tableid).force();
+        } else {
+            unforced.add(tableid);
+        }
+    }
+
+    @Override
+    public void force() {
+        for (Integer tableid : unforced) {
+            if (unforced.remove(tableid)) {
+                CompressedFile file = files.get(tableid);
+                if (file != null) {
+                    file.force();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces any buffered writes and closes every file.  Tables must be re-added before
+     * they can be used again.
+     */
+    public void close() {
+        force();
+        for (Integer tableid : files.keySet()) {
+            removeFileEntry(tableid);
+        }
+    }
+
+    private CompressedFile lookupFile(int tableid) {
+        CompressedFile file = files.get(tableid);
+        if (file == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return file;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already failing
+            }
+        }
+    }
+
+    /**
+     * A thread's compressor and decompressor, with arrays for one page and its stored bytes.
+     */
+    private class Codec {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] page = new byte[pageSize];
+        private final byte[] stored = new byte[pageSize];
+
+        /**
+         * Compresses the page array into the stored array.
+         * @return number of stored bytes: pageSize if the page was copied as is, since it
+         * did not compress to less
+         */
+        int deflate() {
+            deflater.reset();
+            deflater.setInput(page, 0, pageSize);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished() && length < pageSize) {
+                length += deflater.deflate(stored, length, pageSize - length);
+            }
+            if (!deflater.finished() || length == pageSize) {
+                System.arraycopy(page, 0, stored, 0, pageSize);
+                return pageSize;
+            }
+            return length;
+        }
+
+        /**
+         * Expands the first length bytes of the stored array into the page array.
+         */
+        void inflate(int length) {
+            inflater.reset();
+            inflater.setInput(stored, 0, length);
+            int inflated = 0;
+            try {
+                while (!inflater.finished() && inflated < pageSize) {
+                    int n = inflater.inflate(page, inflated, pageSize - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+            } catch (DataFormatException e) {
+                throw new DiskManagerException(e);
+            }
+            if (inflated != pageSize || !inflater.finished()) {
+                throw new DiskManagerException("Corrupt compressed page: expanded to " + inflated + " bytes");
+            }
+        }
+    }
+
+    /**
+     * An open table: its data file and page map, and the page map's entries.
+     */
+    private class CompressedFile {
+        private final FileChannel data;
+        private final FileChannel map;
+        private volatile int numPages;
+        private long[] offsets;
+        private int[] lengths;
+        private int[] capacities;
+        private long end;   // where the next page that needs new room goes, if no free piece fits
+        private final FreeSpace free = new FreeSpace();
+        private final List<long[]> freedSinceForce = new ArrayList<long[]>();   // {offset, size} of old rooms
+        private final BitSet moved = new BitSet();   // pages given new room whose page map entries wait for a force
+
+        CompressedFile(FileChannel data, FileChannel map) throws IOException {
+            this.data = data;
+            this.map = map;
+            if (map.size() % MAP_ENTRY_SIZE != 0) {
+                throw new DiskManagerException("Invalid page map length");
+            }
+            numPages = (int) (map.size() / MAP_ENTRY_SIZE);
+            offsets = new long[Math.max(numPages, 16)];
+            lengths = new int[offsets.length];
+            capacities = new int[offsets.length];
+            ByteBuffer entries = ByteBuffer.allocate(numPages * MAP_ENTRY_SIZE);
+            while (entries.hasRemaining()) {
+                if (map.read(entries, entries.position()) < 0) {
+                    throw new DiskManagerException("Unexpected end of file!");
+                }
+            }
+            entries.flip();
+            for (int i = 0; i < numPages; i++) {
+                offsets[i] = entries.getLong();
+                lengths[i] = entries.getInt();
+                capacities[i] = entries.getInt();
+            }
+            findFreeSpace(data.size());
+        }
+
+        /**
+         * Records the gaps between the pages' rooms as free, including any tail of the data
+         * file that no page map entry points to, and sets the end past the last room.
+         */
+        private void findFreeSpace(long fileSize) {
+            TreeMap<Long, Integer> rooms = new TreeMap<Long, Integer>();
+            for (int i = 0; i < numPages; i++) {
+                if (capacities[i] > 0) {
+                    rooms.put(offsets[i], capacities[i]);
+                }
+            }
+            end = 0;
+            for (Map.Entry<Long, Integer> room : rooms.entrySet()) {
+                if (room.getKey() > end) {
+                    free.add(end, room.getKey() - end);
+                }
+                end = Math.max(end, room.getKey() + room.getValue());
+            }
+            if (fileSize > end) {
+                free.add(end, fileSize - end);
+                end = fileSize;
+            }
+        }
+
+        synchronized void grow() {
+            if (numPages == offsets.length) {
+                offsets = Arrays.copyOf(offsets, numPages * 2);
+                lengths = Arrays.copyOf(lengths, numPages * 2);
+                capacities = Arrays.copyOf(capacities, numPages * 2);
+            }
+            numPages++;
+        }
+
+        /**
+         * Reads the page's stored bytes into the array.
+         * @return the number of bytes read
+         */
+        synchronized int read(int pageno, byte[] dst) {
+            if (pageno < 0 || pageno >= numPages) {
+                throw new DiskManagerException("Attempting to read beyond end of file!");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(dst, 0, lengths[pageno]);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (data.read(buffer, offsets[pageno] + buffer.position()) < 0) {
+                        throw new DiskManagerException("Unexpected end of file!");
+                    }
+                }
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+            return lengths[pageno];
+        }
+
+        /**
+         * Stores the page's bytes in place if they fit in its room, and otherwise in new room,
+         * then updates its page map entry.
+         */
+        synchronized void write(int pageno, byte[] src, int length) {
+            if (pageno < 0 || pageno >= numPages) {
+                throw new DiskManagerException("Writing a page beyond end of file");
+            }
+            if (length > capacities[pageno]) {
+                if (capacities[pageno] > 0) {
+                    freedSinceForce.add(new long[]{offsets[pageno], capacities[pageno]});
+                }
+                int room = (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+                long offset = free.take(room);
+                if (offset < 0) {
+                    offset = end;
+                    end += room;
+                }
+                offsets[pageno] = offset;
+                capacities[pageno] = room;
+                moved.set(pageno);
+            }
+            lengths[pageno] = length;
+            ByteBuffer buffer = ByteBuffer.wrap(src, 0, length);
+            try {
+                while (buffer.hasRemaining()) {
+                    data.write(buffer, offsets[pageno] + buffer.position());
+                }
+                if (!moved.get(pageno)) {
+                    writeEntry(pageno);
+                } else if (durability.syncEveryWrite()) {
+                    forceData();
+                }
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+
+        synchronized void writeEntry(int pageno) {
+            ByteBuffer entry = ByteBuffer.allocate(MAP_ENTRY_SIZE);
+            entry.putLong(offsets[pageno]).putInt(lengths[pageno]).putInt(capacities[pageno]);
+            entry.flip();
+            try {
+                while (entry.hasRemaining()) {
+                    map.write(entry, (long) pageno * MAP_ENTRY_SIZE + entry.position());
+                }
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+
+        /**
+         * Forces the data file, then points the page map entries of pages given new room since
+         * at it.  The entries are written but not forced.
+         */
+        private void forceData() throws IOException {
+            data.force(true);
+            for (int pageno = moved.nextSetBit(0); pageno >= 0; pageno = moved.nextSetBit(pageno + 1)) {
+                writeEntry(pageno);
+            }
+            moved.clear();
+        }
+
+        /**
+         * Forces the data file and then the page map, after which no page map entry on disk
+         * points at old rooms, so they can be reused.
+         */
+        synchronized void force() {
+            try {
+                forceData();
+                map.force(true);
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+            for (long[] room : freedSinceForce) {
+                free.add(room[0], room[1]);
+            }
+            freedSinceForce.clear();
+        }
+
+        synchronized void close() {
+            try {
+                data.close();
+                map.close();
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+    }
+
+    /**
+     * The free pieces of a data file, by offset, to merge neighbors, and by size, to find
+     * the smallest piece that fits.
+     */
+    private static class FreeSpace {
+        private final TreeMap<Long, Long> byOffset = new TreeMap<Long, Long>();
+        private final TreeMap<Long, TreeSet<Long>> bySize = new TreeMap<Long, TreeSet<Long>>();
+
+        /**
+         * Frees the piece, merging it with free neighbors.
+         */
+        void add(long offset, long size) {
+            Map.Entry<Long, Long> before = byOffset.lowerEntry(offset);
+            if (before != null && before.getKey() + before.getValue() == offset) {
+                remove(before.getKey(), before.getValue());
+                offset = before.getKey();
+                size += before.getValue();
+            }
+            Long after = byOffset.get(offset + size);
+            if (after != null) {
+                remove(offset + size, after);
+                size += after;
+            }
+            put(offset, size);
+        }
+
+        /**
+         * Carves room of the given size out of the smallest free piece that fits.
+         * @return the room's offset, or -1 if no piece is big enough
+         */
+        long take(long size) {
+            Map.Entry<Long, TreeSet<Long>> fit = bySize.ceilingEntry(size);
+            if (fit == null) {
+                return -1;
+            }
+            long offset = fit.getValue().first();
+            remove(offset, fit.getKey());
+            if (fit.getKey() > size) {
+                put(offset + size, fit.getKey() - size);
+            }
+            return offset;
+        }
+
+        private void put(long offset, long size) {
+            byOffset.put(offset, size);
+            TreeSet<Long> offsets = bySize.get(size);
+            if (offsets == null) {
+                offsets = new TreeSet<Long>();
+                bySize.put(size, offsets);
+            }
+            offsets.add(offset);
+        }
+
+        private void remove(long offset, long size) {
+            byOffset.remove(offset);
+            TreeSet<Long> offsets = bySize.get(size);
+            offsets.remove(offset);
+            if (offsets.isEmpty()) {
+                bySize.remove(size);
+            }
+        }
+    }
+}
@@ -2,7 +2,10 @@ package colgatedb;
 
 import colgatedb.logging.LogFile;
 
+import javax.management.JMException;
+
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -38,10 +41,22 @@ public class Database {
     // default settings
     private static final int DEFAULT_PAGE_SIZE = 4096;
     private static final int DEFAULT_POOL_SIZE = 10;   // number of pages in buffer pool
+    private static final Durability DEFAULT_DURABILITY = Durability.SYNC_EVERY_WRITE;
+    private static final ReplacementPolicyType DEFAULT_REPLACEMENT_POLICY = ReplacementPolicyType.LRU;
+    private static final boolean DEFAULT_OFF_HEAP_POOL = false;
+    private static final long DEFAULT_FRAME_WAIT_MILLIS = 0;   // misses fail at once when every frame is pinned
+    private static final boolean DEFAULT_FAIR_FRAME_WAIT = false;
+    private static final int DEFAULT_PIN_LIMIT = 0;             // no limit
 
     // actual settings
     private static int pageSize = DEFAULT_PAGE_SIZE;
     private static int poolSize = DEFAULT_POOL_SIZE;
+    private static Durability durability = DEFAULT_DURABILITY;
+    private static ReplacementPolicyType replacementPolicy = DEFAULT_REPLACEMENT_POLICY;
+    private static boolean offHeapPool = DEFAULT_OFF_HEAP_POOL;
+    private static long frameWaitMillis = DEFAULT_FRAME_WAIT_MILLIS;
+    private static boolean fairFrameWait = DEFAULT_FAIR_FRAME_WAIT;
+    private static int pinLimit = DEFAULT_PIN_LIMIT;
 
     private static AtomicReference<Database> _instance = new AtomicReference<Database>(new Database());
     private final Catalog _catalog;
@@ -50,15 +65,16 @@ public class Database {
     private AccessManager _accessManager;
 
     private final static String LOGFILENAME = "log";
+    private final static String WARMUP_FILENAME = "bufferpool.warmup";
     private LogFile _logfile;
 
     /**
      * Constructor is private: ensures only one instance of Database (singleton design pattern).
      */
     private Database() {
-        _diskManager = new DiskManagerImpl(pageSize);
+        _diskManager = new DiskManagerImpl(pageSize, durability);
         _catalog = new Catalog(pageSize, _diskManager);
-        _bufferManager = new BufferManagerImpl(poolSize, _diskManager);
+        _bufferManager = newBufferManager(poolSize, _diskManager);
 
         AccessManager tmpAM = null;
         try {
@@ -81,12 +97,27 @@ public class Database {
             System.err.println("Warning: unable to initialize log file");
         }
         _logfile = tmpLF;
+        useLogFile(_bufferManager, _logfile);
     }
 
     public static int getPageSize() {
         return pageSize;
     }
 
+    public static Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Change when page writes are forced to disk.  Unlike the page size and pool size, this
+     * takes effect immediately, without replacing the catalog or buffer pool.
+     * @see Durability
+     */
+    public static void setDurability(Durability durability) {
+        Database.durability = durability;
+        _instance.get()._diskManager.setDurability(durability);
+    }
+
     public static DiskManagerImpl getDiskManager() {
         return _instance.get()._diskManager;
     }
@@ -114,10 +145,83 @@ public class Database {
     }
 
 
+    /**
+     * Opens the database: loads the catalog from the schema file and then, if the last
+     * {@link #close()} left a snapshot of the buffer pool, reads those pages back in on a
+     * background thread (see {@link #warmUpBufferPool()}).  Loading the schema with
+     * {@link Catalog#loadSchema} alone does neither.
+     * @param schemaFile the catalog to load
+     */
+    public static void open(String schemaFile) {
+        getCatalog().loadSchema(schemaFile);
+        warmUpBufferPool();
+    }
+
+    /**
+     * Closes the database: records which pages are in the buffer pool for the next
+     * {@link #open}, shuts down the log (whose final checkpoint writes the dirty pages), and
+     * releases the buffer pool's threads and the open files.  The database must not be used
+     * afterwards except through {@link #reset()}.
+     */
+    public static void close() {
+        Database db = _instance.get();
+        saveBufferPoolSnapshot();
+        try {
+            if (db._logfile != null) {
+                db._logfile.shutdown();
+            } else {
+                db._bufferManager.flushAllPages();
+            }
+        } finally {
+            db._bufferManager.shutdown();
+            db._diskManager.close();
+            db._catalog.closeDictionaries();
+        }
+    }
+
+    /**
+     * Records which pages are in the buffer pool, for {@link #warmUpBufferPool()} after a
+     * restart.  Called by {@link #close()}.
+     */
+    public static void saveBufferPoolSnapshot() {
+        BufferManager bm = getBufferManager();
+        if (bm instanceof BufferManagerImpl) {
+            try {
+                BufferPoolWarmer.save(((BufferManagerImpl) bm).residentPages(), new File(WARMUP_FILENAME));
+            } catch (IOException e) {
+                System.err.println("Warning: unable to save buffer pool snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the pages recorded by the last {@link #saveBufferPoolSnapshot()} back into the
+     * buffer pool, in the background and at a limited rate.  Called by {@link #open} once the
+     * catalog is loaded; does nothing if there is no snapshot.
+     */
+    public static void warmUpBufferPool() {
+        File file = new File(WARMUP_FILENAME);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            BufferPoolWarmer.warmUp(getBufferManager(), getCatalog(), BufferPoolWarmer.load(file),
+                    poolSize, BufferPoolWarmer.DEFAULT_PAGES_PER_SECOND);
+        } catch (IOException e) {
+            System.err.println("Warning: unable to read buffer pool snapshot: " + e.getMessage());
+        }
+    }
+
     // ----------------- methods below are primarily used for testing ------------------------
+    /**
+     * Replaces the buffer pool with an empty one, throwing away the old pool's pages, dirty
+     * ones included, as a crash would.  The old pool's background threads are stopped, as
+     * in {@link #replaceInstance()}.
+     */
     public static AccessManager resetBufferPool(int numPages) {
-        _instance.get()._bufferManager = new BufferManagerImpl(numPages,
-                _instance.get()._diskManager);
+        _instance.get()._bufferManager.shutdown();
+        _instance.get()._bufferManager = newBufferManager(numPages, _instance.get()._diskManager);
+        useLogFile(_instance.get()._bufferManager, _instance.get()._logfile);
         _instance.get()._accessManager = null;
         try {
             Class<?> logFileClass = Class.forName("colgatedb.AccessManagerImpl");
@@ -137,17 +241,128 @@ public class Database {
     public static void reset() {
         pageSize = DEFAULT_PAGE_SIZE;
         poolSize = DEFAULT_POOL_SIZE;
-        _instance.set(new Database());
+        durability = DEFAULT_DURABILITY;
+        replacementPolicy = DEFAULT_REPLACEMENT_POLICY;
+        offHeapPool = DEFAULT_OFF_HEAP_POOL;
+        frameWaitMillis = DEFAULT_FRAME_WAIT_MILLIS;
+        fairFrameWait = DEFAULT_FAIR_FRAME_WAIT;
+        pinLimit = DEFAULT_PIN_LIMIT;
+        replaceInstance();
     }
 
     public static void setPageSize(int pageSize) {
         Database.pageSize = pageSize;
-        _instance.set(new Database());
+        replaceInstance();
     }
 
     public static void setBufferPoolSize(int numPages) {
         poolSize = numPages;
-        _instance.set(new Database());
+        replaceInstance();
+    }
+
+    /**
+     * Change the buffer pool's size in place, keeping the pages it holds.  Unlike
+     * setBufferPoolSize, this can be done while transactions are running.
+     * @see BufferManager#resize(int)
+     */
+    public static void resizeBufferPool(int numPages) {
+        getBufferManager().resize(numPages);
+        poolSize = numPages;
+    }
+
+    /**
+     * Carve a partition out of the buffer pool, using the configured replacement policy.
+     * Tables are placed in it with {@link TableOptions#bufferPartition(String)} or
+     * {@link #assignBufferPartition}.
+     * @see BufferManagerImpl#addPartition
+     */
+    public static BufferPartition addBufferPartition(String name, int minPages, int maxPages) {
+        return bufferManagerImpl().addPartition(name, minPages, maxPages,
+                replacementPolicy.newPolicy(Math.min(maxPages, poolSize)));
+    }
+
+    public static void assignBufferPartition(int tableid, String partitionName) {
+        bufferManagerImpl().assignTable(tableid, partitionName);
+    }
+
+    /**
+     * Let a miss wait for a frame to be unpinned instead of failing when every frame is
+     * pinned.  Like setDurability, this takes effect immediately.
+     * @see BufferManagerImpl#setFrameWait
+     */
+    public static void setFrameWait(long timeoutMillis, boolean fair) {
+        frameWaitMillis = timeoutMillis;
+        fairFrameWait = fair;
+        bufferManagerImpl().setFrameWait(timeoutMillis, fair);
+    }
+
+    /**
+     * Limit how many pages one thread (and so one transaction) may have pinned at once.
+     * Like setDurability, this takes effect immediately.
+     * @see BufferManagerImpl#setPinLimit
+     */
+    public static void setPinLimit(int maxPins) {
+        pinLimit = maxPins;
+        bufferManagerImpl().setPinLimit(maxPins);
+    }
+
+    private static BufferManagerImpl bufferManagerImpl() {
+        BufferManager bm = getBufferManager();
+        if (!(bm instanceof BufferManagerImpl)) {
+            throw new DbException("Buffer manager does not support partitions");
+        }
+        return (BufferManagerImpl) bm;
+    }
+
+    public static ReplacementPolicyType getReplacementPolicy() {
+        return replacementPolicy;
+    }
+
+    /**
+     * Choose the buffer pool's replacement policy.  Like setBufferPoolSize, this replaces
+     * the database instance.
+     */
+    public static void setReplacementPolicy(ReplacementPolicyType replacementPolicy) {
+        Database.replacementPolicy = replacementPolicy;
+        replaceInstance();
+    }
+
+    public static boolean isOffHeapPool() {
+        return offHeapPool;
+    }
+
+    /**
+     * Choose whether the buffer pool reads pages into one off-heap arena allocated up front
+     * (see {@link PageArena}) rather than into arrays allocated per read.  Like
+     * setBufferPoolSize, this replaces the database instance.
+     */
+    public static void setOffHeapPool(boolean offHeapPool) {
+        Database.offHeapPool = offHeapPool;
+        replaceInstance();
+    }
+
+    private static BufferManager newBufferManager(int numPages, DiskManager dm) {
+        PageArena arena = offHeapPool ? new PageArena(numPages, pageSize) : null;
+        BufferManagerImpl bm = new BufferManagerImpl(numPages, dm, replacementPolicy.newPolicy(numPages), arena);
+        bm.setFrameWait(frameWaitMillis, fairFrameWait);
+        bm.setPinLimit(pinLimit);
+        try {
+            BufferManagerMetrics.register(bm, pageSize);
+        } catch (JMException e) {
+            System.err.println("Warning: unable to publish buffer pool metrics: " + e.getMessage());
+        }
+        return bm;
+    }
+
+    /**
+     * Installs a fresh Database instance and releases the resources (e.g., open files)
+     * held by the one it replaces.
+     */
+    private static void replaceInstance() {
+        Database old = _instance.getAndSet(new Database());
+        old._bufferManager.shutdown();
+        old._diskManager.close();
+        old._catalog.closeDictionaries();
     }
 
     // -- new: added on 12/1/16
@@ -165,5 +380,15 @@ public class Database {
 
     public static void setLogFile(LogFile lf) {
         _instance.get()._logfile = lf;
+        useLogFile(_instance.get()._bufferManager, lf);
+    }
+
+    /**
+     * Lets the buffer manager force the log before it writes pages in the background.
+     */
+    private static void useLogFile(BufferManager bufferManager, LogFile lf) {
+        if (bufferManager instanceof BufferManagerImpl) {
+            ((BufferManagerImpl) bufferManager).setLogFile(lf);
+        }
     }
 }
@@ -3,6 +3,11 @@ package colgatedb;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ColgateDB
@@ -37,6 +42,12 @@ public interface DiskManager {
      */
     void allocatePage(PageId pid);
 
+    /**
+     * @param tableid the table of interest
+     * @return the number of pages currently allocated to the table
+     */
+    int getNumPages(int tableid);
+
     /**
      * Read a page from disk and create an in-memory representation (Page object).
      * @param pid of the desired page
@@ -45,10 +56,64 @@ public interface DiskManager {
      */
     Page readPage(PageId pid, PageMaker pageMaker);
 
+    /**
+     * Read a run of consecutive pages of one table.  Implementations should do this with as few
+     * I/O requests as possible; the default implementation simply reads one page at a time.
+     * @param tableid the table to read from
+     * @param firstPage page number of the first page in the run
+     * @param count the number of pages desired; fewer are returned if the file ends first
+     * @param pageMaker object capable of building pages from bytes
+     * @return the pages, in page number order
+     */
+    default List<Page> readPages(int tableid, int firstPage, int count, PageMaker pageMaker) {
+        int end = Math.min(firstPage + count, getNumPages(tableid));
+        List<Page> pages = new ArrayList<Page>();
+        for (int pageno = firstPage; pageno < end; pageno++) {
+            pages.add(readPage(new SimplePageId(tableid, pageno), pageMaker));
+        }
+        return pages;
+    }
+
+    /**
+     * Read a page's bytes into a buffer supplied by the caller, such as a frame of an off-heap
+     * buffer pool, without building a Page.  The bytes are put at the buffer's position, which
+     * is advanced by the page size.
+     * @param pid of the desired page
+     * @param dst buffer with at least a page's worth of space remaining
+     */
+    void readPageInto(PageId pid, ByteBuffer dst);
+
     /**
      * Write an in-memory Page object to disk.  Uses {@link Page#getId()} to determine where page
      * should be written.
      * @param page to write to disk.
      */
     void writePage(Page page);
+
+    /**
+     * Write a run of pages of one table with consecutive page numbers.  Implementations should
+     * do this with as few I/O requests as possible; the default implementation simply writes
+     * one page at a time.
+     * @param pages the pages to write, in page number order
+     */
+    default void writePages(List<Page> pages) {
+        for (Page page : pages) {
+            writePage(page);
+        }
+    }
+
+    /**
+     * @return the durability setting of this disk manager
+     * @see Durability
+     */
+    default Durability getDurability() {
+        return Durability.SYNC_EVERY_WRITE;
+    }
+
+    /**
+     * Force every file written since the last call to stable storage.  Disk managers whose
+     * writes are already synchronous have nothing to do here.
+     */
+    default void force() {
+    }
 }
\ No newline at end of file
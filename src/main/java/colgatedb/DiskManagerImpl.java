@@ -3,12 +3,20 @@ package colgatedb;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ColgateDB
@@ -38,15 +46,65 @@ import java.util.Map;
  * tableid and OS file.  This is the responsibility of the {@link Catalog}.  Whenever
  * a DiskManagerImpl instance is created, the creator is responsible for calling
  * {@link #addFileEntry(int, String)} to update the DiskManager's local mapping.
+ *
+ * Each table file is opened once, on first use, and its FileChannel is kept open until
+ * {@link #close()} is called.  Pages are read and written with positional I/O on that
+ * channel, which does not touch the channel's file pointer, so concurrent callers can
+ * safely share it.  An interrupt of a thread in I/O closes the channel for every thread
+ * using it, so a call whose channel is closed under it reopens the file and tries again;
+ * the interrupted thread gets its interrupt status back once its call is done.
+ *
+ * Files are opened in "rws" mode when the {@link Durability} setting is SYNC_EVERY_WRITE.
+ * Otherwise they are opened in "rw" mode, the disk manager remembers which tables have been
+ * written, and {@link #force()} forces each of those files once.
+ *
+ * Tables registered with {@link TableOptions#memoryMapped(boolean)} are handed off to a
+ * {@link MappedDiskManager}, and those registered with {@link TableOptions#compressed(boolean)}
+ * to a {@link CompressedDiskManager}; every method here routes their pages there.
  */
 public class DiskManagerImpl implements DiskManager {
 
-    private static final String MODE = "rws";
+    private static final String SYNC_MODE = "rws";
+    private static final String BUFFERED_MODE = "rw";
     private final int pageSize;
-    Map<Integer, String> filenames = new HashMap<Integer, String>(); // local mapping from tableid to OS filename
+    private volatile Durability durability;
+    Map<Integer, String> filenames = new ConcurrentHashMap<Integer, String>(); // local mapping from tableid to OS filename
+    private final Map<Integer, FileChannel> channels = new ConcurrentHashMap<Integer, FileChannel>(); // open file per tableid
+    private final Set<Integer> unforced = ConcurrentHashMap.newKeySet(); // tableids written since last force
+    private final Set<Integer> mappedTables = ConcurrentHashMap.newKeySet();  // tableids stored by mappedDM
+    private final MappedDiskManager mappedDM;
+    private final Set<Integer> compressedTables = ConcurrentHashMap.newKeySet();  // tableids stored by compressedDM
+    private final CompressedDiskManager compressedDM;
 
     public DiskManagerImpl(int pageSize) {
+        this(pageSize, Durability.SYNC_EVERY_WRITE);
+    }
+
+    public DiskManagerImpl(int pageSize, Durability durability) {
         this.pageSize = pageSize;
+        this.durability = durability;
+        this.mappedDM = new MappedDiskManager(pageSize, durability);
+        this.compressedDM = new CompressedDiskManager(pageSize, durability);
+    }
+
+    @Override
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Change the durability setting.  Any buffered writes are forced first and files are
+     * reopened in the appropriate mode on their next access.
+     * @param durability the new setting
+     */
+    public void setDurability(Durability durability) {
+        synchronized (channels) {
+            force();
+            this.durability = durability;
+            mappedDM.setDurability(durability);
+            compressedDM.setDurability(durability);
+            close();
+        }
     }
 
     /**
@@ -56,12 +114,36 @@ public class DiskManagerImpl implements DiskManager {
      * @param filename
      */
     public void addFileEntry(int tableid, String filename) {
+        addFileEntry(tableid, filename, new TableOptions());
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, storing the table as
+     * described by the given options.
+     * @param tableid
+     * @param filename
+     * @param options
+     */
+    public void addFileEntry(int tableid, String filename, TableOptions options) {
         filenames.put(tableid, filename);
+        closeChannel(tableid);  // the file may have been replaced since it was last opened
+        mappedDM.removeFileEntry(tableid);
+        compressedDM.removeFileEntry(tableid);
+        if (options.isMemoryMapped()) {
+            mappedTables.add(tableid);
+        } else {
+            mappedTables.remove(tableid);
+        }
+        if (options.isCompressed()) {
+            compressedTables.add(tableid);
+        } else {
+            compressedTables.remove(tableid);
+        }
         File file = new File(filename);
         // check if file already exists
         if (!file.isFile()) {
             try {
-                RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
+                RandomAccessFile dataFile = new RandomAccessFile(file, SYNC_MODE);
                 dataFile.close();
             } catch (IOException e) {
                 throw new DiskManagerException(e);
@@ -69,9 +151,18 @@ public class DiskManagerImpl implements DiskManager {
         }
     }
 
+    @Override
     public int getNumPages(int tableid) {
-        File file = new File(filenames.get(tableid));
-        long length = file.length();
+        DiskManager other = delegateFor(tableid);
+        if (other != null) {
+            return other.getNumPages(tableid);
+        }
+        long length = onChannel(tableid, new ChannelIO<Long>() {
+            @Override
+            Long run(FileChannel channel) throws IOException {
+                return channel.size();
+            }
+        });
         if (length % pageSize != 0) {
             throw new DiskManagerException("Invalid Length");
         }
@@ -79,6 +170,11 @@ public class DiskManagerImpl implements DiskManager {
     }
 
     public void allocatePage(PageId pid) {
+        DiskManager other = delegateFor(pid.getTableId());
+        if (other != null) {
+            other.allocatePage(pid);
+            return;
+        }
         // check that page being allocated is next page in file
         int pagenoRequested = pid.pageNumber();
         int numPages = getNumPages(pid.getTableId());
@@ -90,61 +186,352 @@ public class DiskManagerImpl implements DiskManager {
                     " but file currently has only " + numPages + " pages.");
         }
         byte[] emptyBytes = new byte[pageSize];
-        writePageData(pid, emptyBytes);
+        writePageData(pid, ByteBuffer.wrap(emptyBytes));
     }
 
     public Page readPage(PageId pid, PageMaker pageMaker) {
+        DiskManager other = delegateFor(pid.getTableId());
+        if (other != null) {
+            return other.readPage(pid, pageMaker);
+        }
         byte[] bytes = readPageData(pid);
         return pageMaker.makePage(pid, bytes);
     }
 
+    /**
+     * Reads the run of pages with a single positional read into one buffer, then builds each
+     * page from its slice of that buffer.
+     */
+    @Override
+    public List<Page> readPages(int tableid, int firstPage, int count, PageMaker pageMaker) {
+        DiskManager other = delegateFor(tableid);
+        if (other != null) {
+            return other.readPages(tableid, firstPage, count, pageMaker);
+        }
+        int numPages = Math.min(count, getNumPages(tableid) - firstPage);
+        List<Page> pages = new ArrayList<Page>();
+        if (numPages <= 0) {
+            return pages;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(numPages * pageSize);
+        final long offset = (long) firstPage * pageSize;
+        onChannel(new SimplePageId(tableid, firstPage), new ChannelIO<Void>() {
+            @Override
+            Void run(FileChannel channel) throws IOException {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new DiskManagerException("Unexpected end of file!");
+                    }
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < numPages; i++) {
+            buffer.limit((i + 1) * pageSize);
+            buffer.position(i * pageSize);
+            pages.add(pageMaker.makePage(new SimplePageId(tableid, firstPage + i), buffer.slice()));
+        }
+        return pages;
+    }
+
     public void writePage(Page page) {
         PageId pid = page.getId();
-        byte[] pageData = page.getPageData();
-        writePageData(pid, pageData);
+        DiskManager other = delegateFor(pid.getTableId());
+        if (other != null) {
+            other.writePage(page);
+            return;
+        }
+        writePageData(pid, page.getPageBuffer());
     }
 
-    private void writePageData(PageId pid, byte[] pageData) {
-        if (pageData.length != pageSize) {
-            throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+    /**
+     * Writes the run with one gathering write, so a run costs a single request (and, with
+     * {@link Durability#SYNC_EVERY_WRITE}, a single sync) however many pages it holds.
+     */
+    @Override
+    public void writePages(List<Page> pages) {
+        if (pages.isEmpty()) {
+            return;
         }
-        File file = lookupFile(pid);
-        try {
-            RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
-            int offset = pid.pageNumber() * pageSize;
-            if (offset > dataFile.length()) {
-                throw new RuntimeException("Writing a page beyond end of file");
+        PageId first = pages.get(0).getId();
+        DiskManager other = delegateFor(first.getTableId());
+        if (other != null) {
+            other.writePages(pages);
+            return;
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[pages.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            PageId pid = pages.get(i).getId();
+            if (pid.getTableId() != first.getTableId() || pid.pageNumber() != first.pageNumber() + i) {
+                throw new DiskManagerException("Pages to write are not a consecutive run: " + pid);
+            }
+            buffers[i] = pages.get(i).getPageBuffer();
+            if (buffers[i].remaining() != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + buffers[i].remaining() + " bytes, expected " + pageSize);
             }
-            dataFile.seek(offset);
-            dataFile.write(pageData);
-            dataFile.close();
-        } catch (IOException e) {
-            throw new DiskManagerException(e);
+        }
+        final int[] starts = new int[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            starts[i] = buffers[i].position();
+        }
+        final long offset = (long) first.pageNumber() * pageSize;
+        onChannel(first, new ChannelIO<Void>() {
+            @Override
+            Void run(FileChannel channel) throws IOException {
+                if (offset > channel.size()) {
+                    throw new RuntimeException("Writing a page beyond end of file");
+                }
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i].position(starts[i]);   // from the start again on a retry
+                }
+                // FileChannel has no positional gathering write; other writes and reads are
+                // positional and do not depend on the channel's position
+                synchronized (channel) {
+                    channel.position(offset);
+                    long remaining = (long) buffers.length * pageSize;
+                    while (remaining > 0) {
+                        remaining -= channel.write(buffers);
+                    }
+                }
+                return null;
+            }
+        });
+        if (!durability.syncEveryWrite()) {
+            unforced.add(first.getTableId());
+        }
+    }
+
+    private void writePageData(PageId pid, final ByteBuffer buffer) {
+        if (buffer.remaining() != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + buffer.remaining() + " bytes, expected " + pageSize);
+        }
+        final long offset = (long) pid.pageNumber() * pageSize;
+        final int start = buffer.position();
+        onChannel(pid, new ChannelIO<Void>() {
+            @Override
+            Void run(FileChannel channel) throws IOException {
+                if (offset > channel.size()) {
+                    throw new RuntimeException("Writing a page beyond end of file");
+                }
+                buffer.position(start);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + buffer.position() - start);
+                }
+                return null;
+            }
+        });
+        if (!durability.syncEveryWrite()) {
+            unforced.add(pid.getTableId());
         }
     }
 
     private byte[] readPageData(PageId pid) {
-        File file = lookupFile(pid);
-        try {
-            RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
-            if (dataFile.length() < pageSize * pid.pageNumber() + pageSize) {
-                throw new DiskManagerException("Attempting to read beyond end of file!");
+        byte[] data = new byte[pageSize];
+        readPageData(pid, ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Reads the page straight into the caller's buffer (e.g., a frame of an off-heap pool)
+     * with positional reads, so no intermediate array is allocated.
+     */
+    @Override
+    public void readPageInto(PageId pid, ByteBuffer dst) {
+        DiskManager other = delegateFor(pid.getTableId());
+        if (other != null) {
+            other.readPageInto(pid, dst);
+            return;
+        }
+        if (dst.remaining() < pageSize) {
+            throw new DiskManagerException("buffer has room for " + dst.remaining() + " bytes, page is " + pageSize);
+        }
+        ByteBuffer buffer = dst.duplicate();
+        buffer.limit(buffer.position() + pageSize);
+        readPageData(pid, buffer);
+        dst.position(buffer.position());
+    }
+
+    /**
+     * Fills the buffer, from its position to its limit, with the start of the page.
+     */
+    private void readPageData(PageId pid, final ByteBuffer buffer) {
+        final long offset = (long) pid.pageNumber() * pageSize;
+        final int start = buffer.position();
+        onChannel(pid, new ChannelIO<Void>() {
+            @Override
+            Void run(FileChannel channel) throws IOException {
+                if (channel.size() < offset + pageSize) {
+                    throw new DiskManagerException("Attempting to read beyond end of file!");
+                }
+                buffer.position(start);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position() - start) < 0) {
+                        throw new DiskManagerException("Unexpected end of file!");
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return the disk manager that stores the table, (re)opened there if necessary, or null
+     * if the table is stored here.
+     */
+    private DiskManager delegateFor(int tableid) {
+        if (mappedTables.contains(tableid)) {
+            if (!mappedDM.hasFileEntry(tableid)) {
+                synchronized (mappedDM) {
+                    if (!mappedDM.hasFileEntry(tableid)) {
+                        mappedDM.addFileEntry(tableid, filenames.get(tableid));
+                    }
+                }
+            }
+            return mappedDM;
+        }
+        if (compressedTables.contains(tableid)) {
+            if (!compressedDM.hasFileEntry(tableid)) {
+                synchronized (compressedDM) {
+                    if (!compressedDM.hasFileEntry(tableid)) {
+                        compressedDM.addFileEntry(tableid, filenames.get(tableid));
+                    }
+                }
             }
-            dataFile.seek(pageSize * pid.pageNumber());
-            byte[] data = new byte[pageSize];
-            dataFile.read(data);
-            dataFile.close();
-            return data;
-        } catch (IOException e) {
-            throw new DiskManagerException(e);
+            return compressedDM;
         }
+        return null;
     }
 
-    private File lookupFile(PageId pid) {
+    /**
+     * @return size in bytes of the table's data on disk: its file, or for a compressed table,
+     * its compressed pages
+     */
+    public long getStoredBytes(int tableid) {
+        if (delegateFor(tableid) == compressedDM) {
+            return compressedDM.getStoredBytes(tableid);
+        }
+        return (long) getNumPages(tableid) * pageSize;
+    }
+
+    private <T> T onChannel(PageId pid, ChannelIO<T> io) {
         if (!filenames.containsKey(pid.getTableId())) {
             throw new DiskManagerException("No record of this table id!");
         }
-        return new File(filenames.get(pid.getTableId()));
+        return onChannel(pid.getTableId(), io);
+    }
+
+    /**
+     * An I/O call on a table's channel.  It may be run more than once, so it must set up
+     * any buffer positions it depends on itself.
+     */
+    private abstract static class ChannelIO<T> {
+        abstract T run(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Runs the call on the table's channel.  If the channel is closed under it, because this
+     * thread or another one using the channel was interrupted, the call is run again on a
+     * reopened channel.  This thread's interrupt status is cleared for the retry and set
+     * again before returning, so the interrupt is not lost.
+     */
+    private <T> T onChannel(int tableid, ChannelIO<T> io) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return io.run(getChannel(tableid));
+                } catch (ClosedByInterruptException e) {
+                    interrupted = true;
+                    Thread.interrupted();
+                } catch (ClosedChannelException e) {
+                    // closed by another thread's interrupt (AsynchronousCloseException), or
+                    // before this call began: getChannel reopens it
+                } catch (IOException e) {
+                    throw new DiskManagerException(e);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the open channel for the given table, opening the table's file the first
+     * time it is needed.
+     */
+    private FileChannel getChannel(int tableid) {
+        FileChannel channel = channels.get(tableid);
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        synchronized (channels) {
+            channel = channels.get(tableid);
+            if (channel == null || !channel.isOpen()) {
+                String filename = filenames.get(tableid);
+                if (filename == null) {
+                    throw new DiskManagerException("No record of this table id!");
+                }
+                try {
+                    String mode = durability.syncEveryWrite() ? SYNC_MODE : BUFFERED_MODE;
+                    channel = new RandomAccessFile(filename, mode).getChannel();
+                } catch (IOException e) {
+                    throw new DiskManagerException(e);
+                }
+                channels.put(tableid, channel);
+            }
+            return channel;
+        }
+    }
+
+    @Override
+    public void force() {
+        mappedDM.force();
+        compressedDM.force();
+        for (Integer tableid : unforced) {
+            // remove before forcing: a write that races with the force marks the table again
+            if (unforced.remove(tableid)) {
+                onChannel(tableid, new ChannelIO<Void>() {
+                    @Override
+                    Void run(FileChannel channel) throws IOException {
+                        channel.force(true);
+                        return null;
+                    }
+                });
+            }
+        }
+    }
+
+    private void closeChannel(int tableid) {
+        synchronized (channels) {
+            FileChannel channel = channels.remove(tableid);
+            if (channel != null) {
+                try {
+                    if (unforced.remove(tableid) && channel.isOpen()) {
+                        channel.force(true);
+                    }
+                    channel.close();
+                } catch (IOException e) {
+                    throw new DiskManagerException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every open table file, forcing any buffered writes first.  The DiskManager remains usable afterwards: files are
+     * simply reopened on their next access.
+     */
+    public void close() {
+        mappedDM.close();
+        compressedDM.close();
+        synchronized (channels) {
+            for (Integer tableid : channels.keySet()) {
+                closeChannel(tableid);
+            }
+        }
     }
 
 }
@@ -0,0 +1,54 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Durability determines when page writes made by the {@link DiskManager} are forced to
+ * stable storage.
+ * <p>
+ * With SYNC_EVERY_WRITE, each page write reaches the disk (content and metadata) before
+ * it returns.  The other two settings let the operating system buffer page writes and
+ * instead force each file that was written exactly once at a sync point: either whenever
+ * {@link BufferManager#flushAllPages()} completes, or only when the log takes a checkpoint.
+ * Between sync points, durability of committed changes is the log's responsibility.
+ */
+public enum Durability {
+
+    SYNC_EVERY_WRITE,
+    FORCE_ON_FLUSH_ALL,
+    FORCE_ON_CHECKPOINT;
+
+    /**
+     * @return true if page writes must be synchronous
+     */
+    public boolean syncEveryWrite() {
+        return this == SYNC_EVERY_WRITE;
+    }
+
+    /**
+     * @return true if written files should be forced at the end of flushAllPages
+     */
+    public boolean forceOnFlushAll() {
+        return this == FORCE_ON_FLUSH_ALL;
+    }
+
+    /**
+     * @return true if written files should be forced when a checkpoint is taken
+     */
+    public boolean forceOnCheckpoint() {
+        return this != SYNC_EVERY_WRITE;
+    }
+}
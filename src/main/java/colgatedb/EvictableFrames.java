@@ -0,0 +1,177 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * One of a replacement policy's queues of frames, such as LRU's list or 2Q's A1in.  A frame
+ * belongs to the queue from when it is loaded until it is removed or moved to another
+ * queue, but sits on the queue's lists only while it is unpinned: on one list if it is
+ * clean and on another if it is dirty, each ordered by the frames' places in the queue.
+ * The oldest frame that may be evicted is therefore always at the head of a list, however
+ * many pinned or dirty frames the queue holds.
+ * <p>
+ * That order is exact, unlike the approximate order of a queue that just appends, and is
+ * kept by walking a list to the frame's place whenever it joins one.  The walk is linear in
+ * the length of the list; see {@link #unpinned} and {@link #cleaned} for when it is short.
+ * <p>
+ * Like the policies, this relies on the buffer manager's lock and on {@link Frame#lastUsed}
+ * having been updated before each call.
+ */
+class EvictableFrames {
+
+    private final boolean fifo;
+    private final FrameList clean = new FrameList();
+    private final FrameList dirty = new FrameList();
+    private int size = 0;
+
+    /**
+     * @param fifo whether a frame keeps the place it got when it joined the queue, rather
+     *             than moving to the newest end each time it is unpinned
+     */
+    EvictableFrames(boolean fifo) {
+        this.fifo = fifo;
+    }
+
+    /**
+     * The frame joins this queue at the newest end, leaving the queue it was in, if any.
+     * It is taken to be pinned.
+     */
+    void add(Frame frame) {
+        if (frame.home != null) {
+            frame.home.remove(frame);
+        }
+        frame.home = this;
+        frame.queuedAt = frame.lastUsed;
+        size++;
+    }
+
+    /**
+     * The frame leaves this queue, if it is in it.
+     * @return true if it was
+     */
+    boolean remove(Frame frame) {
+        if (frame.home != this) {
+            return false;
+        }
+        if (frame.list != null) {
+            frame.list.remove(frame);
+        }
+        frame.home = null;
+        size--;
+        return true;
+    }
+
+    boolean contains(Frame frame) {
+        return frame.home == this;
+    }
+
+    /**
+     * @return true if the frame is in this queue and was unpinned when last reported
+     */
+    boolean isUnpinned(Frame frame) {
+        return frame.home == this && frame.list != null;
+    }
+
+    /**
+     * The frame was pinned, so it is not a candidate for eviction until it is unpinned.
+     */
+    void pinned(Frame frame) {
+        if (frame.home == this && frame.list != null) {
+            frame.list.remove(frame);
+        }
+    }
+
+    /**
+     * The frame's pin count dropped to zero.  It goes on the clean or dirty list at its
+     * place in the queue, which is the newest end unless the queue is FIFO.  The list is
+     * walked from the newest end, so this is constant time unless the queue is FIFO or
+     * hits recorded without the lock left newer frames behind this one.
+     */
+    void unpinned(Frame frame) {
+        if (frame.home != this) {
+            return;
+        }
+        if (!fifo) {
+            frame.queuedAt = frame.lastUsed;
+        }
+        frame.unpinnedAt = frame.lastUsed;
+        if (frame.list != null) {
+            frame.list.remove(frame);
+        }
+        FrameList list = frame.isDirty ? dirty : clean;
+        Frame successor = null;
+        for (Frame f = list.last(); f != null && f.queuedAt > frame.queuedAt; f = list.previous(f)) {
+            successor = f;
+        }
+        list.addBefore(successor, frame);
+    }
+
+    /**
+     * The frame's page was written.  If it is unpinned it moves to the clean list, searched
+     * from the oldest end since written pages tend to be old ones.  That holds for pages
+     * written to make room, but not for a flush of every page, where each write may walk
+     * most of the clean list.
+     */
+    void cleaned(Frame frame) {
+        if (frame.home != this || !dirty.contains(frame) || frame.isDirty) {
+            return;
+        }
+        Frame successor = clean.first();
+        while (successor != null && successor.queuedAt < frame.queuedAt) {
+            successor = clean.next(successor);
+        }
+        clean.addBefore(successor, frame);
+    }
+
+    /**
+     * @param allowDirty whether a dirty frame may be chosen
+     * @return the oldest unpinned frame that may be evicted, or null if there is none
+     */
+    Frame chooseVictim(boolean allowDirty) {
+        Frame victim = firstUnpinned(clean);
+        if (allowDirty) {
+            Frame oldestDirty = firstUnpinned(dirty);
+            if (oldestDirty != null && (victim == null || oldestDirty.queuedAt < victim.queuedAt)) {
+                victim = oldestDirty;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Pins and unpins by different threads can be reported out of order, leaving a pinned
+     * frame on a list.  Such frames are taken off as they are found; the unpin still to
+     * come puts them back.  Frames claimed by the buffer manager are skipped but kept.
+     */
+    private static Frame firstUnpinned(FrameList list) {
+        Frame frame = list.first();
+        while (frame != null && frame.pinCount.get() != 0) {
+            Frame next = list.next(frame);
+            if (frame.pinCount.get() > 0) {
+                list.remove(frame);
+            }
+            frame = next;
+        }
+        return frame;
+    }
+
+    /**
+     * @return number of frames in the queue, pinned or not
+     */
+    int size() {
+        return size;
+    }
+}
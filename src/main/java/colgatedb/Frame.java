@@ -0,0 +1,96 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A frame holds one page and maintains state about that page.  Besides the state the
+ * BufferManagerImpl keeps (pin count, dirty bit), a frame carries the links and bits a
+ * {@link ReplacementPolicy} needs, so that policies can track frames without maps of
+ * their own.
+ * <p>
+ * The pin count is updated without locking.  A count of {@link #CLAIMED} marks a frame
+ * that is being evicted and can no longer be pinned.  A frame whose page is still being
+ * read has a null page; threads that want it wait on the frame.
+ */
+public class Frame {
+    static final int CLAIMED = -1;
+    static final int NO_SLOT = -1;
+
+    final PageId pid;
+    volatile Page page;
+    final AtomicInteger pinCount = new AtomicInteger();
+    volatile boolean isDirty;
+    volatile long dirtiedAt;       // System.nanoTime() when the page last went from clean to dirty
+    volatile boolean prefetched;   // read by the prefetcher and not pinned since
+    volatile AccessStrategy ring;  // the bulk-read ring that read this page, while no one else has pinned it
+    volatile RuntimeException loadError;   // set if reading the page failed
+    boolean removed;               // no longer in the page table
+    BufferPartition partition;     // the pool partition the page counts against
+    BufferTableStats tableStats;   // the counters of the page's table
+    int slot = NO_SLOT;            // the page arena slot the page was read into, if any; guarded by the lock
+    final ConcurrentLinkedQueue<AtomicInteger> pinOwners =
+            new ConcurrentLinkedQueue<AtomicInteger>();   // pin counters of threads holding pins under a pin limit
+
+    // replacement policy state, guarded by the buffer manager's lock
+    FrameList list;       // the list this frame is on, if any
+    EvictableFrames home; // the policy queue this frame belongs to, pinned or not
+    long queuedAt;        // the frame's place in that queue, on the buffer manager's clock
+    long unpinnedAt;      // when the policy last learned the frame was unpinned, on the same clock
+    Frame prev;
+    Frame next;
+    boolean referenced;   // CLOCK's reference bit
+    long lastUsed;        // when the buffer manager last learned of a pin or unpin, on its own clock
+
+    Frame(PageId pid, Page page) {
+        this.pid = pid;
+        this.page = page;
+        this.isDirty = false;
+    }
+
+    /**
+     * Increments the pin count unless the frame has been claimed for eviction.
+     * @return the pin count before this pin, or {@link #CLAIMED} if the frame was not pinned
+     */
+    int tryPin() {
+        while (true) {
+            int count = pinCount.get();
+            if (count < 0) {
+                return CLAIMED;
+            }
+            if (pinCount.compareAndSet(count, count + 1)) {
+                return count;
+            }
+        }
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    public int getPinCount() {
+        return pinCount.get();
+    }
+
+    public boolean isDirty() {
+        return isDirty;
+    }
+}
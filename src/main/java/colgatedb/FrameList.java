@@ -0,0 +1,131 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A doubly-linked list of frames threaded through the frames' own links, so adding,
+ * removing and moving a frame take constant time.  A frame is on at most one list.
+ */
+class FrameList {
+    private final Frame head = new Frame(null, null);   // sentinel: head.next is the oldest frame
+    private int size = 0;
+
+    FrameList() {
+        head.prev = head;
+        head.next = head;
+    }
+
+    /**
+     * Appends the frame at the newest end, taking it off whatever list it was on.
+     */
+    void addLast(Frame frame) {
+        if (frame.list != null) {
+            frame.list.remove(frame);
+        }
+        frame.prev = head.prev;
+        frame.next = head;
+        head.prev.next = frame;
+        head.prev = frame;
+        frame.list = this;
+        size++;
+    }
+
+    /**
+     * Inserts the frame just before the given one, or at the newest end if that is null,
+     * taking it off whatever list it was on.
+     */
+    void addBefore(Frame successor, Frame frame) {
+        if (successor == null) {
+            addLast(frame);
+            return;
+        }
+        if (frame.list != null) {
+            frame.list.remove(frame);
+        }
+        frame.prev = successor.prev;
+        frame.next = successor;
+        successor.prev.next = frame;
+        successor.prev = frame;
+        frame.list = this;
+        size++;
+    }
+
+    /**
+     * Removes the frame if it is on this list.
+     * @return true if it was
+     */
+    boolean remove(Frame frame) {
+        if (frame.list != this) {
+            return false;
+        }
+        frame.prev.next = frame.next;
+        frame.next.prev = frame.prev;
+        frame.prev = null;
+        frame.next = null;
+        frame.list = null;
+        size--;
+        return true;
+    }
+
+    boolean contains(Frame frame) {
+        return frame.list == this;
+    }
+
+    /**
+     * @return the oldest frame, or null if the list is empty
+     */
+    Frame first() {
+        return head.next == head ? null : head.next;
+    }
+
+    /**
+     * @return the frame after the given one, toward the newest end, or null at the end
+     */
+    Frame next(Frame frame) {
+        return frame.next == head ? null : frame.next;
+    }
+
+    /**
+     * @return the newest frame, or null if the list is empty
+     */
+    Frame last() {
+        return head.prev == head ? null : head.prev;
+    }
+
+    /**
+     * @return the frame before the given one, toward the oldest end, or null at the start
+     */
+    Frame previous(Frame frame) {
+        return frame.prev == head ? null : frame.prev;
+    }
+
+    /**
+     * @param allowDirty whether a dirty frame qualifies
+     * @return the oldest unpinned frame on the list that may be evicted, or null
+     */
+    Frame firstEvictable(boolean allowDirty) {
+        for (Frame frame = first(); frame != null; frame = next(frame)) {
+            if (frame.pinCount.get() == 0 && (allowDirty || !frame.isDirty)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,62 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Least-recently-used replacement.  Unpinned frames are kept in the order they were last
+ * unpinned, clean and dirty ones on separate lists; pinned frames are on neither.  The
+ * victim is the head of the clean list, or the older of the two heads when dirty frames may
+ * be evicted, so choosing one takes constant time however many pages are dirty.
+ * <p>
+ * The lists are kept in exact order, which {@link EvictableFrames} pays for when a frame
+ * joins one: an unpin usually lands at the newest end at once, but a written frame is
+ * walked to its place among the clean ones, so writing out all dirty pages takes time
+ * proportional to the resident pages times the dirty ones.
+ */
+public class LRUPolicy implements ReplacementPolicy {
+
+    private final EvictableFrames frames = new EvictableFrames(false);
+
+    @Override
+    public void frameLoaded(Frame frame) {
+        frames.add(frame);
+    }
+
+    @Override
+    public void framePinned(Frame frame) {
+        frames.pinned(frame);
+    }
+
+    @Override
+    public void frameUnpinned(Frame frame) {
+        frames.unpinned(frame);
+    }
+
+    @Override
+    public void frameRemoved(Frame frame) {
+        frames.remove(frame);
+    }
+
+    @Override
+    public void frameCleaned(Frame frame) {
+        frames.cleaned(frame);
+    }
+
+    @Override
+    public Frame chooseVictim(boolean allowDirty) {
+        return frames.chooseVictim(allowDirty);
+    }
+}
@@ -0,0 +1,296 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * This DiskManager stores each table in an OS file, laid out exactly like
+ * {@link DiskManagerImpl} does, but accesses the file through memory mappings instead
+ * of read/write calls.
+ * <p>
+ * A file is mapped in fixed-size segments of {@link #SEGMENT_PAGES} pages, each mapped
+ * the first time one of its pages is needed.  A page is read by handing the
+ * {@link PageMaker} a slice of the mapped segment, so no intermediate byte array is
+ * built.  Pages are written by copying into the mapping.  Only the part of a segment
+ * that lies within the file is mapped, so when {@link #allocatePage(PageId)} grows the
+ * file, the last segment is remapped on its next use.
+ * <p>
+ * This suits read-mostly tables: reads cost no system calls once a segment is mapped.
+ * It is selected per table with {@link TableOptions#memoryMapped(boolean)}.
+ */
+public class MappedDiskManager implements DiskManager {
+
+    public static final int SEGMENT_PAGES = 256;
+
+    private final int pageSize;
+    private volatile Durability durability;
+    private final Map<Integer, MappedFile> files = new ConcurrentHashMap<Integer, MappedFile>();
+    private final Set<Integer> unforced = ConcurrentHashMap.newKeySet(); // tableids written since last force
+
+    public MappedDiskManager(int pageSize) {
+        this(pageSize, Durability.SYNC_EVERY_WRITE);
+    }
+
+    public MappedDiskManager(int pageSize, Durability durability) {
+        this.pageSize = pageSize;
+        this.durability = durability;
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, creating the file if
+     * it does not exist.
+     * @param tableid
+     * @param filename
+     */
+    public void addFileEntry(int tableid, String filename) {
+        removeFileEntry(tableid);
+        try {
+            FileChannel channel = new RandomAccessFile(filename, "rw").getChannel();
+            if (channel.size() % pageSize != 0) {
+                channel.close();
+                throw new DiskManagerException("Invalid Length");
+            }
+            files.put(tableid, new MappedFile(channel, (int) (channel.size() / pageSize)));
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Forget the given table (if present), forcing and closing its file.
+     * @param tableid
+     */
+    public void removeFileEntry(int tableid) {
+        MappedFile file = files.remove(tableid);
+        if (file != null) {
+            if (unforced.remove(tableid)) {
+                file.force();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * @return true if the given table is stored by this disk manager
+     */
+    public boolean hasFileEntry(int tableid) {
+        return files.containsKey(tableid);
+    }
+
+    @Override
+    public int getNumPages(int tableid) {
+        return lookupFile(tableid).numPages;
+    }
+
+    @Override
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(Durability durability) {
+        force();
+        this.durability = durability;
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+        MappedFile file = lookupFile(pid.getTableId());
+        synchronized (file) {
+            int pagenoRequested = pid.pageNumber();
+            if (pagenoRequested < file.numPages) {
+                throw new DiskManagerException("Attempting to allocate a page that already exists!" +
+                        " You requested that page " + pagenoRequested + " be allocated but file has " +
+                        file.numPages + "pages.");
+            } else if (pagenoRequested > file.numPages) {
+                throw new DiskManagerException("Attempting to allocate pageno = " + pagenoRequested +
+                        " but file currently has only " + file.numPages + " pages.");
+            }
+            try {
+                ByteBuffer emptyBytes = ByteBuffer.allocate(pageSize);
+                long offset = (long) pagenoRequested * pageSize;
+                while (emptyBytes.hasRemaining()) {
+                    file.channel.write(emptyBytes, offset + emptyBytes.position());
+                }
+                if (durability.syncEveryWrite()) {
+                    file.channel.force(true);
+                }
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+            file.numPages++;
+            file.invalidate(pagenoRequested / SEGMENT_PAGES);  // segment covering new page must grow
+        }
+    }
+
+    @Override
+    public Page readPage(PageId pid, PageMaker pageMaker) {
+        return pageMaker.makePage(pid, pageSlice(pid).asReadOnlyBuffer());
+    }
+
+    @Override
+    public void readPageInto(PageId pid, ByteBuffer dst) {
+        dst.put(pageSlice(pid));
+    }
+
+    @Override
+    public void writePage(Page page) {
+        PageId pid = page.getId();
+        ByteBuffer pageData = page.getPageBuffer();
+        if (pageData.remaining() != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.remaining() + " bytes, expected " + pageSize);
+        }
+        pageSlice(pid).put(pageData);
+        if (durability.syncEveryWrite()) {
+            lookupFile(pid.getTableId()).segment(pid.pageNumber() / SEGMENT_PAGES).force();
+        } else {
+            unforced.add(pid.getTableId());
+        }
+    }
+
+    @Override
+    public void force() {
+        for (Integer tableid : unforced) {
+            if (unforced.remove(tableid)) {
+                MappedFile file = files.get(tableid);
+                if (file != null) {
+                    file.force();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces any buffered writes and closes every file.  Tables must be re-added before
+     * they can be used again.
+     */
+    public void close() {
+        force();
+        for (Integer tableid : files.keySet()) {
+            removeFileEntry(tableid);
+        }
+    }
+
+    /**
+     * @return a buffer whose position and limit delimit the page within its mapped segment
+     */
+    private ByteBuffer pageSlice(PageId pid) {
+        MappedFile file = lookupFile(pid.getTableId());
+        int pageno = pid.pageNumber();
+        if (pageno < 0 || pageno >= file.numPages) {
+            throw new DiskManagerException("Attempting to access page " + pageno + " beyond end of file!");
+        }
+        ByteBuffer slice = file.segment(pageno / SEGMENT_PAGES).duplicate();
+        int offset = (pageno % SEGMENT_PAGES) * pageSize;
+        slice.limit(offset + pageSize);
+        slice.position(offset);
+        return slice;
+    }
+
+    private MappedFile lookupFile(int tableid) {
+        MappedFile file = files.get(tableid);
+        if (file == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return file;
+    }
+
+    /**
+     * An open table file and the segments mapped so far.
+     */
+    private class MappedFile {
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+        private final List<MappedByteBuffer> retired = new ArrayList<MappedByteBuffer>(); // replaced, not yet forced
+        private volatile int numPages;
+
+        MappedFile(FileChannel channel, int numPages) {
+            this.channel = channel;
+            this.numPages = numPages;
+        }
+
+        synchronized MappedByteBuffer segment(int segno) {
+            while (segments.size() <= segno) {
+                segments.add(null);
+            }
+            MappedByteBuffer segment = segments.get(segno);
+            if (segment == null) {
+                long start = (long) segno * SEGMENT_PAGES * pageSize;
+                long length = Math.min((long) SEGMENT_PAGES * pageSize, (long) numPages * pageSize - start);
+                try {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+                } catch (IOException e) {
+                    throw new DiskManagerException(e);
+                }
+                segments.set(segno, segment);
+            }
+            return segment;
+        }
+
+        /**
+         * Drops the mapping of a segment so it is remapped at the current file length.  The old
+         * mapping is kept until the next force so that writes made through it are forced too.
+         */
+        synchronized void invalidate(int segno) {
+            if (segno < segments.size()) {
+                MappedByteBuffer segment = segments.set(segno, null);
+                if (segment != null && !durability.syncEveryWrite()) {
+                    retired.add(segment);
+                }
+            }
+        }
+
+        synchronized void force() {
+            for (MappedByteBuffer segment : retired) {
+                segment.force();
+            }
+            retired.clear();
+            for (MappedByteBuffer segment : segments) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+            try {
+                channel.force(true);
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+
+        synchronized void close() {
+            segments.clear();
+            retired.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+    }
+}
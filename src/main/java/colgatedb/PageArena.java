@@ -0,0 +1,104 @@
+package colgatedb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A fixed set of page-sized slots carved out of direct (off-heap) memory, for a
+ * {@link BufferManagerImpl} that reads pages into frames of its own rather than into
+ * freshly allocated arrays.  Pages built over a slot keep their bytes there until they
+ * leave the pool.  Memory is allocated once, up front, in chunks of at most
+ * {@link #MAX_CHUNK_BYTES} (a ByteBuffer is limited to 2GB), and never returned to the
+ * heap's garbage collector.
+ * <p>
+ * Slots are handed out and returned by the buffer manager while it holds its lock; this
+ * class does no locking of its own.
+ */
+public class PageArena {
+
+    public static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final int pageSize;
+    private final int numSlots;
+    private final int slotsPerChunk;
+    private final ByteBuffer[] chunks;
+    private final int[] freeSlots;   // a stack of unused slot numbers
+    private int numFree;
+
+    /**
+     * @param numSlots number of pages the arena holds, typically the size of the buffer pool
+     * @param pageSize size of each page in bytes
+     */
+    public PageArena(int numSlots, int pageSize) {
+        if (numSlots < 1 || pageSize < 1 || pageSize > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Invalid arena of " + numSlots + " pages of " + pageSize + " bytes");
+        }
+        this.pageSize = pageSize;
+        this.numSlots = numSlots;
+        this.slotsPerChunk = Math.min(numSlots, MAX_CHUNK_BYTES / pageSize);
+        this.chunks = new ByteBuffer[(numSlots + slotsPerChunk - 1) / slotsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            int slots = Math.min(slotsPerChunk, numSlots - i * slotsPerChunk);
+            chunks[i] = ByteBuffer.allocateDirect(slots * pageSize);
+        }
+        this.freeSlots = new int[numSlots];
+        for (int i = 0; i < numSlots; i++) {
+            freeSlots[i] = numSlots - 1 - i;   // slot 0 is handed out first
+        }
+        this.numFree = numSlots;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * @return number of slots not currently handed out
+     */
+    public int getNumFree() {
+        return numFree;
+    }
+
+    /**
+     * @return the number of a free slot, or -1 if every slot is in use
+     */
+    int allocate() {
+        return numFree == 0 ? -1 : freeSlots[--numFree];
+    }
+
+    void release(int slot) {
+        if (slot < 0 || slot >= numSlots || numFree == numSlots) {
+            throw new IllegalArgumentException("slot " + slot + " was not allocated");
+        }
+        freeSlots[numFree++] = slot;
+    }
+
+    /**
+     * @return a buffer covering exactly the given slot, with position 0 and limit pageSize
+     */
+    ByteBuffer slot(int slot) {
+        ByteBuffer buffer = chunks[slot / slotsPerChunk].duplicate();
+        int offset = (slot % slotsPerChunk) * pageSize;
+        buffer.limit(offset + pageSize);
+        buffer.position(offset);
+        return buffer.slice();
+    }
+}
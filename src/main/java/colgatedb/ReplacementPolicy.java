@@ -0,0 +1,75 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Decides which page the {@link BufferManagerImpl} evicts when the pool is full.  The
+ * buffer manager reports each change to a frame's state, and the policy answers
+ * {@link #chooseVictim(boolean)}.  All calls are made while holding the buffer manager's
+ * lock, so implementations need no synchronization of their own.
+ * <p>
+ * Pins and unpins happen without that lock, so they are reported in batches, and a frame's
+ * pin count may change while the policy looks at it.  A policy should therefore treat the
+ * pin count as a hint and tolerate being told of an unpin for a frame that is pinned again
+ * by then.  The buffer manager claims the chosen victim atomically and asks again if it
+ * was pinned in the meantime.
+ * <p>
+ * Pages read by the prefetcher are not reported until they are first pinned: the buffer
+ * manager evicts unused prefetched pages itself, before asking the policy.
+ */
+public interface ReplacementPolicy {
+
+    /**
+     * A page was read into the frame and pinned.
+     */
+    void frameLoaded(Frame frame);
+
+    /**
+     * The page in the frame was pinned again.
+     */
+    void framePinned(Frame frame);
+
+    /**
+     * The frame's pin count dropped to zero, making it a candidate for eviction.
+     */
+    void frameUnpinned(Frame frame);
+
+    /**
+     * The frame's page left the pool, by eviction or discard.
+     */
+    void frameRemoved(Frame frame);
+
+    /**
+     * The frame's page was written, so it can now be evicted without I/O.  Policies that do
+     * not keep dirty frames apart need not do anything.
+     */
+    default void frameCleaned(Frame frame) {
+    }
+
+    /**
+     * @param allowDirty whether a dirty frame may be chosen
+     * @return an unpinned frame to evict, or null if there is none.  The frame stays in
+     * the pool until {@link #frameRemoved(Frame)} is called.
+     */
+    Frame chooseVictim(boolean allowDirty);
+
+    /**
+     * The buffer pool now holds up to the given number of frames.  Policies whose behavior
+     * does not depend on the pool size need not do anything.
+     */
+    default void capacityChanged(int capacity) {
+    }
+}
@@ -0,0 +1,49 @@
+package colgatedb;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The replacement policies a {@link BufferManagerImpl} can be built with.  The database's
+ * buffer pool uses the one set with {@link Database#setReplacementPolicy}.
+ * <p>
+ * LRU evicts the page unpinned longest ago.  CLOCK approximates LRU with a reference bit
+ * per frame.  TWO_Q and ARC keep a history of recently evicted pages so that a page used
+ * once, e.g. by a sequential scan, does not push out pages that are used repeatedly.
+ */
+public enum ReplacementPolicyType {
+
+    LRU,
+    CLOCK,
+    TWO_Q,
+    ARC;
+
+    /**
+     * @param poolSize number of frames in the buffer pool the policy will serve
+     * @return a new policy of this type
+     */
+    public ReplacementPolicy newPolicy(int poolSize) {
+        switch (this) {
+            case CLOCK:
+                return new ClockPolicy();
+            case TWO_Q:
+                return new TwoQueuePolicy(poolSize);
+            case ARC:
+                return new ARCPolicy(poolSize);
+            default:
+                return new LRUPolicy();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package colgatedb;
+
+import colgatedb.page.PageLayout;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * TableOptions describes how a table is physically stored.  It is passed to
+ * {@link Catalog#addHeapFile(String, colgatedb.tuple.TupleDesc, String, java.io.File, TableOptions)}
+ * when the table is brought online.  The defaults match the original storage format.
+ * <p>
+ * Setters return this object so options can be chained:
+ * <code>new TableOptions().memoryMapped(true)</code>
+ */
+public class TableOptions {
+
+    private boolean memoryMapped = false;
+    private boolean compressed = false;
+    private String bufferPartition = null;
+    private PageLayout pageLayout = PageLayout.SLOTTED;
+    private int[] dictionaryFields = new int[0];
+
+    /**
+     * @param memoryMapped if true, the table's file is accessed through memory mappings
+     *                     (see {@link MappedDiskManager}) rather than read/write calls.
+     * @return this
+     */
+    public TableOptions memoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * @param compressed if true, the table's pages are stored compressed (see
+     *                   {@link CompressedDiskManager}), which suits tables that are
+     *                   rarely written.  Ignored if the table is memory mapped.
+     * @return this
+     */
+    public TableOptions compressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @param bufferPartition name of the buffer pool partition (see {@link BufferPartition})
+     *                        the table's pages are read into; it must already exist.  If
+     *                        null, the table shares the default partition.
+     * @return this
+     */
+    public TableOptions bufferPartition(String bufferPartition) {
+        this.bufferPartition = bufferPartition;
+        return this;
+    }
+
+    public String getBufferPartition() {
+        return bufferPartition;
+    }
+
+    /**
+     * @param pageLayout how tuples are laid out on the table's pages.  {@link PageLayout#VARIABLE}
+     *                   stores strings in only as many bytes as they need.  The layout of an
+     *                   existing table must not change.
+     * @return this
+     */
+    public TableOptions pageLayout(PageLayout pageLayout) {
+        this.pageLayout = pageLayout;
+        return this;
+    }
+
+    public PageLayout getPageLayout() {
+        return pageLayout;
+    }
+
+    /**
+     * @param fields string fields whose values are stored as int codes from a dictionary kept
+     *               beside the table's file (see {@link colgatedb.tuple.StringDictionary}).
+     *               Suits fields with few distinct values.  The encoded fields of an existing
+     *               table must not change.
+     * @return this
+     */
+    public TableOptions dictionaryEncoded(int... fields) {
+        this.dictionaryFields = fields.clone();
+        return this;
+    }
+
+    public int[] getDictionaryFields() {
+        return dictionaryFields.clone();
+    }
+}
@@ -0,0 +1,108 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The 2Q replacement policy (Johnson and Shasha).  A page read for the first time goes on a
+ * FIFO queue, A1in, and further pins while it is there do not promote it.  When it is evicted
+ * from A1in its id is remembered on a ghost queue, A1out.  Only a page read again while its
+ * id is on A1out is considered hot and placed on the LRU list Am.  Pages touched once, such
+ * as those of a sequential scan, pass through A1in without disturbing Am.
+ * <p>
+ * Both queues are {@link EvictableFrames}, so pinned and dirty frames are kept out of the
+ * way of victim selection.  A frame unpinned after newer frames joined A1in is put back in
+ * its place by searching from the newest end.
+ */
+public class TwoQueuePolicy implements ReplacementPolicy {
+
+    private final EvictableFrames a1in = new EvictableFrames(true);
+    private final EvictableFrames am = new EvictableFrames(false);
+    private final LinkedHashSet<PageId> a1out = new LinkedHashSet<PageId>();
+    private int maxA1in;
+    private int maxA1out;
+
+    /**
+     * @param capacity number of frames in the buffer pool
+     */
+    public TwoQueuePolicy(int capacity) {
+        capacityChanged(capacity);
+    }
+
+    @Override
+    public void capacityChanged(int capacity) {
+        this.maxA1in = Math.max(1, capacity / 4);
+        this.maxA1out = Math.max(1, capacity / 2);
+        trimA1out();
+    }
+
+    @Override
+    public void frameLoaded(Frame frame) {
+        if (a1out.remove(frame.page.getId())) {
+            am.add(frame);
+        } else {
+            a1in.add(frame);
+        }
+    }
+
+    @Override
+    public void framePinned(Frame frame) {
+        a1in.pinned(frame);
+        am.pinned(frame);
+    }
+
+    @Override
+    public void frameUnpinned(Frame frame) {
+        a1in.unpinned(frame);
+        am.unpinned(frame);
+    }
+
+    @Override
+    public void frameRemoved(Frame frame) {
+        if (a1in.remove(frame)) {
+            a1out.add(frame.page.getId());
+            trimA1out();
+        } else {
+            am.remove(frame);
+        }
+    }
+
+    @Override
+    public void frameCleaned(Frame frame) {
+        a1in.cleaned(frame);
+        am.cleaned(frame);
+    }
+
+    private void trimA1out() {
+        Iterator<PageId> oldest = a1out.iterator();
+        while (a1out.size() > maxA1out) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    @Override
+    public Frame chooseVictim(boolean allowDirty) {
+        EvictableFrames first = a1in.size() > maxA1in || am.size() == 0 ? a1in : am;
+        EvictableFrames second = first == a1in ? am : a1in;
+        Frame victim = first.chooseVictim(allowDirty);
+        return victim != null ? victim : second.chooseVictim(allowDirty);
+    }
+}
@@ -5,9 +5,13 @@ import colgatedb.DbException;
 import colgatedb.DiskManagerException;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.Field;
+import colgatedb.tuple.Op;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
 
+import java.util.BitSet;
+
 /**
  * ColgateDB
  * @author Michael Hay mhay@colgate.edu
@@ -70,6 +74,28 @@ public interface DbFile {
      */
     DbFileIterator iterator(TransactionId tid);
 
+    /**
+     * Like {@link #iterator(TransactionId)}, with a hint that only tuples whose given field
+     * compares to the operand are wanted.  A file may use the hint to skip other tuples
+     * cheaply, but it may also ignore it, so callers must still test what they get.
+     *
+     * @return an iterator over (at least) the matching tuples stored in this DbFile.
+     */
+    default DbFileIterator iterator(TransactionId tid, int field, Op op, Field operand) {
+        return iterator(tid);
+    }
+
+    /**
+     * Like {@link #iterator(TransactionId, int, Op, Field)}, with a further hint that only the
+     * given fields of each tuple are needed.  A file may leave the other fields unset (null).
+     *
+     * @param columns the fields needed
+     * @param field the field to test, or -1 if every tuple is wanted
+     */
+    default DbFileIterator iterator(TransactionId tid, BitSet columns, int field, Op op, Field operand) {
+        return field < 0 ? iterator(tid) : iterator(tid, field, op, operand);
+    }
+
     /**
      * Returns a unique ID used to identify this DbFile in the Catalog.
      *
@@ -0,0 +1,133 @@
+package colgatedb.dbfile;
+
+import colgatedb.DbException;
+import colgatedb.tuple.DictStringField;
+import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.StringDictionary;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.util.BitSet;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Translates between a table's tuples and the tuples its pages hold when some of its string
+ * columns are dictionary encoded.  On the pages, each of those columns is an int holding
+ * the string's code in the table's {@link StringDictionary}.
+ */
+class DictionaryColumns {
+
+    private final TupleDesc td;
+    private final TupleDesc storedTd;
+    private final BitSet encoded;
+    private final StringDictionary dictionary;
+
+    /**
+     * @param td the table's schema
+     * @param fields the string fields to encode
+     * @param dictionary the table's dictionary
+     */
+    DictionaryColumns(TupleDesc td, int[] fields, StringDictionary dictionary) {
+        this.td = td;
+        this.dictionary = dictionary;
+        this.encoded = new BitSet(td.numFields());
+        for (int field : fields) {
+            if (td.getFieldType(field) != Type.STRING_TYPE) {
+                throw new DbException("field " + field + " is not a string and cannot be dictionary encoded");
+            }
+            encoded.set(field);
+        }
+        Type[] types = new Type[td.numFields()];
+        String[] names = new String[td.numFields()];
+        for (int j = 0; j < types.length; j++) {
+            types[j] = encoded.get(j) ? Type.INT_TYPE : td.getFieldType(j);
+            names[j] = td.getFieldName(j);
+        }
+        this.storedTd = new TupleDesc(types, names);
+    }
+
+    /**
+     * @return the schema of the tuples on the table's pages
+     */
+    TupleDesc getStoredTupleDesc() {
+        return storedTd;
+    }
+
+    StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the tuple as it is stored, with codes in place of the encoded strings.  New
+     * strings are added to the dictionary.
+     */
+    Tuple encode(Tuple t) {
+        if (!t.getTupleDesc().equals(td)) {
+            throw new DbException("The TupleDesc not match the TupleDesc of the table");
+        }
+        Tuple stored = new Tuple(storedTd);
+        for (int j = 0; j < td.numFields(); j++) {
+            Field f = t.getField(j);
+            if (f == null) {
+                continue;   // left for the page to reject
+            }
+            if (encoded.get(j)) {
+                boolean coded = f instanceof DictStringField && ((DictStringField) f).getDictionary() == dictionary;
+                f = new IntField(coded ? ((DictStringField) f).getCode() : dictionary.encode(f.toString()));
+            }
+            stored.setField(j, f);
+        }
+        return stored;
+    }
+
+    /**
+     * @return the table's tuple for the stored tuple.  Encoded strings come back as
+     * {@link DictStringField}s, and fields left unset stay unset.
+     */
+    Tuple decode(Tuple stored) {
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < td.numFields(); j++) {
+            Field f = stored.getField(j);
+            if (f == null) {
+                continue;
+            }
+            t.setField(j, encoded.get(j) ? new DictStringField(dictionary, ((IntField) f).getValue()) : f);
+        }
+        t.setRecordId(stored.getRecordId());
+        return t;
+    }
+
+    /**
+     * Translates a filter on the table's tuples into one the pages can apply to stored tuples.
+     * (In)equality with a string becomes (in)equality with its code, which pages test in
+     * place; a string that is not in the dictionary gets code -1, which no string has.
+     * @return the operand to give the pages, or null if they cannot apply the filter
+     */
+    Field storedOperand(int field, Op op, Field operand) {
+        if (!encoded.get(field)) {
+            return operand;
+        }
+        if ((op == Op.EQUALS || op == Op.NOT_EQUALS) && operand instanceof StringField) {
+            return new IntField(dictionary.lookup(operand.toString()));
+        }
+        return null;
+    }
+}
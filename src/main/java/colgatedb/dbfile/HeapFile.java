@@ -1,13 +1,19 @@
 package colgatedb.dbfile;
 
+import colgatedb.AccessStrategy;
 import colgatedb.Database;
 import colgatedb.DbException;
 import colgatedb.page.*;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.DictStringField;
+import colgatedb.tuple.Field;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.StringDictionary;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
 
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -31,17 +37,18 @@ import java.util.NoSuchElementException;
  * in no particular order. Tuples are stored on pages, each of which is a fixed
  * size, and the file is simply a collection of those pages. HeapFile works
  * closely with SlottedPage. The format of SlottedPages is described in the javadocs
- * for SlottedPage.
+ * for SlottedPage.  A table may instead use VariableSlottedPages (see {@link PageLayout}).
  *
  * @see SlottedPage
  */
 public class HeapFile implements DbFile {
 
-    private final SlottedPageMaker pageMaker;   // this should be initialized in constructor
+    private final PageMaker pageMaker;   // this should be initialized in constructor
     private int numPages;
     private int pageSize;
     private int tableid;
     private TupleDesc td;
+    private final DictionaryColumns dictionaryColumns;   // null if no column is dictionary encoded
     /**
      * Creates a heap file.
      * @param td the schema for records stored in this heapfile
@@ -50,11 +57,35 @@ public class HeapFile implements DbFile {
      * @param numPages size of this heapfile (i.e., number of pages already stored on disk)
      */
     public HeapFile(TupleDesc td, int pageSize, int tableid, int numPages) {
+        this(td, pageSize, tableid, numPages, PageLayout.SLOTTED);
+    }
+
+    /**
+     * Creates a heap file whose pages have the given layout.
+     * @see PageLayout
+     */
+    public HeapFile(TupleDesc td, int pageSize, int tableid, int numPages, PageLayout layout) {
+        this(td, pageSize, tableid, numPages, layout, null);
+    }
+
+    /**
+     * Creates a heap file whose pages have the given layout and hold the given string fields
+     * as codes from the dictionary.  The table's tuples return those fields as
+     * {@link DictStringField}s.
+     * @param dictionary the table's dictionary; may be null if no fields are given
+     * @param dictionaryFields the string fields to encode
+     * @see StringDictionary
+     */
+    public HeapFile(TupleDesc td, int pageSize, int tableid, int numPages, PageLayout layout,
+                    StringDictionary dictionary, int... dictionaryFields) {
         this.numPages = numPages;
         this.pageSize = pageSize;
         this.td = td;
         this.tableid = tableid;
-        this.pageMaker = new SlottedPageMaker(td, pageSize);
+        this.dictionaryColumns = dictionaryFields.length == 0 ? null
+                : new DictionaryColumns(td, dictionaryFields, dictionary);
+        TupleDesc storedTd = dictionaryColumns == null ? td : dictionaryColumns.getStoredTupleDesc();
+        this.pageMaker = layout.newPageMaker(storedTd, pageSize);
     }
 
     /**
@@ -69,23 +100,51 @@ public class HeapFile implements DbFile {
         return tableid;
     }
 
+    public PageMaker getPageMaker() {
+        return pageMaker;
+    }
+
     @Override
     public TupleDesc getTupleDesc() {
         return td;
     }
 
+    /**
+     * @return the table's dictionary, or null if none of its fields are dictionary encoded
+     */
+    public StringDictionary getDictionary() {
+        return dictionaryColumns == null ? null : dictionaryColumns.getDictionary();
+    }
+
+    /**
+     * @return the first page with room for the tuple, allocating a new page if there is none
+     */
+    private PageId findPageWithRoomFor(Tuple t) {
+        for (int pageNum = 0; pageNum < numPages; pageNum++) {
+            PageId pid = new SimplePageId(tableid, pageNum);
+            TuplePage page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker);
+            boolean hasRoom = page.hasRoomFor(t);
+            Database.getBufferManager().unpinPage(pid, false);
+            if (hasRoom) {
+                return pid;
+            }
+        }
+        PageId pid = new SimplePageId(tableid, numPages);
+        Database.getBufferManager().allocatePage(pid);
+        numPages++;
+        return pid;
+    }
+
     public PageId findOrCreateEmptySlot (){
         //Loop though every page to check it has an empty slot
         for (int pageNum = 0; pageNum < numPages; pageNum++){
             PageId pid = new SimplePageId(tableid, pageNum);
-            SlottedPage page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
-            for (int slot = 0; slot < page.getNumSlots(); slot ++){
-                if (page.isSlotEmpty(slot)){
-                    Database.getBufferManager().unpinPage(pid, false);
-                    return (pid);
-                }
-            }
+            TuplePage page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker);
+            boolean hasEmptySlot = page.getNumEmptySlots() > 0;
             Database.getBufferManager().unpinPage(pid, false);
+            if (hasEmptySlot) {
+                return pid;
+            }
         }
         PageId pid = new SimplePageId(tableid, numPages );
         Database.getBufferManager().allocatePage(pid);
@@ -97,30 +156,47 @@ public class HeapFile implements DbFile {
 
     @Override
     public void insertTuple(TransactionId tid, Tuple t) throws TransactionAbortedException {
-        PageId pid = findOrCreateEmptySlot();
-        SlottedPage page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
-        // Go through the slots of the page and find the empty slot
-        for (int slot = 0; slot < page.getNumSlots(); slot ++) {
-            if (page.isSlotEmpty(slot)) {
-                page.insertTuple(slot, t);
-                break;
-            }
+        Tuple stored = dictionaryColumns == null ? t : dictionaryColumns.encode(t);
+        PageId pid = findPageWithRoomFor(stored);
+        TuplePage page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker);
+        try {
+            page.insertTuple(stored);
+        } finally {
+            Database.getBufferManager().unpinPage(pid, true);
         }
-        Database.getBufferManager().unpinPage(pid, true);
+        t.setRecordId(stored.getRecordId());
     }
 
 
     @Override
     public void deleteTuple(TransactionId tid, Tuple t) throws TransactionAbortedException {
         PageId pid = t.getRecordId().getPageId();
-        SlottedPage page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
+        TuplePage page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker);
         page.deleteTuple(t);
         Database.getBufferManager().unpinPage(pid, true);
     }
 
     @Override
     public DbFileIterator iterator(TransactionId tid) {
-        return new HeapFileIterator(tid);
+        return new HeapFileIterator(tid, null, -1, null, null);
+    }
+
+    /**
+     * Returns only the matching tuples.  Pages test int fields in place, so the tuples that
+     * do not match are never decoded (see {@link TuplePage#iterator(int, Op, Field)}).
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, int field, Op op, Field operand) {
+        return new HeapFileIterator(tid, null, field, op, operand);
+    }
+
+    /**
+     * Returns tuples with only the given fields set, if the table's pages store columns
+     * apart (see {@link PaxPage}); other pages return whole tuples.
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, BitSet columns, int field, Op op, Field operand) {
+        return new HeapFileIterator(tid, columns, field, op, operand);
     }
 
     /**
@@ -129,21 +205,48 @@ public class HeapFile implements DbFile {
     private class HeapFileIterator implements DbFileIterator {
         int currPage;
         PageId pid;
-        SlottedPage page;
+        TuplePage page;
         Iterator<Tuple> iterator;
         TransactionId tid;
+        AccessStrategy strategy;   // chosen on open: large tables are scanned through a ring
+        final BitSet columns;      // the fields needed, or null if all of them are
+        final int field;           // the field tested by the filter, or -1 if there is none
+        final Op op;
+        final Field operand;
 
-        public HeapFileIterator(TransactionId tid) {
+        public HeapFileIterator(TransactionId tid, BitSet columns, int field, Op op, Field operand) {
             this.tid = tid;
+            this.columns = columns;
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
+        }
+
+        private Iterator<Tuple> pageIterator() {
+            int field = this.field;
+            Field operand = this.operand;
+            if (field >= 0 && dictionaryColumns != null) {
+                // translated per page, as strings may be added to the dictionary during the scan
+                operand = dictionaryColumns.storedOperand(field, op, operand);
+                if (operand == null) {
+                    field = -1;
+                }
+            }
+            if (columns != null) {
+                return page.iterator(columns, field, op, operand);
+            }
+            return field < 0 ? page.iterator() : page.iterator(field, op, operand);
         }
 
         @Override
         public void open() throws TransactionAbortedException {
+            strategy = Database.getBufferManager().scanStrategy(numPages);
             currPage = 0;
             pid = new SimplePageId(tableid, currPage);
-            page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
+            page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker, strategy);
             Database.getBufferManager().unpinPage(pid, false);
-            iterator = page.iterator();
+            iterator = pageIterator();
+            prefetchNext();
         }
 
         @Override
@@ -158,9 +261,10 @@ public class HeapFile implements DbFile {
                 currPage ++;
                 if (currPage < numPages) {
                     pid = new SimplePageId(tableid, currPage);
-                    page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
-                    iterator = page.iterator();
+                    page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker, strategy);
+                    iterator = pageIterator();
                     Database.getBufferManager().unpinPage(pid, false);
+                    prefetchNext();
                     return hasNext();
 
                 }
@@ -175,17 +279,30 @@ public class HeapFile implements DbFile {
             }
             else{
                 Tuple nextTuple = iterator.next();
-                return nextTuple;
+                return dictionaryColumns == null ? nextTuple : dictionaryColumns.decode(nextTuple);
             }
         }
 
         @Override
         public void rewind() throws TransactionAbortedException {
+            if (strategy == null) {
+                strategy = Database.getBufferManager().scanStrategy(numPages);
+            }
             currPage = 0;
             pid = new SimplePageId(tableid, currPage);
-            page = (SlottedPage) Database.getBufferManager().pinPage(pid, pageMaker);
-            iterator = page.iterator();
+            page = (TuplePage) Database.getBufferManager().pinPage(pid, pageMaker, strategy);
+            iterator = pageIterator();
             Database.getBufferManager().unpinPage(pid, false);
+            prefetchNext();
+        }
+
+        /**
+         * Asks the buffer manager to start reading the next page while this one is processed.
+         */
+        private void prefetchNext() {
+            if (currPage + 1 < numPages) {
+                Database.getBufferManager().prefetch(new SimplePageId(tableid, currPage + 1), pageMaker);
+            }
         }
 
         @Override
@@ -193,6 +310,7 @@ public class HeapFile implements DbFile {
             page = null;
             pid = null;
             iterator = null;
+            strategy = null;
         }
     }
 
@@ -2,6 +2,7 @@
 package colgatedb.logging;
 
 import colgatedb.Database;
+import colgatedb.DiskManager;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.transactions.TransactionId;
@@ -417,6 +418,10 @@ public class LogFileImpl implements LogFile {
 
                 force();
                 Database.getBufferManager().flushAllPages();
+                DiskManager dm = Database.getDiskManager();
+                if (dm.getDurability().forceOnCheckpoint()) {
+                    dm.force();  // flushed pages must be durable before the checkpoint is recorded
+                }
                 startCpOffset = raf.getFilePointer();
                 raf.writeInt(LogType.CHECKPOINT_RECORD);
                 raf.writeLong(-1); //no tid , but leave space for convenience
@@ -0,0 +1,79 @@
+package colgatedb.main;
+
+import colgatedb.BufferManagerImpl;
+import colgatedb.LRUPolicy;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Measures the cost of a buffer pool miss for several pool sizes.  Pages come from an
+ * in-memory disk manager, so the time reported is the buffer manager's own work: finding
+ * a victim, evicting it and installing the new page.  With a constant-time replacement
+ * policy the cost per miss should not grow with the pool.
+ * <p>
+ * Usage: BufferPoolBenchmark [misses per pool size]
+ */
+public class BufferPoolBenchmark {
+
+    private static final int[] POOL_SIZES = {1000, 10000, 100000};
+    private static final int TABLE_ID = 1;
+    private static final int PAGE_SIZE = 64;
+
+    public static void main(String[] argv) {
+        int misses = argv.length > 0 ? Integer.parseInt(argv[0]) : 500000;
+        PageMaker pageMaker = new SlottedPageMaker(new TupleDesc(new Type[]{Type.INT_TYPE}), PAGE_SIZE);
+        for (int round = 0; round < 2; round++) {   // the first round warms up the JIT
+            for (int poolSize : POOL_SIZES) {
+                double nanos = timeMisses(poolSize, misses, pageMaker);
+                if (round == 1) {
+                    System.out.printf("pool %7d pages: %8.1f ns/miss%n", poolSize, nanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills a pool of the given size, then pins and unpins new pages so that every pin
+     * misses and evicts.
+     * @return average nanoseconds per miss
+     */
+    private static double timeMisses(int poolSize, int misses, PageMaker pageMaker) {
+        BufferManagerImpl bm = new BufferManagerImpl(poolSize, new MemoryDiskManager(PAGE_SIZE), new LRUPolicy());
+        bm.setReadahead(0, 0);
+        for (int i = 0; i < poolSize; i++) {
+            pinAndUnpin(bm, i, pageMaker);
+        }
+        long start = System.nanoTime();
+        for (int i = poolSize; i < poolSize + misses; i++) {
+            pinAndUnpin(bm, i, pageMaker);
+        }
+        long elapsed = System.nanoTime() - start;
+        bm.shutdown();
+        return (double) elapsed / misses;
+    }
+
+    private static void pinAndUnpin(BufferManagerImpl bm, int pageno, PageMaker pageMaker) {
+        PageId pid = new SimplePageId(TABLE_ID, pageno);
+        bm.pinPage(pid, pageMaker);
+        bm.unpinPage(pid, false);
+    }
+}
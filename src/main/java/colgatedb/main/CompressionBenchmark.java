@@ -0,0 +1,114 @@
+package colgatedb.main;
+
+import colgatedb.CompressedDiskManager;
+import colgatedb.DiskManagerImpl;
+import colgatedb.Durability;
+import colgatedb.TableOptions;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPage;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Compares a table stored plainly with the same table stored compressed (see
+ * {@link colgatedb.CompressedDiskManager}): the bytes each takes on disk and how fast each
+ * can be scanned.  The table holds an int and a short string per tuple, so most of every
+ * page is string padding.  Scans go straight to the disk manager, without a buffer pool;
+ * the files are small enough to stay in the OS cache, so the scan times show the cost of
+ * decompressing rather than the I/O saved.
+ * <p>
+ * Usage: CompressionBenchmark [pages]
+ */
+public class CompressionBenchmark {
+
+    private static final int PAGE_SIZE = 4096;
+    private static final int TABLE_ID = 1;
+    private static final TupleDesc TD = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+
+    public static void main(String[] argv) throws IOException {
+        int numPages = argv.length > 0 ? Integer.parseInt(argv[0]) : 5000;
+        PageMaker pageMaker = new SlottedPageMaker(TD, PAGE_SIZE);
+        for (boolean compressed : new boolean[]{false, true}) {
+            File file = File.createTempFile("compressionbenchmark", ".dat");
+            File map = new File(file.getAbsolutePath() + CompressedDiskManager.MAP_SUFFIX);
+            DiskManagerImpl dm = new DiskManagerImpl(PAGE_SIZE, Durability.FORCE_ON_FLUSH_ALL);
+            dm.addFileEntry(TABLE_ID, file.getAbsolutePath(), new TableOptions().compressed(compressed));
+
+            long start = System.nanoTime();
+            for (int pageno = 0; pageno < numPages; pageno++) {
+                dm.allocatePage(new SimplePageId(TABLE_ID, pageno));
+                dm.writePage(makePage(pageno, pageMaker));
+            }
+            dm.force();
+            double writeMillis = (System.nanoTime() - start) / 1e6;
+
+            long tuples = 0;
+            double scanMillis = 0;
+            for (int round = 0; round < 3; round++) {   // the first round warms up the JIT
+                start = System.nanoTime();
+                tuples = scan(dm, numPages, pageMaker);
+                scanMillis = (System.nanoTime() - start) / 1e6;
+            }
+            System.out.printf("%-10s %8.1f MB on disk, write %8.1f ms, scan %8.1f ms (%.0f pages/s, %d tuples)%n",
+                    compressed ? "compressed" : "plain", dm.getStoredBytes(TABLE_ID) / 1e6, writeMillis,
+                    scanMillis, numPages / (scanMillis / 1e3), tuples);
+            dm.close();
+            file.delete();
+            map.delete();
+        }
+    }
+
+    private static SlottedPage makePage(int pageno, PageMaker pageMaker) {
+        SlottedPage page = (SlottedPage) pageMaker.makePage(new SimplePageId(TABLE_ID, pageno));
+        int i = 0;
+        while (page.getNumEmptySlots() > 0) {
+            Tuple t = new Tuple(TD);
+            t.setField(0, new IntField(pageno * 1000 + i));
+            t.setField(1, new StringField("customer-" + (pageno * 31 + i) % 10007));
+            page.insertTuple(t);
+            i++;
+        }
+        return page;
+    }
+
+    /**
+     * Reads every page and every tuple on it.
+     * @return number of tuples seen
+     */
+    private static long scan(DiskManagerImpl dm, int numPages, PageMaker pageMaker) {
+        long tuples = 0;
+        for (int pageno = 0; pageno < numPages; pageno++) {
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(TABLE_ID, pageno), pageMaker);
+            Iterator<Tuple> it = page.iterator();
+            while (it.hasNext()) {
+                it.next();
+                tuples++;
+            }
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,61 @@
+package colgatedb.main;
+
+import colgatedb.DiskManager;
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A disk manager with unbounded files whose pages are always empty.  Used by the buffer
+ * pool benchmarks so that they measure the buffer manager and not the disk.
+ */
+class MemoryDiskManager implements DiskManager {
+    private final int pageSize;
+
+    /**
+     * @param pageSize size of the pages, which {@link #readPageInto} fills with zeros
+     */
+    MemoryDiskManager(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+    }
+
+    @Override
+    public int getNumPages(int tableid) {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Page readPage(PageId pid, PageMaker pageMaker) {
+        return pageMaker.makePage(pid);
+    }
+
+    @Override
+    public void readPageInto(PageId pid, ByteBuffer dst) {
+        dst.put(new byte[pageSize]);
+    }
+
+    @Override
+    public void writePage(Page page) {
+    }
+}
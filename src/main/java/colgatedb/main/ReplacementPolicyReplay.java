@@ -0,0 +1,120 @@
+package colgatedb.main;
+
+import colgatedb.BufferManagerImpl;
+import colgatedb.ReplacementPolicyType;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Replays a trace of page pins against a buffer pool once per replacement policy and
+ * reports each policy's hit ratio.  Readahead is turned off so the numbers reflect the
+ * policy alone.
+ * <p>
+ * Without a trace file, a synthetic workload is used: skewed point lookups on a small
+ * table, interrupted periodically by a sequential scan of a table several times the size
+ * of the pool.  The lookup hit ratio shows how well each policy protects the lookup
+ * table's pages from the scan.
+ * <p>
+ * Usage: ReplacementPolicyReplay [poolSize [traceFile]]
+ * where each line of traceFile is "tableid pageno".  Lines starting with # are skipped.
+ */
+public class ReplacementPolicyReplay {
+
+    private static final int LOOKUP_TABLE = 1;
+    private static final int LOOKUP_PAGES = 1000;
+    private static final int SCAN_TABLE = 2;
+    private static final int SCAN_PAGES = 2000;
+    private static final int PAGE_SIZE = 64;
+
+    public static void main(String[] argv) throws IOException {
+        int poolSize = argv.length > 0 ? Integer.parseInt(argv[0]) : 400;
+        List<PageId> trace = argv.length > 1 ? readTrace(argv[1]) : syntheticTrace(new Random(460));
+        PageMaker pageMaker = new SlottedPageMaker(new TupleDesc(new Type[]{Type.INT_TYPE}), PAGE_SIZE);
+
+        System.out.println("pool size " + poolSize + ", " + trace.size() + " pins");
+        for (ReplacementPolicyType type : ReplacementPolicyType.values()) {
+            BufferManagerImpl bm = new BufferManagerImpl(poolSize, new MemoryDiskManager(PAGE_SIZE),
+                    type.newPolicy(poolSize));
+            bm.setReadahead(0, 0);
+            long lookups = 0;
+            long lookupHits = 0;
+            for (PageId pid : trace) {
+                if (pid.getTableId() == LOOKUP_TABLE) {
+                    lookups++;
+                    if (bm.inBufferPool(pid)) {
+                        lookupHits++;
+                    }
+                }
+                bm.pinPage(pid, pageMaker);
+                bm.unpinPage(pid, false);
+            }
+            bm.shutdown();
+            System.out.printf("%-6s hit ratio %.3f   lookup hit ratio %.3f%n", type,
+                    bm.getStats().getHitRatio(), lookups == 0 ? 0.0 : (double) lookupHits / lookups);
+        }
+    }
+
+    /**
+     * Twenty rounds of 5000 lookups followed by a full scan.  Lookups pick one of the hottest
+     * fifth of the table's pages 80% of the time.
+     */
+    private static List<PageId> syntheticTrace(Random random) {
+        List<PageId> trace = new ArrayList<PageId>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5000; i++) {
+                int hot = LOOKUP_PAGES / 5;
+                int pageno = random.nextInt(10) < 8 ? random.nextInt(hot) : hot + random.nextInt(LOOKUP_PAGES - hot);
+                trace.add(new SimplePageId(LOOKUP_TABLE, pageno));
+            }
+            for (int pageno = 0; pageno < SCAN_PAGES; pageno++) {
+                trace.add(new SimplePageId(SCAN_TABLE, pageno));
+            }
+        }
+        return trace;
+    }
+
+    private static List<PageId> readTrace(String filename) throws IOException {
+        List<PageId> trace = new ArrayList<PageId>();
+        BufferedReader reader = new BufferedReader(new FileReader(filename));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                trace.add(new SimplePageId(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+            }
+        } finally {
+            reader.close();
+        }
+        return trace;
+    }
+}
@@ -59,6 +59,9 @@ public class Filter extends Operator {
     @Override
     public void open() throws DbException, NoSuchElementException,
             TransactionAbortedException {
+        if (child instanceof SeqScan) {
+            ((SeqScan) child).pushDownPredicate(p);   // rejected rows are then never decoded
+        }
         child.open();
         open = true;
     }
@@ -46,7 +46,9 @@ public class JoinPredicate implements Serializable {
 
     /**
      * Apply the predicate to the two specified tuples. The comparison can be
-     * made through Field's compare method.
+     * made through Field's compare method.  Strings from dictionary-encoded columns
+     * of the same table are tested for (in)equality by their codes (see
+     * {@link colgatedb.tuple.DictStringField#compare}).
      *
      * @return true if the tuples satisfy the predicate.
      */
@@ -1,7 +1,10 @@
 package colgatedb.operators;
 
+import colgatedb.tuple.DictStringField;
 import colgatedb.tuple.Field;
 import colgatedb.tuple.Op;
+import colgatedb.tuple.StringDictionary;
+import colgatedb.tuple.StringField;
 import colgatedb.tuple.Tuple;
 
 import java.io.Serializable;
@@ -27,6 +30,7 @@ public class Predicate implements Serializable {
     private final int field;
     private final Op op;
     private final Field operand;
+    private transient volatile OperandCode coded;   // the operand's code in the last dictionary seen, if any
 
     /**
      * Constructor.
@@ -88,9 +92,46 @@ public class Predicate implements Serializable {
      */
     public boolean filter(Tuple t) {
         Field f = t.getField(field);
+        if (f instanceof DictStringField && ((DictStringField) f).getDictionary() != null
+                && (op == Op.EQUALS || op == Op.NOT_EQUALS) && operand instanceof StringField) {
+            boolean equal = ((DictStringField) f).getCode() == operandCode((DictStringField) f);
+            return op == Op.EQUALS ? equal : !equal;
+        }
         return f.compare(op, operand);
     }
 
+    /**
+     * @return the operand's code in the dictionary the field is from, or -1 if it has none.
+     * The code is looked up once per dictionary, and again if the operand was missing and
+     * strings have since been added.
+     */
+    private int operandCode(DictStringField f) {
+        StringDictionary dictionary = f.getDictionary();
+        OperandCode c = coded;
+        if (c == null || c.dictionary != dictionary || (c.code < 0 && dictionary.size() != c.size)) {
+            int size = dictionary.size();   // before the lookup, so a string added meanwhile is looked up again
+            c = new OperandCode(dictionary, size, dictionary.lookup(operand.toString()));
+            coded = c;
+        }
+        return c.code;
+    }
+
+    /**
+     * The operand's code in one dictionary.  Immutable, so that a predicate shared by
+     * threads scanning at once never sees a code paired with the wrong dictionary.
+     */
+    private static final class OperandCode {
+        final StringDictionary dictionary;
+        final int size;   // size of the dictionary when the code was looked up
+        final int code;   // -1 if the operand was not in the dictionary
+
+        OperandCode(StringDictionary dictionary, int size, int code) {
+            this.dictionary = dictionary;
+            this.size = size;
+            this.code = code;
+        }
+    }
+
     /**
      * Returns something useful, like "f = field_id op = op_string operand =
      * operand_string
@@ -7,10 +7,13 @@ import colgatedb.dbfile.DbFileIterator;
 import colgatedb.dbfile.HeapFile;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.Field;
+import colgatedb.tuple.Op;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
 import colgatedb.tuple.Type;
 
+import java.util.BitSet;
 import java.util.NoSuchElementException;
 
 /**
@@ -38,6 +41,8 @@ public class SeqScan implements DbIterator {
     private DbFile heapFile;
     private DbFileIterator iterator;
     private TupleDesc td;
+    private Predicate predicate;   // pushed down by the parent, or null
+    private BitSet columns;        // the fields the parent reads, or null for all
 
     /**
      * Creates a sequential scan over the specified table as a part of the
@@ -90,6 +95,51 @@ public class SeqScan implements DbIterator {
         return tableAlias;
     }
 
+    /**
+     * Has the scan skip tuples that the predicate rejects, which lets the table file avoid
+     * decoding them.  Tuples that pass are returned as before, so the caller still applies
+     * the predicate.  Must be called before the scan is opened.
+     * @param p the predicate, or null to return every tuple
+     */
+    public void pushDownPredicate(Predicate p) {
+        predicate = p;
+        resetIterator();
+    }
+
+    /**
+     * Has the scan read only the given fields of each tuple, which lets a table that stores
+     * columns apart (see {@link colgatedb.page.PageLayout#PAX}) skip the others.  The other
+     * fields of the returned tuples may be unset (null).  The field of a pushed-down predicate
+     * is always read.  Must be called before the scan is opened.
+     * @param fields the fields the caller reads, or null to read every field
+     */
+    public void pushDownColumns(int... fields) {
+        if (fields == null) {
+            columns = null;
+        } else {
+            columns = new BitSet(td.numFields());
+            for (int field : fields) {
+                columns.set(field);
+            }
+        }
+        resetIterator();
+    }
+
+    private void resetIterator() {
+        int field = predicate == null ? -1 : predicate.getField();
+        Op op = predicate == null ? null : predicate.getOp();
+        Field operand = predicate == null ? null : predicate.getOperand();
+        if (columns != null) {
+            BitSet needed = (BitSet) columns.clone();
+            if (field >= 0) {
+                needed.set(field);
+            }
+            iterator = heapFile.iterator(tid, needed, field, op, operand);
+        } else {
+            iterator = field < 0 ? heapFile.iterator(tid) : heapFile.iterator(tid, field, op, operand);
+        }
+    }
+
     public void open() throws DbException, TransactionAbortedException {
         iterator.open();
     }
@@ -1,5 +1,7 @@
 package colgatedb.page;
 
+import java.nio.ByteBuffer;
+
 /**
  * ColgateDB
  * @author Michael Hay mhay@colgate.edu
@@ -44,6 +46,25 @@ public interface Page {
      */
     byte[] getPageData();
 
+    /**
+     * The bytes of {@link #getPageData()}, between the position and limit of a read-only
+     * buffer.  A page that keeps its serialized form can return a view of it rather than a
+     * copy; such a view is only good until the page is next modified.
+     *
+     * @return A buffer holding the bytes of this page.
+     */
+    default ByteBuffer getPageBuffer() {
+        return ByteBuffer.wrap(getPageData()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Moves the page's bytes out of a buffer it was made over by
+     * {@link PageMaker#makePageOver} into memory of its own, so that the buffer can be reused
+     * while the page stays usable.  Pages that own their bytes have nothing to do.
+     */
+    default void detach() {
+    }
+
     /**
      * Provide a representation of this page before any modifications were made
      * to it.  Used by recovery.
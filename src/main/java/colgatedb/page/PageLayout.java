@@ -0,0 +1,50 @@
+package colgatedb.page;
+
+import colgatedb.tuple.TupleDesc;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The ways a heap file can lay out tuples in its pages, chosen per table with
+ * {@link colgatedb.TableOptions#pageLayout(PageLayout)}.
+ * <p>
+ * SLOTTED is the original format (see {@link SlottedPageFormatter}): every tuple takes the
+ * same space, so strings always take {@link colgatedb.tuple.Type#STRING_LEN} bytes.
+ * VARIABLE (see {@link VariableSlottedPage}) stores each string in only as many bytes as it
+ * has, which fits several times more tuples per page when strings are short.
+ * PAX (see {@link PaxPage}) holds what SLOTTED does but stores it column by column, so a
+ * scan that needs few of a wide table's fields reads few of its bytes.
+ */
+public enum PageLayout {
+
+    SLOTTED,
+    VARIABLE,
+    PAX;
+
+    /**
+     * @return a maker of pages with this layout
+     */
+    public PageMaker newPageMaker(TupleDesc td, int pageSize) {
+        switch (this) {
+            case VARIABLE:
+                return new VariableSlottedPageMaker(td, pageSize);
+            case PAX:
+                return new PaxPageMaker(td, pageSize);
+            default:
+                return new SlottedPageMaker(td, pageSize);
+        }
+    }
+}
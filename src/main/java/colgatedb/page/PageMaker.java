@@ -1,5 +1,7 @@
 package colgatedb.page;
 
+import java.nio.ByteBuffer;
+
 /**
  * Created by mhay on 6/8/16.
  */
@@ -7,6 +9,29 @@ public interface PageMaker {
 
     Page makePage(PageId pid, byte[] bytes);
 
+    /**
+     * Makes a page from the bytes between the buffer's position and limit.  The page may keep
+     * reading them from the buffer (e.g., a region of a mapped file) until it is first changed
+     * or {@link Page#detach()} is called, so the caller must not change them until then; the
+     * page never writes into the buffer.  The default implementation copies the bytes into an
+     * array.
+     */
+    default Page makePage(PageId pid, ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return makePage(pid, bytes);
+    }
+
+    /**
+     * Makes a page that keeps its bytes in the buffer, between its position and limit, rather
+     * than in memory of its own, so that building it copies nothing and changes to the page
+     * are made in the buffer.  The caller must call {@link Page#detach()} before it reuses
+     * the buffer.  The default implementation copies, as {@link #makePage(PageId, ByteBuffer)} does.
+     */
+    default Page makePageOver(PageId pid, ByteBuffer data) {
+        return makePage(pid, data);
+    }
+
     // makes empty page, used in testing only
     Page makePage(PageId pid);
 }
@@ -0,0 +1,353 @@
+package colgatedb.page;
+
+import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.RecordId;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * PaxPage holds the same tuples as a {@link SlottedPage} of the same size, but stores them
+ * column by column: after the header, the page is divided into one mini-page per field of
+ * the schema, and the mini-page of field j holds field j of every slot, in slot order.
+ * <p>
+ * The page format has three components:
+ * (a) header: a bitmap of the occupied slots, exactly as in a SlottedPage
+ * (b) mini-pages: for each field j in turn, numSlots values of field j, each
+ *     {@code td.getFieldType(j).getLen()} bytes and written as the field serializes itself.
+ *     An empty slot's values are zeros.
+ * (c) zeroed out excess bytes
+ * <p>
+ * A scan that needs only some fields reads only their mini-pages (see
+ * {@link #iterator(BitSet, int, Op, Field)}), so an aggregate over one int column of a wide
+ * table touches a small fraction of the page's bytes.
+ */
+public class PaxPage implements TuplePage {
+
+    private final PageId pid;
+    private final TupleDesc td;
+    private final int pageSize;
+    private final int numSlots;
+    private final int[] columnOffsets;   // offset within the page of each field's mini-page
+    private BitSet used;                 // the occupied slots, a copy of the header
+    private ByteBuffer image;            // the page's bytes, kept up to date
+
+    // ------------------------------------------------
+    // oldData fields:
+    // these are used for logging and recovery -- you can ignore for now
+    private final Byte oldDataLock = (byte) 0;
+    private byte[] oldData;
+    // ------------------------------------------------
+
+    /**
+     * Constructs empty PaxPage
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     */
+    public PaxPage(PageId pid, TupleDesc td, int pageSize) {
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        this.numSlots = SlottedPageFormatter.computePageCapacity(pageSize, td);
+        this.columnOffsets = computeColumnOffsets(numSlots, td);
+        used = new BitSet(numSlots);
+        image = ByteBuffer.wrap(new byte[pageSize]);
+        setBeforeImage();  // used for logging, leave this line at end of constructor
+    }
+
+    /**
+     * Constructs PaxPage with its data initialized from the bytes between the buffer's
+     * position and limit.  The bytes are copied; no reference to the buffer is kept.
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     * @param data data with which to initialize page content
+     */
+    public PaxPage(PageId pid, TupleDesc td, int pageSize, ByteBuffer data) {
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        this.numSlots = SlottedPageFormatter.computePageCapacity(pageSize, td);
+        this.columnOffsets = computeColumnOffsets(numSlots, td);
+        byte[] bytes = new byte[pageSize];
+        try {
+            data.duplicate().get(bytes);
+        } catch (BufferUnderflowException e) {
+            throw new PageException(e);
+        }
+        image = ByteBuffer.wrap(bytes);
+        used = SlottedPageFormatter.readHeader(image, numSlots);
+        setBeforeImage();  // used for logging, leave this line at end of constructor
+    }
+
+    private static int[] computeColumnOffsets(int numSlots, TupleDesc td) {
+        int[] offsets = new int[td.numFields()];
+        int offset = SlottedPageFormatter.getHeaderSize(numSlots);
+        for (int j = 0; j < offsets.length; j++) {
+            offsets[j] = offset;
+            offset += numSlots * td.getFieldType(j).getLen();
+        }
+        return offsets;
+    }
+
+    @Override
+    public PageId getId() {
+        return pid;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    @Override
+    public boolean isSlotUsed(int slotno) {
+        return used.get(slotno);
+    }
+
+    @Override
+    public boolean isSlotEmpty(int slotno) {
+        return !used.get(slotno);
+    }
+
+    @Override
+    public int getNumEmptySlots() {
+        return numSlots - used.cardinality();
+    }
+
+    @Override
+    public boolean hasRoomFor(Tuple t) {
+        return getNumEmptySlots() > 0;
+    }
+
+    /**
+     * @return offset within the page of the given field of the given slot
+     */
+    private int valueOffset(int slotno, int field) {
+        return columnOffsets[field] + slotno * td.getFieldType(field).getLen();
+    }
+
+    @Override
+    public Tuple getTuple(int slotno) {
+        return getTuple(slotno, null);
+    }
+
+    /**
+     * @param slotno the slot of interest
+     * @param columns the fields to read, or null for all of them
+     * @return the Tuple at given slot, with only the given fields set
+     * @throws PageException if slot is empty
+     */
+    public Tuple getTuple(int slotno, BitSet columns) {
+        if (isSlotEmpty(slotno)) {
+            throw new PageException("slot is empty");
+        }
+        ByteBuffer buffer = image.duplicate();
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < columnOffsets.length; j++) {
+            if (columns == null || columns.get(j)) {
+                buffer.position(valueOffset(slotno, j));
+                t.setField(j, td.getFieldType(j).parse(buffer));
+            }
+        }
+        t.setRecordId(new RecordId(pid, slotno));
+        return t;
+    }
+
+    /**
+     * @return the int value of the given field in a used slot, read from its mini-page
+     */
+    public int getInt(int slotno, int field) {
+        if (td.getFieldType(field) != Type.INT_TYPE) {
+            throw new PageException("field " + field + " is not an int");
+        }
+        return image.getInt(valueOffset(slotno, field));
+    }
+
+    /**
+     * Tests a field of the tuple in a used slot against an operand.  Only the field's
+     * mini-page is read.
+     * @see Field#compare(Op, Field)
+     */
+    public boolean matches(int slotno, int field, Op op, Field operand) {
+        if (td.getFieldType(field) == Type.INT_TYPE && operand instanceof IntField) {
+            return IntField.compare(getInt(slotno, field), op, ((IntField) operand).getValue());
+        }
+        ByteBuffer buffer = image.duplicate();
+        buffer.position(valueOffset(slotno, field));
+        return td.getFieldType(field).parse(buffer).compare(op, operand);
+    }
+
+    @Override
+    public void insertTuple(int slotno, Tuple t) {
+        if (slotno < 0 || slotno >= numSlots) {
+            throw new PageException("No such slot");
+        }
+        if (isSlotUsed(slotno)) {
+            throw new PageException("The slot is full");
+        }
+        if (!t.getTupleDesc().equals(td)) {
+            throw new PageException("The TupleDesc not match the TupleDesc of the page");
+        }
+        ByteBuffer buffer = image.duplicate();
+        try {
+            for (int j = 0; j < columnOffsets.length; j++) {
+                buffer.position(valueOffset(slotno, j));
+                t.getField(j).serialize(buffer);
+            }
+        } catch (BufferOverflowException | NullPointerException e) {
+            throw new PageException(e);
+        }
+        used.set(slotno);
+        SlottedPageFormatter.markSlot(slotno, image, true);
+        t.setRecordId(new RecordId(pid, slotno));
+    }
+
+    @Override
+    public void insertTuple(Tuple t) {
+        if (!t.getTupleDesc().equals(td)) {
+            throw new PageException("The TupleDesc not match the TupleDesc of the page");
+        }
+        int slotno = used.nextClearBit(0);
+        if (slotno >= numSlots) {
+            throw new PageException("The page is full");
+        }
+        insertTuple(slotno, t);
+    }
+
+    @Override
+    public void deleteTuple(Tuple t) {
+        if (t.getRecordId() == null) {
+            throw new PageException("Tuple has no record Id");
+        }
+        int slotno = t.getRecordId().tupleno();
+        if (!t.getRecordId().getPageId().equals(pid)) {
+            throw new PageException("Tuple is not on this page");
+        }
+        if (isSlotEmpty(slotno)) {
+            throw new PageException("Slot is already empty");
+        }
+        t.setRecordId(null);
+        byte[] bytes = image.array();
+        for (int j = 0; j < columnOffsets.length; j++) {
+            int offset = valueOffset(slotno, j);
+            Arrays.fill(bytes, offset, offset + td.getFieldType(j).getLen(), (byte) 0);
+        }
+        used.clear(slotno);
+        SlottedPageFormatter.markSlot(slotno, image, false);
+    }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        return new ColumnIterator(null, -1, null, null);
+    }
+
+    @Override
+    public Iterator<Tuple> iterator(int field, Op op, Field operand) {
+        return new ColumnIterator(null, field, op, operand);
+    }
+
+    /**
+     * Reads only the mini-pages of the given fields, and of the filter's field if any.
+     */
+    @Override
+    public Iterator<Tuple> iterator(BitSet columns, int field, Op op, Field operand) {
+        return new ColumnIterator(columns, field, op, operand);
+    }
+
+    private class ColumnIterator implements Iterator<Tuple> {
+
+        private int currIdx = 0;
+        private final BitSet columns;  // null if every field is read
+        private final int field;       // -1 if every tuple is returned
+        private final Op op;
+        private final Field operand;
+
+        ColumnIterator(BitSet columns, int field, Op op, Field operand) {
+            this.columns = columns;
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (currIdx = used.nextSetBit(currIdx); currIdx >= 0; currIdx = used.nextSetBit(currIdx + 1)) {
+                if (field < 0 || matches(currIdx, field, op, operand)) {
+                    return true;
+                }
+            }
+            currIdx = numSlots;   // stay exhausted
+            return false;
+        }
+
+        @Override
+        public Tuple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return getTuple(currIdx++, columns);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("my data can't be modified!");
+        }
+    }
+
+    @Override
+    public byte[] getPageData() {
+        return image.array().clone();
+    }
+
+    @Override
+    public ByteBuffer getPageBuffer() {
+        return image.asReadOnlyBuffer();
+    }
+
+    @Override
+    public Page getBeforeImage() {
+        byte[] oldDataRef;
+        synchronized (oldDataLock) {
+            oldDataRef = Arrays.copyOf(oldData, oldData.length);
+        }
+        return new PaxPage(pid, td, pageSize, ByteBuffer.wrap(oldDataRef));
+    }
+
+    @Override
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = getPageData();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package colgatedb.page;
+
+import colgatedb.tuple.TupleDesc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class PaxPageMaker implements PageMaker {
+
+    private final TupleDesc td;
+    private final int pageSize;
+
+    public PaxPageMaker(TupleDesc td, int pageSize) {
+        this.td = td;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Page makePage(PageId pid, byte[] bytes) {
+        return new PaxPage(pid, td, pageSize, ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public Page makePage(PageId pid, ByteBuffer data) {
+        return new PaxPage(pid, td, pageSize, data);
+    }
+
+    @Override
+    public Page makePage(PageId pid) {
+        return new PaxPage(pid, td, pageSize);
+    }
+}
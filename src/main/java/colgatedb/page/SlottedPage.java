@@ -1,10 +1,18 @@
 package colgatedb.page;
 
+import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
 import colgatedb.tuple.RecordId;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
 import colgatedb.page.SlottedPageFormatter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -27,20 +35,44 @@ import java.util.NoSuchElementException;
  * SlottedPage stores a collection of fixed-length tuples, all having the same schema.
  * Upon insertion, a tuple is assigned to a slot.  The number of slots available depends on
  * the size of the page and the schema of the tuples.
+ * <p>
+ * A page keeps its serialized form in a byte array for its whole life.  Inserting or
+ * deleting a tuple updates only that slot's bytes and header bit, so writing the page out
+ * costs a copy of the array at most, and {@link #getPageBuffer()} not even that.  A tuple
+ * read from the bytes is decoded only when it is asked for, so tuples a query never looks
+ * at cost nothing.  Tuples decoded this way are not cached: each call to getTuple (or each
+ * iteration) returns a new Tuple.  Since reads do not change the page, any number of
+ * threads may read it at once.  {@link #iterator(int, Op, Field)} goes further and
+ * compares int fields where they lie in the bytes, so rows it skips are never decoded.
+ * <p>
+ * A tuple's bytes are written when it is inserted: changing its fields afterwards does
+ * not change the page.
+ * <p>
+ * A page made by {@link SlottedPageMaker#makePageOver} keeps its bytes in the buffer it was
+ * given, such as a frame of an off-heap buffer pool, until {@link #detach()} copies them to
+ * an array of its own.  A page made from a buffer by the public constructor, such as a
+ * region of a mapped file, keeps reading the buffer too, but copies the bytes before the
+ * page is first changed, so it never writes into the caller's buffer.  The before image is copied only when the page is first modified
+ * after {@link #setBeforeImage()}, so a page that is only read holds no second copy.
  */
-public class SlottedPage implements Page {
+public class SlottedPage implements TuplePage {
 
     private final PageId pid;
     private final TupleDesc td;
     private final int pageSize;
-    private Tuple[] slots;
-    // you will want to include additional instance variables here.
+    private Tuple[] slots;         // tuples inserted since the page was built, null if none; others are read from image
+    private int numSlots;
+    private BitSet used;           // the occupied slots, a copy of the header
+    private volatile ByteBuffer image;   // the page's bytes, kept up to date as tuples are inserted and deleted
+    private volatile boolean borrowed;   // whether image lies in a buffer the page was made over
+    private volatile boolean shared;     // whether image must be copied before the page changes it
+    private int[] fieldOffsets;    // offset of each field within a tuple
 
     // ------------------------------------------------
     // oldData fields:
     // these are used for logging and recovery -- you can ignore for now
     private final Byte oldDataLock = (byte) 0;
-    private byte[] oldData;
+    private byte[] oldData;        // null while the page is unchanged since setBeforeImage
     // ------------------------------------------------
 
     /**
@@ -53,8 +85,8 @@ public class SlottedPage implements Page {
         this.pid = pid;
         this.td = td;
         this.pageSize = pageSize;
-        this.slots = new Tuple[this.getNumSlots()];
-         // write some code here to finish initializing this object
+        initSlots();
+        image = ByteBuffer.wrap(new byte[pageSize]);
         setBeforeImage();  // used for logging, leave this line at end of constructor
     }
 
@@ -66,11 +98,63 @@ public class SlottedPage implements Page {
      * @param data data with which to initialize page content
      */
     public SlottedPage(PageId pid, TupleDesc td, int pageSize, byte[] data) {
-        this(pid, td, pageSize);
-        setPageData(data);
+        this(pid, td, pageSize, ByteBuffer.wrap(data), false);
+    }
+
+    /**
+     * Constructs SlottedPage with its data initialized from the bytes between the buffer's
+     * position and limit.  The bytes are not copied: the page reads them from the buffer
+     * until it is first changed or {@link #detach()} is called, and the caller must not
+     * change them until then.  The buffer itself is never written.
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     * @param data data with which to initialize page content
+     */
+    public SlottedPage(PageId pid, TupleDesc td, int pageSize, ByteBuffer data) {
+        this(pid, td, pageSize, data, true);
+        shared = true;
+    }
+
+    /**
+     * Constructs SlottedPage from the bytes between the buffer's position and limit, either
+     * copying them or keeping them in the buffer.
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     * @param data data with which to initialize page content
+     * @param over whether the page keeps its bytes in data until {@link #detach()} is called
+     */
+    SlottedPage(PageId pid, TupleDesc td, int pageSize, ByteBuffer data, boolean over) {
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        initSlots();
+        if (over) {
+            if (data.remaining() < pageSize) {
+                throw new PageException("buffer holds " + data.remaining() + " bytes, page is " + pageSize);
+            }
+            ByteBuffer view = data.slice();
+            view.limit(pageSize);
+            image = view;
+            slots = null;
+            borrowed = true;
+            used = SlottedPageFormatter.readHeader(image, numSlots);
+        } else {
+            setPageData(data);
+        }
         setBeforeImage();  // used for logging, leave this line at end of constructor
     }
 
+    private void initSlots() {
+        numSlots = SlottedPageFormatter.computePageCapacity(pageSize, td);
+        used = new BitSet(numSlots);
+        fieldOffsets = new int[td.numFields()];
+        for (int i = 1; i < fieldOffsets.length; i++) {
+            fieldOffsets[i] = fieldOffsets[i - 1] + td.getFieldType(i - 1).getLen();
+        }
+    }
+
     @Override
     public PageId getId() {
         return pid;
@@ -85,7 +169,7 @@ public class SlottedPage implements Page {
      * @return true if this slot is used (i.e., is occupied by a Tuple).
      */
     public boolean isSlotUsed(int slotno) {
-        return slots[slotno] != null;
+        return used.get(slotno);
     }
 
     /**
@@ -94,7 +178,7 @@ public class SlottedPage implements Page {
      * @return true if this slot is empty (i.e., is not occupied by a Tuple).
      */
     public boolean isSlotEmpty(int slotno) {
-       return slots[slotno] == null;
+       return !used.get(slotno);
     }
 
     /**
@@ -102,21 +186,38 @@ public class SlottedPage implements Page {
      * the page size and the schema (TupleDesc).
      */
     public int getNumSlots() {
-        int size = SlottedPageFormatter.computePageCapacity(pageSize, td);
-        return size;  // this will need to be revised later
+        return numSlots;
     }
 
     /**
      * @return the number of slots on this page that are empty.
      */
     public int getNumEmptySlots() {
-        int count = 0;
-        for (int i = 0; i < slots.length; i++){
-            if (isSlotEmpty(i)){
-                count++;
-            }
-        }
-        return count;
+        return numSlots - used.cardinality();
+    }
+
+    /**
+     * @param from the slot to start looking at
+     * @return the first used slot at or after the given one, or -1 if there is none
+     */
+    public int nextUsedSlot(int from) {
+        return used.nextSetBit(from);
+    }
+
+    /**
+     * @param from the slot to start looking at
+     * @return the first empty slot at or after the given one, or -1 if there is none
+     */
+    public int nextEmptySlot(int from) {
+        int slotno = used.nextClearBit(from);
+        return slotno < numSlots ? slotno : -1;
+    }
+
+    /**
+     * @return true if the page has an empty slot; every tuple takes the same space.
+     */
+    public boolean hasRoomFor(Tuple t) {
+        return getNumEmptySlots() > 0;
     }
 
     /**
@@ -128,7 +229,40 @@ public class SlottedPage implements Page {
         if (isSlotEmpty(slotno)){
             throw new PageException("slot is empty");
         }
-        return  slots[slotno];
+        Tuple[] slots = this.slots;
+        Tuple t = slots != null ? slots[slotno] : null;
+        return t != null ? t : decodeTuple(slotno);
+    }
+
+    /**
+     * Reads the tuple in the given slot out of the page's bytes.
+     */
+    private Tuple decodeTuple(int slotno) {
+        ByteBuffer buffer = image.duplicate();
+        buffer.position(tupleOffset(slotno));
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < fieldOffsets.length; j++) {
+            t.setField(j, td.getFieldType(j).parse(buffer));
+        }
+        t.setRecordId(new RecordId(pid, slotno));
+        return t;
+    }
+
+    private int tupleOffset(int slotno) {
+        return SlottedPageFormatter.getTupleOffset(numSlots, slotno, td);
+    }
+
+    /**
+     * Tests a field of the tuple in a used slot against an operand.  An int field is compared
+     * where it lies in the page's bytes, without decoding the tuple.
+     * @see Field#compare(Op, Field)
+     */
+    public boolean matches(int slotno, int field, Op op, Field operand) {
+        if (td.getFieldType(field) == Type.INT_TYPE && operand instanceof IntField) {
+            int value = image.getInt(tupleOffset(slotno) + fieldOffsets[field]);
+            return IntField.compare(value, op, ((IntField) operand).getValue());
+        }
+        return getTuple(slotno).getField(field).compare(op, operand);
     }
 
     /**
@@ -143,13 +277,23 @@ public class SlottedPage implements Page {
      *                          passed tuple is a mismatch with TupleDesc of this page.
      */
     public void insertTuple(int slotno, Tuple t) {
+        if (slotno < 0 || slotno >= numSlots) {
+            throw new PageException("No such slot");
+        }
         if(isSlotUsed(slotno)){
             throw new PageException ("The slot is full");
         }
         if(! t.getTupleDesc().equals(td)){
             throw new PageException ("The TupleDesc not match the TupleDesc of the page");
         }
+        saveBeforeImage();
+        unshare();
+        SlottedPageFormatter.writeTuple(image, numSlots, slotno, t, td);
+        if (slots == null) {
+            slots = new Tuple[numSlots];
+        }
         slots[slotno] = t;
+        used.set(slotno);
         RecordId rid = new RecordId(pid, slotno);
         t.setRecordId(rid);
     }
@@ -168,19 +312,11 @@ public class SlottedPage implements Page {
         if(! t.getTupleDesc().equals(td)){
             throw new PageException ("The TupleDesc not match the TupleDesc of the page");
         }
-        boolean full = true;
-        for (int i = 0; i < slots.length; i++){
-            if(isSlotEmpty(i)){
-                slots[i]=t;
-                RecordId rid = new RecordId(pid, i);
-                t.setRecordId(rid);
-                full = false;
-                break;
-            }
-        }
-        if (full) {
+        int slotno = nextEmptySlot(0);
+        if (slotno < 0) {
             throw new PageException("The page is full");
         }
+        insertTuple(slotno, t);
     }
 
     /**
@@ -203,7 +339,13 @@ public class SlottedPage implements Page {
             throw new PageException("Slot is already empty");
         }
         t.setRecordId(null);
-        slots[slotNum] = null;
+        saveBeforeImage();
+        unshare();
+        SlottedPageFormatter.clearTuple(image, numSlots, slotNum, td);
+        if (slots != null) {
+            slots[slotNum] = null;
+        }
+        used.clear(slotNum);
     }
 
 
@@ -214,35 +356,45 @@ public class SlottedPage implements Page {
      * (Note: calling remove on this iterator throws an UnsupportedOperationException)
      */
     public Iterator<Tuple> iterator() {
-        return new MyIterator();
-        //return Arrays.asList(slots).iterator();
+        return new MyIterator(-1, null, null);
+    }
+
+    /**
+     * Creates an iterator over the tuples whose given field compares to the operand as
+     * {@link #matches} says.  Rows that do not match are skipped without being decoded.
+     *
+     * @param field index of the field to test
+     * @param op the comparison
+     * @param operand the value to compare the field to
+     * @return an iterator over the matching tuples on this page
+     */
+    public Iterator<Tuple> iterator(int field, Op op, Field operand) {
+        return new MyIterator(field, op, operand);
     }
 
     class MyIterator implements Iterator<Tuple> {
 
         private int currIdx;
+        private final int field;     // -1 if every tuple is returned
+        private final Op op;
+        private final Field operand;
 
-        public MyIterator() {
+        public MyIterator(int field, Op op, Field operand) {
             currIdx = 0;
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
         }
 
         @Override
         public boolean hasNext() {
-            if (currIdx < slots.length){
-                if (isSlotEmpty(currIdx)){
-                    currIdx++;
-                    return hasNext();
-                }
-                else if (isSlotUsed(currIdx)){
+            for (currIdx = used.nextSetBit(currIdx); currIdx >= 0; currIdx = used.nextSetBit(currIdx + 1)) {
+                if (field < 0 || matches(currIdx, field, op, operand)) {
                     return true;
                 }
-                else {
-                    throw new NoSuchElementException ("ERROR IN THE HAS NEXT");
-                }
-            }
-            else{
-                return false;
             }
+            currIdx = numSlots;   // stay exhausted
+            return false;
         }
 
         @Override
@@ -250,7 +402,7 @@ public class SlottedPage implements Page {
             if (!hasNext()) {   // always check!
                 throw new NoSuchElementException();
             }
-            Tuple nextValue = slots[currIdx];
+            Tuple nextValue = getTuple(currIdx);
             currIdx++;
             return nextValue;
         }
@@ -263,24 +415,83 @@ public class SlottedPage implements Page {
         }
     }
 
+    /**
+     * @return a copy of the page's bytes, which are kept up to date; nothing is serialized
+     */
     @Override
     public byte[] getPageData() {
-         return SlottedPageFormatter.pageToBytes(this, td, pageSize);  // this will need to be fixed later
+        byte[] bytes = new byte[pageSize];
+        image.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return a read-only view of the page's bytes, with no copy
+     */
+    @Override
+    public ByteBuffer getPageBuffer() {
+        return image.asReadOnlyBuffer();
     }
 
     /**
-     * Fill the contents of this according to the data stored in byte array.
+     * Fill the contents of this according to the data between the buffer's position and
+     * limit.  Only the header is parsed now; the tuples are decoded when they are read.
      * @param data
      */
-    private void setPageData(byte[] data) {
-        SlottedPageFormatter.bytesToPage(data, this, td);
+    private void setPageData(ByteBuffer data) {
+        byte[] bytes = new byte[pageSize];
+        try {
+            data.duplicate().get(bytes);
+        } catch (BufferUnderflowException e) {
+            throw new PageException(e);
+        }
+        image = ByteBuffer.wrap(bytes);
+        slots = null;
+        used = SlottedPageFormatter.readHeader(image, numSlots);
+    }
+
+    /**
+     * Copies the page's bytes out of the buffer it was made over, if any, so that the buffer
+     * can be reused.  A thread still reading the page may finish reading the old bytes.
+     */
+    @Override
+    public void detach() {
+        if (!borrowed) {
+            return;
+        }
+        image = ByteBuffer.wrap(getPageData());
+        slots = null;
+        borrowed = false;
+        shared = false;
+    }
+
+    /**
+     * Copies the page's bytes out of a buffer the caller lent it, if any, before the page
+     * changes them.
+     */
+    private void unshare() {
+        if (shared) {
+            detach();
+        }
+    }
+
+    /**
+     * Keeps the current bytes as the before image, unless the page was already modified
+     * since setBeforeImage.  Called before every modification.
+     */
+    private void saveBeforeImage() {
+        synchronized (oldDataLock) {
+            if (oldData == null) {
+                oldData = getPageData();
+            }
+        }
     }
 
     @Override
     public Page getBeforeImage() {
         byte[] oldDataRef;
         synchronized (oldDataLock) {
-            oldDataRef = Arrays.copyOf(oldData, oldData.length);
+            oldDataRef = oldData != null ? Arrays.copyOf(oldData, oldData.length) : getPageData();
         }
         return new SlottedPage(pid, td, pageSize, oldDataRef);
     }
@@ -288,7 +499,7 @@ public class SlottedPage implements Page {
     @Override
     public void setBeforeImage() {
         synchronized (oldDataLock) {
-            oldData = getPageData().clone();
+            oldData = null;   // the before image is the page as it is now
         }
     }
 
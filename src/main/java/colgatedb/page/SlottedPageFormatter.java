@@ -6,7 +6,9 @@ import colgatedb.tuple.TupleDesc;
 import java.lang.Math;
 import java.util.BitSet;
 
-import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
  * ColgateDB
@@ -79,69 +81,87 @@ public class SlottedPageFormatter {
      * @return the size of the header in bytes.
      */
     public static int getHeaderSize(int numSlots) {
-        double size = Math.ceil(numSlots/8.0);
-        return (int) size;
+        return (numSlots + 7) / 8;
+    }
+
+    /**
+     * @return the offset within the page of the tuple in the given slot
+     */
+    public static int getTupleOffset(int numSlots, int slotno, TupleDesc td) {
+        return getHeaderSize(numSlots) + slotno * td.getSize();
+    }
+
+    /**
+     * Read the header of the page data in the buffer, which is positioned at the start of
+     * the page.  The header's bit order is the one {@link BitSet#valueOf(ByteBuffer)} uses,
+     * so it is read a word at a time.  The buffer's position is not changed.
+     * @param buffer the page data
+     * @param numSlots number of slots on the page
+     * @return the set of occupied slots
+     */
+    public static BitSet readHeader(ByteBuffer buffer, int numSlots) {
+        ByteBuffer header = buffer.duplicate();
+        header.limit(header.position() + getHeaderSize(numSlots));
+        BitSet used = BitSet.valueOf(header);
+        used.clear(numSlots, Math.max(numSlots, used.length()));  // ignore stray padding bits
+        return used;
     }
 
     /**
      * Write out the page to bytes.  See the javadoc at the top of file for byte format description.
+     * The bytes are written straight into the array that is returned; empty slots and the
+     * excess bytes are left as the zeros it starts with.
      * @param page the page to write
      * @param td the TupleDesc that describes the tuples on the page
      * @param pageSize the size of the page
      * @return
      */
     public static byte[] pageToBytes(SlottedPage page, TupleDesc td, int pageSize) {
+        byte[] bytes = new byte[pageSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int numSlots = page.getNumSlots();
+        for (int i = page.nextUsedSlot(0); i >= 0; i = page.nextUsedSlot(i + 1)) {
+            writeTuple(buffer, numSlots, i, page.getTuple(i), td);
+        }
+        return bytes;
+    }
+
+    /**
+     * Write a tuple into its slot of the page data in the buffer, which starts at position 0,
+     * and mark the slot used.  Only the slot's bytes and its header byte are touched.
+     * @param buffer the page data
+     * @param numSlots number of slots on the page
+     * @param slotno the slot to write
+     * @param t the tuple; its fields must all be set
+     * @param td the TupleDesc of tuples on this page
+     */
+    public static void writeTuple(ByteBuffer buffer, int numSlots, int slotno, Tuple t, TupleDesc td) {
+        ByteBuffer slot = buffer.duplicate();
+        slot.position(getTupleOffset(numSlots, slotno, td));
+        int numFields = td.numFields();
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(pageSize);
-            DataOutputStream dos = new DataOutputStream(baos);
-            // write out the page data to the DataOutputStream dos, starting with the header then the tuples
-            // see the Javadocs for DataOutputStream for handy methods
-            // to write out the data of a Field use the Field.serialize method
-            // also, you may find it the markSlot method very useful here
-
-
-            int numSlots = page.getNumSlots();
-            int headerSize = getHeaderSize(numSlots);
-            byte[] header = new byte[headerSize];
-
-            //iterate through the slots and mark the bit in the header depending on weather the slot is used or not
-            for (int i = 0; i < numSlots; i++){
-                if(page.isSlotUsed(i)) {
-                    markSlot(i, header);
-                }
+            for (int j = 0; j < numFields; j++) {
+                t.getField(j).serialize(slot);
             }
-            dos.write(header,0,headerSize);
-
-            //iterate through the pages
-            //if the slot is used, get the tuple and write the fields to the dos
-            // if the pages are empty add 0s
-
-            for (int i = 0; i < numSlots; i++){
-                if(page.isSlotUsed(i)) {
-                    Tuple t = page.getTuple(i);
-                    TupleDesc tdTemp = t.getTupleDesc();
-                    for (int j = 0; j < tdTemp.numFields(); j++) {
-                        Field field = t.getField(j);
-                        field.serialize(dos);
-                    }
-                }
-                else {
-                    byte[] b =  new byte[td.getSize()];
-                    for (int idx = 0; idx < td.getSize(); idx++){
-                        b[idx] = 0;
-                    }
-                    dos.write(b);
-                }
-            }
-            byte[] excess = new byte[pageSize - dos.size()];
-            for(int i = 0; i < pageSize - dos.size(); i++ ){
-                excess[i] = 0;
-            }
-            dos.write(excess);
-            return baos.toByteArray();
-        } catch (Exception e) {
+        } catch (BufferOverflowException | NullPointerException e) {
             throw new PageException(e);
         }
+        markSlot(slotno, buffer, true);
+    }
+
+    /**
+     * Zero a slot of the page data in the buffer, which starts at position 0, and mark it empty.
+     * @param buffer the page data
+     * @param numSlots number of slots on the page
+     * @param slotno the slot to clear
+     * @param td the TupleDesc of tuples on this page
+     */
+    public static void clearTuple(ByteBuffer buffer, int numSlots, int slotno, TupleDesc td) {
+        int offset = getTupleOffset(numSlots, slotno, td);
+        for (int i = 0; i < td.getSize(); i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+        markSlot(slotno, buffer, false);
     }
 
 //    // Helper function that will set the bit in the byte array to the desired value
@@ -162,77 +182,50 @@ public class SlottedPageFormatter {
      * @param td the TupleDesc of tuples on this page
      */
     public static void bytesToPage(byte[] bytes, SlottedPage emptyPage, TupleDesc td) {
+        bytesToPage(ByteBuffer.wrap(bytes), emptyPage, td);
+    }
 
+    /**
+     * Populate the empty page with data read from the buffer, starting at its current position.  Fields
+     * are parsed straight out of the buffer, so a page can be built from a slice of a larger region
+     * (e.g., a memory-mapped file) without first copying it into an array.
+     * @param buffer buffer positioned at the start of the page data; its position is advanced
+     * @param emptyPage an initially emptyPage to be populated
+     * @param td the TupleDesc of tuples on this page
+     */
+    public static void bytesToPage(ByteBuffer buffer, SlottedPage emptyPage, TupleDesc td) {
         try {
-            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
-            // read in the data DataInputStream dis, first the header then the bytes of each tuple
-            // see the Javadocs for DataInputStream for handy methods
-            // to read the data associated with a Field in a tuple, use the Type.parse method
-            // also, you may find it the isSlotUsed method very useful here
-            dis.close();
-
-
-//            byte[] test = new byte[1];
-//            test[0] = 1;
-//            System.out.println("is slot used: " + isSlotUsed(0, test));
-
             int numSlots = emptyPage.getNumSlots();
-            int headerSize = getHeaderSize(numSlots);
-            byte[] header = new byte[headerSize];
-
+            int start = buffer.position();
             int numFields = td.numFields();
 
-            dis.read(header, 0, headerSize);
-//            for(int i = 0; i < header.length; i++){
-//                System.out.println(header[i]);
-//            }
-
-            for (int i = 0; i < numSlots; i++){
-                if (isSlotUsed(i, header)){
-                    Tuple tuple = new Tuple(td);
-                    for(int j = 0; j < numFields; j++) {
-                        Field f = td.getFieldType(j).parse(dis);
-                        tuple.setField(j, f);
-                    }
-                    emptyPage.insertTuple(i, tuple);
-                }
-                else{
-                    dis.skipBytes(td.getSize());
+            BitSet used = readHeader(buffer, numSlots);
+            for (int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+                buffer.position(start + getTupleOffset(numSlots, i, td));
+                Tuple tuple = new Tuple(td);
+                for(int j = 0; j < numFields; j++) {
+                    Field f = td.getFieldType(j).parse(buffer);
+                    tuple.setField(j, f);
                 }
+                emptyPage.insertTuple(i, tuple);
             }
-
-        } catch (IOException e) {
+            buffer.position(start + getTupleOffset(numSlots, numSlots, td));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
             throw new PageException(e);
         }
     }
 
 
-    /**
-     * Checks whether a slot in the header is used or not.  Optional helper method.
-     * @param i slot index to check
-     * @param header a byte header, formatted as described in the javadoc at the top.
-     * @return
-     */
-    private static boolean isSlotUsed(int i, byte[] header) {
-        int bytePos = i/8;
-        int bitPos = (i % 8);
-        byte b = header[bytePos];
-        b = (byte) (b & (byte) Math.pow(2, bitPos));
-        boolean test = b >= (byte) 1;
-        return b != (byte) 0;
-    }
-
     /**
      * Marks a slot in the header as used or not.  Optional helper method.
      * @param i slot index
-     * @param header a byte header, formatted as described in the javadoc at the top.
-     * //@param isUsed if true, slot should be set to 1; if false, set to 0
+     * @param page the page data, whose header is formatted as described in the javadoc at the top.
+     * @param isUsed if true, slot should be set to 1; if false, set to 0
      */
-    private static void markSlot(int i, byte[] header) {
+    static void markSlot(int i, ByteBuffer page, boolean isUsed) {
         int posByte = i / 8;
         int posBit =  i % 8;
-
-        header[posByte] = (byte) (header[posByte]|(byte) Math.pow(2, posBit));
-
+        byte b = page.get(posByte);
+        page.put(posByte, (byte) (isUsed ? b | (1 << posBit) : b & ~(1 << posBit)));
     }
 }
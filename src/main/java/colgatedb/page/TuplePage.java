@@ -0,0 +1,111 @@
+package colgatedb.page;
+
+import colgatedb.tuple.Field;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.Tuple;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A page that stores the tuples of a heap file, each in a numbered slot.  How the tuples
+ * are laid out in the page's bytes depends on the implementation (see {@link PageLayout}).
+ * A tuple's slot number is its {@link colgatedb.tuple.RecordId#tupleno()} and does not
+ * change while the tuple is on the page.
+ */
+public interface TuplePage extends Page {
+
+    /**
+     * @return the number of slots this page can hold.
+     */
+    int getNumSlots();
+
+    /**
+     * @param slotno the slot number
+     * @return true if this slot is used (i.e., is occupied by a Tuple).
+     */
+    boolean isSlotUsed(int slotno);
+
+    /**
+     * @param slotno the slot number
+     * @return true if this slot is empty (i.e., is not occupied by a Tuple).
+     */
+    boolean isSlotEmpty(int slotno);
+
+    /**
+     * @return the number of slots on this page that are empty.
+     */
+    int getNumEmptySlots();
+
+    /**
+     * @param t a tuple with this page's schema
+     * @return true if {@link #insertTuple(Tuple)} would find room for the tuple.  With
+     * variable-length tuples, a page can have empty slots and still lack room.
+     */
+    boolean hasRoomFor(Tuple t);
+
+    /**
+     * @param slotno the slot of interest
+     * @return returns the Tuple at given slot
+     * @throws PageException if slot is empty
+     */
+    Tuple getTuple(int slotno);
+
+    /**
+     * Adds the specified tuple to specific slot in page, and sets its RecordId.
+     * @throws PageException if the slot is full, the page has no room for the tuple, or
+     *                       TupleDesc of passed tuple is a mismatch with TupleDesc of this page.
+     */
+    void insertTuple(int slotno, Tuple t);
+
+    /**
+     * Adds the specified tuple to the page into an available slot, and sets its RecordId.
+     * @throws PageException if the page has no room for the tuple or TupleDesc of
+     *                       passed tuple is a mismatch with TupleDesc of this page.
+     */
+    void insertTuple(Tuple t);
+
+    /**
+     * Delete the specified tuple from the page, and clear its RecordId.
+     * @throws PageException if this tuple doesn't have a record id, is not on this page, or tuple
+     *                       slot is already empty.
+     */
+    void deleteTuple(Tuple t);
+
+    /**
+     * @return an iterator over all tuples on this page, in slot order
+     */
+    Iterator<Tuple> iterator();
+
+    /**
+     * @return an iterator over the tuples whose given field compares to the operand
+     * @see Field#compare(Op, Field)
+     */
+    Iterator<Tuple> iterator(int field, Op op, Field operand);
+
+    /**
+     * Like {@link #iterator(int, Op, Field)}, with a hint that only the given fields of each
+     * tuple are needed.  A page may leave the other fields unset (null), but by default every
+     * field is read.
+     * @param columns the fields needed
+     * @param field the field to test, or -1 to return every tuple
+     */
+    default Iterator<Tuple> iterator(BitSet columns, int field, Op op, Field operand) {
+        return field < 0 ? iterator() : iterator(field, op, operand);
+    }
+}
@@ -0,0 +1,441 @@
+package colgatedb.page;
+
+import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.RecordId;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * VariableSlottedPage stores tuples of one schema in as many bytes as each needs: an int
+ * takes 4 bytes and a string takes a 2-byte length plus one byte per character.
+ * <p>
+ * The page format has three components:
+ * (a) header: the number of directory entries and the offset where tuple data starts,
+ *     each an unsigned short
+ * (b) slot directory: one entry per slot, growing toward the end of the page, each an
+ *     (offset, length) pair of unsigned shorts.  A length of 0 marks an empty slot.
+ * (c) tuple data, packed at the end of the page and growing toward the directory
+ * <p>
+ * Deleting a tuple compacts the page at once: the tuple data below it moves up to close
+ * the gap, so the free space is always the single run between the directory and the data.
+ * Slot numbers do not change, since only offsets in the directory are updated.  Trailing
+ * empty entries are dropped from the directory; other empty entries are reused by inserts.
+ * <p>
+ * As with {@link SlottedPage}, the page's bytes are kept up to date, and tuples read from
+ * them are decoded only when asked for.  Pages may be at most 65535 bytes.
+ */
+public class VariableSlottedPage implements TuplePage {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int ENTRY_SIZE = 4;
+    private static final int STRING_HEADER = 2;   // a string's length prefix
+
+    private final PageId pid;
+    private final TupleDesc td;
+    private final int pageSize;
+    private final Tuple[] slots;   // tuples inserted since the page was built; others are read from image
+    private ByteBuffer image;
+
+    // ------------------------------------------------
+    // oldData fields:
+    // these are used for logging and recovery -- you can ignore for now
+    private final Byte oldDataLock = (byte) 0;
+    private byte[] oldData;
+    // ------------------------------------------------
+
+    /**
+     * Constructs empty VariableSlottedPage
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     */
+    public VariableSlottedPage(PageId pid, TupleDesc td, int pageSize) {
+        if (pageSize > 0xFFFF) {
+            throw new PageException("page size " + pageSize + " too large for a variable-length layout");
+        }
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        this.slots = new Tuple[computeMaxSlots(pageSize, td)];
+        image = ByteBuffer.wrap(new byte[pageSize]);
+        setDataStart(pageSize);
+        setBeforeImage();  // used for logging, leave this line at end of constructor
+    }
+
+    /**
+     * Constructs VariableSlottedPage with its data initialized from the bytes between the
+     * buffer's position and limit.  The bytes are copied; no reference to the buffer is kept.
+     * @param pid  page id to assign to this page
+     * @param td   the schema for tuples held on this page
+     * @param pageSize the size of this page
+     * @param data data with which to initialize page content
+     */
+    public VariableSlottedPage(PageId pid, TupleDesc td, int pageSize, ByteBuffer data) {
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        this.slots = new Tuple[computeMaxSlots(pageSize, td)];
+        byte[] bytes = new byte[pageSize];
+        try {
+            data.duplicate().get(bytes);
+        } catch (BufferUnderflowException e) {
+            throw new PageException(e);
+        }
+        image = ByteBuffer.wrap(bytes);
+        if (getNumEntries() > slots.length || getDataStart() > pageSize
+                || getDataStart() < HEADER_SIZE + getNumEntries() * ENTRY_SIZE) {
+            throw new PageException("corrupt page header");
+        }
+        setBeforeImage();  // used for logging, leave this line at end of constructor
+    }
+
+    /**
+     * Every tuple takes at least one directory entry plus 4 bytes per int field and 2 per
+     * string field, which bounds the number of slots.
+     * @return the most tuples a page of the given size can hold
+     */
+    public static int computeMaxSlots(int pageSize, TupleDesc td) {
+        int minTupleSize = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            minTupleSize += td.getFieldType(i) == Type.INT_TYPE ? Type.INT_TYPE.getLen() : STRING_HEADER;
+        }
+        return Math.max(0, (pageSize - HEADER_SIZE) / (ENTRY_SIZE + minTupleSize));
+    }
+
+    @Override
+    public PageId getId() {
+        return pid;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private int getNumEntries() {
+        return image.getShort(0) & 0xFFFF;
+    }
+
+    private void setNumEntries(int numEntries) {
+        image.putShort(0, (short) numEntries);
+    }
+
+    private int getDataStart() {
+        int start = image.getShort(2) & 0xFFFF;
+        return start == 0 ? pageSize : start;   // 0 in a page of zeros, e.g., one just allocated
+    }
+
+    private void setDataStart(int start) {
+        image.putShort(2, (short) start);
+    }
+
+    private int entryOffset(int slotno) {
+        return image.getShort(HEADER_SIZE + slotno * ENTRY_SIZE) & 0xFFFF;
+    }
+
+    private int entryLength(int slotno) {
+        return image.getShort(HEADER_SIZE + slotno * ENTRY_SIZE + 2) & 0xFFFF;
+    }
+
+    private void setEntry(int slotno, int offset, int length) {
+        image.putShort(HEADER_SIZE + slotno * ENTRY_SIZE, (short) offset);
+        image.putShort(HEADER_SIZE + slotno * ENTRY_SIZE + 2, (short) length);
+    }
+
+    /**
+     * @return number of unused bytes between the directory and the tuple data
+     */
+    public int getFreeSpace() {
+        return getDataStart() - HEADER_SIZE - getNumEntries() * ENTRY_SIZE;
+    }
+
+    @Override
+    public int getNumSlots() {
+        return slots.length;
+    }
+
+    @Override
+    public boolean isSlotUsed(int slotno) {
+        return slotno < getNumEntries() && entryLength(slotno) != 0;
+    }
+
+    @Override
+    public boolean isSlotEmpty(int slotno) {
+        return !isSlotUsed(slotno);
+    }
+
+    @Override
+    public int getNumEmptySlots() {
+        int used = 0;
+        int numEntries = getNumEntries();
+        for (int i = 0; i < numEntries; i++) {
+            if (entryLength(i) != 0) {
+                used++;
+            }
+        }
+        return slots.length - used;
+    }
+
+    @Override
+    public boolean hasRoomFor(Tuple t) {
+        return findSlotFor(encodedLength(t)) >= 0;
+    }
+
+    /**
+     * @return the first slot that the tuple fits in, or -1 if there is no room
+     */
+    private int findSlotFor(int length) {
+        int numEntries = getNumEntries();
+        int free = getFreeSpace();
+        for (int i = 0; i < numEntries; i++) {
+            if (entryLength(i) == 0) {
+                return length <= free ? i : -1;
+            }
+        }
+        return numEntries < slots.length && length + ENTRY_SIZE <= free ? numEntries : -1;
+    }
+
+    /**
+     * @return number of bytes the tuple takes on the page
+     */
+    private int encodedLength(Tuple t) {
+        int length = 0;
+        for (int j = 0; j < td.numFields(); j++) {
+            Field f = t.getField(j);
+            if (f == null) {
+                throw new PageException("field " + j + " of tuple is not set");
+            }
+            length += f.getType() == Type.INT_TYPE ? Type.INT_TYPE.getLen()
+                    : STRING_HEADER + f.toString().length();
+        }
+        return length;
+    }
+
+    @Override
+    public Tuple getTuple(int slotno) {
+        if (isSlotEmpty(slotno)) {
+            throw new PageException("slot is empty");
+        }
+        Tuple t = slots[slotno];
+        return t != null ? t : decodeTuple(slotno);
+    }
+
+    private Tuple decodeTuple(int slotno) {
+        ByteBuffer buffer = image.duplicate();
+        buffer.position(entryOffset(slotno));
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.INT_TYPE) {
+                t.setField(j, new IntField(buffer.getInt()));
+            } else {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                t.setField(j, new StringField(new String(bytes, StandardCharsets.ISO_8859_1), Type.STRING_LEN));
+            }
+        }
+        t.setRecordId(new RecordId(pid, slotno));
+        return t;
+    }
+
+    /**
+     * Tests a field of the tuple in a used slot against an operand.  An int field is compared
+     * where it lies in the page's bytes, without decoding the tuple.
+     * @see Field#compare(Op, Field)
+     */
+    public boolean matches(int slotno, int field, Op op, Field operand) {
+        if (td.getFieldType(field) == Type.INT_TYPE && operand instanceof IntField) {
+            int offset = entryOffset(slotno);
+            for (int j = 0; j < field; j++) {   // step over the fields before it
+                offset += td.getFieldType(j) == Type.INT_TYPE ? Type.INT_TYPE.getLen()
+                        : STRING_HEADER + (image.getShort(offset) & 0xFFFF);
+            }
+            return IntField.compare(image.getInt(offset), op, ((IntField) operand).getValue());
+        }
+        return getTuple(slotno).getField(field).compare(op, operand);
+    }
+
+    @Override
+    public void insertTuple(int slotno, Tuple t) {
+        if (isSlotUsed(slotno)) {
+            throw new PageException("The slot is full");
+        }
+        if (!t.getTupleDesc().equals(td)) {
+            throw new PageException("The TupleDesc not match the TupleDesc of the page");
+        }
+        int length = encodedLength(t);
+        int numEntries = getNumEntries();
+        int newEntries = Math.max(0, slotno + 1 - numEntries);
+        if (slotno >= slots.length || length + newEntries * ENTRY_SIZE > getFreeSpace()) {
+            throw new PageException("The page has no room for the tuple");
+        }
+        setNumEntries(numEntries + newEntries);   // entries between are zero, i.e., empty
+        int offset = getDataStart() - length;
+        ByteBuffer buffer = image.duplicate();
+        buffer.position(offset);
+        for (int j = 0; j < td.numFields(); j++) {
+            Field f = t.getField(j);
+            if (f.getType() == Type.INT_TYPE) {
+                buffer.putInt(((IntField) f).getValue());
+            } else {
+                String s = f.toString();
+                buffer.putShort((short) s.length());
+                for (int k = 0; k < s.length(); k++) {
+                    buffer.put((byte) s.charAt(k));
+                }
+            }
+        }
+        setDataStart(offset);
+        setEntry(slotno, offset, length);
+        slots[slotno] = t;
+        t.setRecordId(new RecordId(pid, slotno));
+    }
+
+    @Override
+    public void insertTuple(Tuple t) {
+        if (!t.getTupleDesc().equals(td)) {
+            throw new PageException("The TupleDesc not match the TupleDesc of the page");
+        }
+        int slotno = findSlotFor(encodedLength(t));
+        if (slotno < 0) {
+            throw new PageException("The page is full");
+        }
+        insertTuple(slotno, t);
+    }
+
+    /**
+     * Removes the tuple and moves the tuple data below it up over its bytes.
+     */
+    @Override
+    public void deleteTuple(Tuple t) {
+        if (t.getRecordId() == null) {
+            throw new PageException("Tuple has no record Id");
+        }
+        int slotno = t.getRecordId().tupleno();
+        if (!t.getRecordId().getPageId().equals(pid)) {
+            throw new PageException("Tuple is not on this page");
+        }
+        if (isSlotEmpty(slotno)) {
+            throw new PageException("Slot is already empty");
+        }
+        t.setRecordId(null);
+        int offset = entryOffset(slotno);
+        int length = entryLength(slotno);
+        int dataStart = getDataStart();
+        byte[] bytes = image.array();
+        System.arraycopy(bytes, dataStart, bytes, dataStart + length, offset - dataStart);
+        Arrays.fill(bytes, dataStart, dataStart + length, (byte) 0);
+        setDataStart(dataStart + length);
+        setEntry(slotno, 0, 0);
+        slots[slotno] = null;
+        int numEntries = getNumEntries();
+        for (int i = 0; i < numEntries; i++) {
+            if (entryLength(i) != 0 && entryOffset(i) < offset) {
+                setEntry(i, entryOffset(i) + length, entryLength(i));
+            }
+        }
+        while (numEntries > 0 && entryLength(numEntries - 1) == 0) {
+            numEntries--;
+        }
+        setNumEntries(numEntries);
+    }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        return new SlotIterator(-1, null, null);
+    }
+
+    @Override
+    public Iterator<Tuple> iterator(int field, Op op, Field operand) {
+        return new SlotIterator(field, op, operand);
+    }
+
+    private class SlotIterator implements Iterator<Tuple> {
+
+        private int currIdx = 0;
+        private final int field;     // -1 if every tuple is returned
+        private final Op op;
+        private final Field operand;
+
+        SlotIterator(int field, Op op, Field operand) {
+            this.field = field;
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean hasNext() {
+            int numEntries = getNumEntries();
+            while (currIdx < numEntries) {
+                if (isSlotUsed(currIdx) && (field < 0 || matches(currIdx, field, op, operand))) {
+                    return true;
+                }
+                currIdx++;
+            }
+            return false;
+        }
+
+        @Override
+        public Tuple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return getTuple(currIdx++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("my data can't be modified!");
+        }
+    }
+
+    @Override
+    public byte[] getPageData() {
+        return image.array().clone();
+    }
+
+    @Override
+    public ByteBuffer getPageBuffer() {
+        return image.asReadOnlyBuffer();
+    }
+
+    @Override
+    public Page getBeforeImage() {
+        byte[] oldDataRef;
+        synchronized (oldDataLock) {
+            oldDataRef = Arrays.copyOf(oldData, oldData.length);
+        }
+        return new VariableSlottedPage(pid, td, pageSize, ByteBuffer.wrap(oldDataRef));
+    }
+
+    @Override
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = getPageData();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package colgatedb.tuple;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A string read from a dictionary-encoded column: it carries the string's code in the
+ * table's {@link StringDictionary} along with the string itself, which is the dictionary's
+ * own copy, so reading one allocates no characters.
+ * <p>
+ * Equality with another string from the same dictionary is decided on codes alone.  Other
+ * comparisons, and comparisons with any other string, are made on the strings as usual, so a
+ * DictStringField can stand wherever a {@link StringField} can.  Its hash code is the
+ * string's, which String computes only once.
+ */
+public class DictStringField extends StringField {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient StringDictionary dictionary;
+    private final int code;
+
+    /**
+     * @param dictionary the dictionary of the table the string was read from
+     * @param code the string's code in the dictionary
+     */
+    public DictStringField(StringDictionary dictionary, int code) {
+        super(dictionary.decode(code), Type.STRING_LEN);
+        this.dictionary = dictionary;
+        this.code = code;
+    }
+
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return true if the other field's code from the same dictionary can stand for its value
+     */
+    private boolean sameDictionary(Field field) {
+        return dictionary != null && field instanceof DictStringField
+                && ((DictStringField) field).dictionary == dictionary;
+    }
+
+    @Override
+    public boolean equals(Object field) {
+        if (sameDictionary((Field) field)) {
+            return code == ((DictStringField) field).code;
+        }
+        return super.equals(field);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public boolean compare(Op op, Field val) {
+        if (sameDictionary(val)) {
+            if (op == Op.EQUALS) {
+                return code == ((DictStringField) val).code;
+            } else if (op == Op.NOT_EQUALS) {
+                return code != ((DictStringField) val).code;
+            }
+        }
+        return super.compare(op, val);
+    }
+}
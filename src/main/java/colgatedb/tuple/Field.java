@@ -3,6 +3,7 @@ package colgatedb.tuple;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * ColgateDB
@@ -29,6 +30,14 @@ public interface Field extends Serializable {
      */
     void serialize(DataOutputStream dos) throws IOException;
 
+    /**
+     * Write the same bytes as {@link #serialize(DataOutputStream)} into the buffer, at its
+     * current position, advancing the position past them.
+     *
+     * @param buffer The buffer to write to.
+     */
+    void serialize(ByteBuffer buffer);
+
     /**
      * Compare the value of this field object to the passed in value.
      *
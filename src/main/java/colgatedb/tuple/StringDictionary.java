@@ -0,0 +1,177 @@
+package colgatedb.tuple;
+
+import colgatedb.DiskManagerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A table's dictionary of strings: it gives each distinct string stored in the table's
+ * dictionary-encoded columns an int code, starting at 0, and the table's pages hold the
+ * codes in place of the strings (see {@link colgatedb.TableOptions#dictionaryEncoded(int...)}).
+ * Codes are never reused or reassigned, so two strings from the same dictionary are equal
+ * if and only if their codes are.
+ * <p>
+ * A dictionary kept in a file is loaded when it is opened, and each new string is appended
+ * and forced before its code is returned, so no page can hold a code that the file lacks.
+ * Each entry is the string's length (an int) followed by its characters, one byte each.
+ * <p>
+ * Meant for columns with few distinct values: decoding is an array lookup, and the array is
+ * copied whenever a string is added.
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] values = new String[0];   // by code; replaced, never changed
+    private final FileChannel file;                      // null if kept only in memory
+
+    /**
+     * Creates an empty dictionary kept only in memory.
+     */
+    public StringDictionary() {
+        this.file = null;
+    }
+
+    /**
+     * Opens the dictionary kept in the given file, creating the file if it does not exist.
+     */
+    public StringDictionary(File file) {
+        try {
+            this.file = new RandomAccessFile(file, "rw").getChannel();
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {   // a truncated or corrupt entry
+            close();
+            throw new DiskManagerException(e);
+        }
+    }
+
+    private void load() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) file.size());
+        while (bytes.hasRemaining()) {
+            if (file.read(bytes, bytes.position()) < 0) {
+                throw new IOException("Unexpected end of file!");
+            }
+        }
+        bytes.flip();
+        String[] loaded = new String[16];
+        int size = 0;
+        while (bytes.hasRemaining()) {
+            byte[] chars = new byte[bytes.getInt()];
+            bytes.get(chars);
+            if (size == loaded.length) {
+                loaded = Arrays.copyOf(loaded, size * 2);
+            }
+            loaded[size] = new String(chars, StandardCharsets.ISO_8859_1);
+            codes.put(loaded[size], size);
+            size++;
+        }
+        values = Arrays.copyOf(loaded, size);
+    }
+
+    /**
+     * @return the code of the string, adding it to the dictionary if it is new
+     */
+    public int encode(String s) {
+        Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(s);
+            if (code == null) {
+                code = values.length;
+                if (file != null) {
+                    append(s);
+                }
+                String[] grown = Arrays.copyOf(values, code + 1);
+                grown[code] = s;
+                values = grown;
+                codes.put(s, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * @return the code of the string, or -1 if it is not in the dictionary
+     */
+    public int lookup(String s) {
+        Integer code = codes.get(s);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @return the string with the given code
+     * @throws NoSuchElementException if no string has the code
+     */
+    public String decode(int code) {
+        String[] values = this.values;
+        if (code < 0 || code >= values.length) {
+            throw new NoSuchElementException("no string has code " + code);
+        }
+        return values[code];
+    }
+
+    /**
+     * @return number of strings in the dictionary
+     */
+    public int size() {
+        return values.length;
+    }
+
+    private void append(String s) {
+        ByteBuffer entry = ByteBuffer.allocate(4 + s.length());
+        entry.putInt(s.length());
+        entry.put(s.getBytes(StandardCharsets.ISO_8859_1));
+        entry.flip();
+        try {
+            long offset = file.size();
+            while (entry.hasRemaining()) {
+                file.write(entry, offset + entry.position());
+            }
+            file.force(true);
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Closes the dictionary's file, if it has one.
+     */
+    public void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new DiskManagerException(e);
+            }
+        }
+    }
+}
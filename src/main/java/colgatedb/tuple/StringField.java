@@ -2,6 +2,7 @@ package colgatedb.tuple;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * ColgateDB
@@ -80,6 +81,17 @@ public class StringField implements Field {
             dos.write((byte) 0);
     }
 
+    public void serialize(ByteBuffer buffer) {
+        int length = Math.min(value.length(), maxSize);
+        buffer.putInt(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value.charAt(i));   // low byte only, as DataOutputStream.writeBytes does
+        }
+        for (int i = length; i < maxSize; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
     /**
      * Compare the specified field to the value of this Field. Return semantics
      * are as specified by Field.compare
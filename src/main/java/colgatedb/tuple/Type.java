@@ -3,6 +3,8 @@ package colgatedb.tuple;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -38,6 +40,15 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buffer) {
+            try {
+                return new IntField(buffer.getInt());
+            } catch (BufferUnderflowException e) {
+                throw new RuntimeException("Error reading from buffer", new ParseException("couldn't parse", 0));
+            }
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -56,6 +67,19 @@ public enum Type implements Serializable {
                 throw new RuntimeException("Error reading from stream", new ParseException("couldn't parse", 0));
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buffer) {
+            try {
+                int strLen = buffer.getInt();
+                byte bs[] = new byte[strLen];
+                buffer.get(bs);
+                buffer.position(buffer.position() + STRING_LEN - strLen);
+                return new StringField(new String(bs), STRING_LEN);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new RuntimeException("Error reading from buffer", new ParseException("couldn't parse", 0));
+            }
+        }
     };
 
     public static final int STRING_LEN = 128;
@@ -74,4 +98,14 @@ public enum Type implements Serializable {
      */
     public abstract Field parse(DataInputStream dis);
 
+    /**
+     * @param buffer The buffer to read from, starting at its current position.  On return, the
+     *               position has advanced by {@link #getLen()} bytes.
+     * @return a Field object of the same type as this object that has contents
+     * read from the specified buffer.
+     * @throws RuntimeException if the data read from the buffer is not
+     *                        of the appropriate type.
+     */
+    public abstract Field parse(ByteBuffer buffer);
+
 }
@@ -100,6 +100,9 @@ public class AccessManagerTestBase {
         @Override
         public void evictDirty(boolean allowEvictDirty) {}
 
+        @Override
+        public void resize(int numPages) {}
+
         @Override
         public void allocatePage(PageId pid) {
             pageAllocations.add(pid);
@@ -0,0 +1,352 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class BufferManagerConcurrencyTest {
+
+    private final int tableid = 1;
+    private final PageMaker pm = new SlottedPageMaker(TestUtility.getTupleDesc(1), 64);
+
+    private PageId pid(int pageno) {
+        return new SimplePageId(tableid, pageno);
+    }
+
+    /**
+     * While one thread is reading a page from disk, hits and misses on other pages go
+     * ahead, and a second thread that wants the same page waits for the first one's read.
+     */
+    @Test(timeout = 10000)
+    public void missesDoNotBlockOtherPages() throws InterruptedException {
+        final SlowDiskManager dm = new SlowDiskManager(9);
+        final BufferManagerImpl bm = new BufferManagerImpl(4, dm);
+        bm.setReadahead(0, 0);
+        bm.pinPage(pid(0), pm);
+        bm.unpinPage(pid(0), false);
+
+        final AtomicReference<Page> first = new AtomicReference<Page>();
+        final AtomicReference<Page> second = new AtomicReference<Page>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                first.set(bm.pinPage(pid(9), pm));
+            }
+        });
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                second.set(bm.pinPage(pid(9), pm));
+            }
+        });
+        reader.start();
+        dm.started.await();
+        waiter.start();
+
+        // page 9 is being read: a hit and a miss on other pages must not wait for it
+        bm.pinPage(pid(0), pm);
+        bm.unpinPage(pid(0), false);
+        bm.pinPage(pid(1), pm);
+        bm.unpinPage(pid(1), false);
+        assertFalse(bm.inBufferPool(pid(9)));
+
+        dm.release.countDown();
+        reader.join();
+        waiter.join();
+        assertNotNull(first.get());
+        assertSame(first.get(), second.get());
+        assertEquals(1, dm.reads(pid(9)));
+        assertEquals(2, bm.getFrame(pid(9)).getPinCount());
+    }
+
+    /**
+     * A read that fails after its page was discarded does not remove the page a second
+     * time, so the pool's page counts stay right.
+     */
+    @Test(timeout = 10000)
+    public void failedReadOfDiscardedPage() throws InterruptedException {
+        final SlowDiskManager dm = new SlowDiskManager(9);
+        dm.failSlowPage = true;
+        final BufferManagerImpl bm = new BufferManagerImpl(2, dm);
+        bm.setReadahead(0, 0);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bm.pinPage(pid(9), pm);
+                } catch (RuntimeException e) {
+                    error.set(e);
+                }
+            }
+        });
+        reader.start();
+        dm.started.await();
+        bm.discardPage(pid(9));
+        dm.release.countDown();
+        reader.join();
+        assertTrue(error.get() instanceof DiskManagerException);
+        BufferPartition partition = bm.getPartition(tableid);
+        assertEquals(0, partition.getResidentPages());
+        assertEquals(0, bm.getStats().getPinnedFrames());
+        for (int i = 0; i < 4; i++) {
+            bm.pinPage(pid(i), pm);
+            bm.unpinPage(pid(i), false);
+        }
+        assertEquals(2, partition.getResidentPages());
+        assertEquals(2, bm.getNumResidentPages());
+    }
+
+    /**
+     * With a frame wait, a miss in a fully pinned pool blocks until a page is unpinned, and
+     * fails only once the timeout is up.  The time spent waiting is counted.
+     */
+    @Test(timeout = 10000)
+    public void missWaitsForFreeFrame() throws InterruptedException {
+        final BufferManagerImpl bm = new BufferManagerImpl(2, new SlowDiskManager(-1));
+        bm.setReadahead(0, 0);
+        bm.setFrameWait(5000, true);
+        bm.pinPage(pid(0), pm);
+        bm.pinPage(pid(1), pm);
+        final AtomicReference<Page> waited = new AtomicReference<Page>();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waited.set(bm.pinPage(pid(2), pm));
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        assertTrue(waiter.isAlive());
+        bm.unpinPage(pid(0), false);
+        waiter.join();
+        assertEquals(pid(2), waited.get().getId());
+        assertFalse(bm.inBufferPool(pid(0)));
+        long waitMillis = bm.getStats().getPinWaitMillis();
+        assertTrue(waitMillis >= 50);   // the waiter was blocked until the unpin, about 100ms
+        assertEquals(waitMillis, bm.getStats().getTableStats(pid(2).getTableId()).getPinWaitMillis());
+
+        bm.setFrameWait(50, false);
+        long start = System.currentTimeMillis();
+        try {
+            bm.pinPage(pid(3), pm);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected: nothing is unpinned in time
+        }
+        assertTrue(System.currentTimeMillis() - start >= 50);
+        assertTrue(bm.getStats().getPinWaitMillis() >= waitMillis + 50);
+        assertEquals(1, bm.getStats().getNoVictimFailures());
+    }
+
+    /**
+     * A thread at its pin limit cannot pin more until it unpins, while other threads can.
+     */
+    @Test(timeout = 10000)
+    public void pinLimitPerThread() throws InterruptedException {
+        final BufferManagerImpl bm = new BufferManagerImpl(4, new SlowDiskManager(-1));
+        bm.setReadahead(0, 0);
+        bm.setPinLimit(2);
+        bm.pinPage(pid(0), pm);
+        bm.pinPage(pid(0), pm);
+        try {
+            bm.pinPage(pid(1), pm);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected
+        }
+        final AtomicReference<Page> other = new AtomicReference<Page>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(bm.pinPage(pid(1), pm));
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        bm.unpinPage(pid(0), false);
+        bm.pinPage(pid(2), pm);
+        assertEquals(3, bm.getStats().getPinnedFrames());
+    }
+
+    /**
+     * A pin unpinned by another thread is credited to the thread that took it.
+     */
+    @Test(timeout = 10000)
+    public void pinLimitUnpinnedByOtherThread() throws InterruptedException {
+        final BufferManagerImpl bm = new BufferManagerImpl(6, new SlowDiskManager(-1));
+        bm.setReadahead(0, 0);
+        bm.setPinLimit(2);
+        bm.pinPage(pid(0), pm);
+        bm.pinPage(pid(1), pm);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bm.unpinPage(pid(0), false);
+                    bm.pinPage(pid(3), pm);   // this thread's own quota is untouched
+                    bm.pinPage(pid(4), pm);
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(error.get());
+        bm.pinPage(pid(2), pm);
+        try {
+            bm.pinPage(pid(5), pm);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected: pages 1 and 2
+        }
+    }
+
+    /**
+     * Many threads pinning and unpinning overlapping pages in a pool too small for all of them.
+     */
+    @Test(timeout = 30000)
+    public void manyThreads() throws InterruptedException {
+        final int poolSize = 16;
+        final int numPages = 64;
+        for (final ReplacementPolicyType type : ReplacementPolicyType.values()) {
+            final BufferManagerImpl bm = new BufferManagerImpl(poolSize, new SlowDiskManager(-1),
+                    type.newPolicy(poolSize));
+            bm.setReadahead(0, 0);
+            bm.evictDirty(true);
+            final List<Throwable> errors = new ArrayList<Throwable>();
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < 5000; i++) {
+                                // half the pins go to a few hot pages
+                                PageId pid = pid(random.nextBoolean() ? random.nextInt(4) : random.nextInt(numPages));
+                                Page page = bm.pinPage(pid, pm);
+                                assertEquals(pid, page.getId());
+                                bm.unpinPage(pid, random.nextInt(10) == 0);
+                            }
+                        } catch (Throwable e) {
+                            synchronized (errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(type + ": " + errors, errors.isEmpty());
+            int resident = 0;
+            for (int i = 0; i < numPages; i++) {
+                if (bm.inBufferPool(pid(i))) {
+                    resident++;
+                    assertEquals(0, bm.getFrame(pid(i)).getPinCount());
+                }
+            }
+            assertTrue(resident <= poolSize);
+            bm.flushAllPages();
+            // every page can still be evicted and pinned
+            for (int i = 0; i < numPages; i++) {
+                bm.pinPage(pid(i), pm);
+                bm.unpinPage(pid(i), false);
+            }
+        }
+    }
+
+    /**
+     * A disk manager with empty pages.  Reading the given page blocks until released, and
+     * then fails if failSlowPage is set.
+     */
+    private static class SlowDiskManager implements DiskManager {
+        private final int slowPage;
+        private volatile boolean failSlowPage = false;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ConcurrentHashMap<PageId, AtomicInteger> reads = new ConcurrentHashMap<PageId, AtomicInteger>();
+
+        SlowDiskManager(int slowPage) {
+            this.slowPage = slowPage;
+        }
+
+        int reads(PageId pid) {
+            AtomicInteger count = reads.get(pid);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public void allocatePage(PageId pid) {
+        }
+
+        @Override
+        public int getNumPages(int tableid) {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public Page readPage(PageId pid, PageMaker pageMaker) {
+            reads.putIfAbsent(pid, new AtomicInteger());
+            reads.get(pid).incrementAndGet();
+            if (pid.pageNumber() == slowPage) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new DiskManagerException(e);
+                }
+                if (failSlowPage) {
+                    throw new DiskManagerException("read of page " + pid.pageNumber() + " failed");
+                }
+            }
+            return pageMaker.makePage(pid);
+        }
+
+        @Override
+        public void readPageInto(PageId pid, ByteBuffer dst) {
+            throw new UnsupportedOperationException("these tests use no arena");
+        }
+
+        @Override
+        public void writePage(Page page) {
+        }
+    }
+}
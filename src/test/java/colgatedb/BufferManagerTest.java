@@ -1,14 +1,25 @@
 package colgatedb;
 
 
+import colgatedb.logging.LogFile;
 import colgatedb.page.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -154,6 +165,46 @@ public class BufferManagerTest {
         assertEquals(2, dm.getDatum(pid2));   // page was not marked as dirty
     }
 
+    /**
+     * Tests that flushAllPages writes consecutive dirty pages as one run, in page order.
+     */
+    @Test
+    public void flushAllPagesInRuns() {
+        for (int i = 3; i < 6; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        initializeBufferManager(6);
+        for (int i : new int[]{5, 1, 3, 0, 4}) {
+            PageId pid = new SimplePageId(tableid, i);
+            buffMgr.pinPage(pid, pm);
+            buffMgr.unpinPage(pid, true);
+        }
+        buffMgr.pinPage(pid2, pm);
+        buffMgr.unpinPage(pid2, false);
+        buffMgr.flushAllPages();
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(3, 4, 5)), dm.runs);
+        assertFalse(buffMgr.isDirty(pid0));
+        assertEquals(0, dm.getWriteCount(pid2));
+    }
+
+    /**
+     * Tests that flushAllPages forces the disk manager only when its durability setting asks for it.
+     */
+    @Test
+    public void flushAllPagesForces() {
+        initializeBufferManager(3);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, true);
+        buffMgr.flushAllPages();
+        assertEquals(0, dm.forceCount);
+
+        for (Durability durability : new Durability[]{Durability.FORCE_ON_CHECKPOINT, Durability.FORCE_ON_FLUSH_ALL}) {
+            dm.durability = durability;
+            buffMgr.flushAllPages();
+        }
+        assertEquals(1, dm.forceCount);
+    }
+
     /**
      * Tests that dirty bit stays dirty
      */
@@ -209,6 +260,125 @@ public class BufferManagerTest {
         assertEquals(10, dm.getDatum(pid0));
     }
 
+    /**
+     * Tests that evicting a clean page does not write it, and that evictions are counted.
+     */
+    @Test
+    public void evictCleanWithoutWriting() {
+        initializeBufferManager(1);
+        BufferManagerStats stats = ((BufferManagerImpl) buffMgr).getStats();
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.pinPage(pid1, pm);
+        assertFalse(buffMgr.inBufferPool(pid0));
+        assertEquals(0, dm.getWriteCount(pid0));
+        assertEquals(1, stats.getCleanEvictions());
+
+        buffMgr.unpinPage(pid1, true);
+        buffMgr.pinPage(pid2, pm);
+        assertEquals(1, dm.getWriteCount(pid1));
+        assertEquals(1, stats.getDirtyEvictions());
+        assertEquals(1, stats.getCleanEvictions());
+    }
+
+    /**
+     * Tests the per-table counters, the pinned-frame gauge, and that the counters can be
+     * read over JMX.
+     */
+    @Test
+    public void tableMetrics() throws Exception {
+        initializeBufferManager(2);
+        BufferManagerStats stats = ((BufferManagerImpl) buffMgr).getStats();
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.pinPage(pid1, pm);
+        assertEquals(2, stats.getPinnedFrames());
+        try {
+            buffMgr.pinPage(pid2, pm);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected: both frames are pinned
+        }
+        buffMgr.unpinPage(pid0, false);
+        assertEquals(2, stats.getPinnedFrames());
+        buffMgr.unpinPage(pid0, true);
+        buffMgr.unpinPage(pid1, false);
+        assertEquals(0, stats.getPinnedFrames());
+        assertEquals(2, stats.getPinnedFramesHighWater());
+        buffMgr.pinPage(pid2, pm);   // evicts pid0, which is dirty
+        buffMgr.unpinPage(pid2, false);
+
+        BufferTableStats table = stats.getTableStats(tableid);
+        assertEquals(1, table.getHits());
+        assertEquals(4, table.getMisses());
+        assertEquals(3, table.getPagesRead());
+        assertEquals(1, table.getPagesWritten());
+        assertEquals(1, table.getDirtyEvictions());
+        assertEquals(1, table.getNoVictimFailures());
+        assertEquals(1, stats.getNoVictimFailures());
+        assertNull(stats.getTableStats(tableid + 1));
+
+        BufferManagerMetrics.register((BufferManagerImpl) buffMgr, 128);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(BufferManagerMetrics.OBJECT_NAME);
+        assertEquals(3L * 128, server.getAttribute(name, "BytesRead"));
+        assertEquals(2, server.getAttribute(name, "ResidentPages"));
+        assertNotNull(server.getAttribute(name, "TableStats"));
+        server.invoke(name, "resetStats", null, null);
+        assertEquals(0, table.getMisses());
+    }
+
+    /**
+     * Tests that growing the pool keeps its pages, and that shrinking evicts unpinned pages
+     * at once and pinned ones only after they are unpinned.
+     */
+    @Test
+    public void resize() {
+        initializeBufferManager(1);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.resize(3);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.pinPage(pid2, pm);
+        assertTrue(buffMgr.inBufferPool(pid0));
+        buffMgr.unpinPage(pid2, false);
+
+        buffMgr.resize(1);
+        assertFalse(buffMgr.inBufferPool(pid2));
+        assertTrue(buffMgr.inBufferPool(pid0));   // pinned, so the pool is over its size for now
+        assertTrue(buffMgr.inBufferPool(pid1));
+
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.unpinPage(pid1, false);
+        buffMgr.pinPage(pid2, pm);   // the miss evicts both to get down to size
+        assertFalse(buffMgr.inBufferPool(pid0));
+        assertFalse(buffMgr.inBufferPool(pid1));
+        assertEquals(2, dm.getReadCount(pid2));
+        try {
+            buffMgr.resize(0);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that the least recently used page is the one evicted.
+     */
+    @Test
+    public void evictLeastRecentlyUsed() {
+        initializeBufferManager(2);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.unpinPage(pid1, false);
+        buffMgr.pinPage(pid0, pm);     // pid0 is now more recent than pid1
+        buffMgr.unpinPage(pid0, false);
+
+        buffMgr.pinPage(pid2, pm);
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertFalse(buffMgr.inBufferPool(pid1));
+    }
+
     @Test
     public void doNotEvictPinned() {
         initializeBufferManager(1);
@@ -405,6 +575,238 @@ public class BufferManagerTest {
 
     }
 
+    /**
+     * Tests that a sequential run of pins reads the following pages ahead of time.
+     */
+    @Test
+    public void readahead() {
+        for (int i = 3; i < 8; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        initializeBufferManager(5);
+        BufferManagerImpl impl = (BufferManagerImpl) buffMgr;
+        impl.setReadahead(2, 2);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        impl.waitForPrefetches();
+        assertFalse(buffMgr.inBufferPool(pid1));
+
+        // second sequential pin: the two pages after pid1 are read in the background
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.unpinPage(pid1, false);
+        impl.waitForPrefetches();
+        assertTrue(buffMgr.inBufferPool(pid2));
+        assertTrue(buffMgr.inBufferPool(pid3));
+        assertFalse(buffMgr.isDirty(pid2));
+
+        // pinning a page read ahead does not read it again
+        buffMgr.pinPage(pid2, pm);
+        buffMgr.unpinPage(pid2, false);
+        assertEquals(1, dm.getReadCount(pid2));
+        assertEquals(1, impl.getStats().getPrefetchUsed());
+
+        // readahead stops at the end of the file
+        for (int i = 3; i < 8; i++) {
+            impl.waitForPrefetches();
+            PageId pid = new SimplePageId(tableid, i);
+            buffMgr.pinPage(pid, pm);
+            buffMgr.unpinPage(pid, false);
+            assertEquals(1, dm.getReadCount(pid));
+        }
+        impl.waitForPrefetches();
+        assertEquals(6, impl.getStats().getPrefetchIssued());
+    }
+
+    /**
+     * Tests that a prefetched page is loaded unpinned and is evicted before pages that were used.
+     */
+    @Test
+    public void prefetch() {
+        initializeBufferManager(3);
+        BufferManagerImpl impl = (BufferManagerImpl) buffMgr;
+        impl.setReadahead(2, 0);
+        buffMgr.prefetch(pid1, pm);
+        impl.waitForPrefetches();
+        assertTrue(buffMgr.inBufferPool(pid1));
+        assertEquals(1, dm.getReadCount(pid1));
+
+        buffMgr.prefetch(pid1, pm);   // already there: nothing to do
+        impl.waitForPrefetches();
+        assertEquals(1, impl.getStats().getPrefetchIssued());
+
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.unpinPage(pid1, false);
+        assertEquals(1, dm.getReadCount(pid1));
+        assertEquals(1, impl.getStats().getHits());
+        assertEquals(1, impl.getStats().getPrefetchUsed());
+
+        // pool holds pid0, pid1 (used), pid2 (prefetched, unused)
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.prefetch(pid2, pm);
+        impl.waitForPrefetches();
+        assertTrue(buffMgr.inBufferPool(pid2));
+
+        // a miss evicts the unused prefetched page even though it is not the usual victim
+        dm.allocatePage(new SimplePageId(tableid, 3));
+        PageId pid3 = new SimplePageId(tableid, 3);
+        buffMgr.pinPage(pid3, pm);
+        assertFalse(buffMgr.inBufferPool(pid2));
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertTrue(buffMgr.inBufferPool(pid1));
+        assertEquals(1, impl.getStats().getPrefetchWasted());
+
+        // a prefetch cannot push out a pinned or dirty page
+        buffMgr.unpinPage(pid3, true);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.prefetch(pid2, pm);
+        impl.waitForPrefetches();
+        assertFalse(buffMgr.inBufferPool(pid2));
+        assertEquals(1, impl.getStats().getPrefetchDropped());
+    }
+
+    /**
+     * Tests that pages pinned through a bulk-read ring recycle the ring's frames instead of
+     * evicting other pages.
+     */
+    @Test
+    public void bulkReadRing() {
+        for (int i = 3; i < 13; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        initializeBufferManager(4);
+        BufferManagerImpl impl = (BufferManagerImpl) buffMgr;
+        impl.setReadahead(0, 0);
+        assertFalse(impl.scanStrategy(1).isRing());
+        assertTrue(impl.scanStrategy(2).isRing());
+
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.unpinPage(pid1, false);
+
+        AccessStrategy ring = AccessStrategy.bulkRead(2);
+        for (int i = 2; i < 12; i++) {
+            PageId pid = new SimplePageId(tableid, i);
+            buffMgr.pinPage(pid, pm, ring);
+            buffMgr.unpinPage(pid, false);
+        }
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertTrue(buffMgr.inBufferPool(pid1));
+        assertTrue(buffMgr.inBufferPool(new SimplePageId(tableid, 10)));
+        assertTrue(buffMgr.inBufferPool(new SimplePageId(tableid, 11)));
+
+        // a normal pin takes page 11 out of the ring, so the scan evicts page 10 instead
+        PageId pid11 = new SimplePageId(tableid, 11);
+        buffMgr.pinPage(pid11, pm);
+        buffMgr.unpinPage(pid11, false);
+        PageId pid12 = new SimplePageId(tableid, 12);
+        buffMgr.pinPage(pid12, pm, ring);
+        buffMgr.unpinPage(pid12, false);
+        assertTrue(buffMgr.inBufferPool(pid11));
+        assertFalse(buffMgr.inBufferPool(new SimplePageId(tableid, 10)));
+        assertTrue(buffMgr.inBufferPool(pid0));
+    }
+
+    /**
+     * Tests a pool whose frames live in an off-heap arena, over a real file since the pages
+     * must be built from bytes.
+     */
+    @Test
+    public void offHeapArena() throws IOException {
+        int pageSize = 256;
+        File file = File.createTempFile("arena", ".dat");
+        file.deleteOnExit();
+        DiskManagerImpl disk = new DiskManagerImpl(pageSize);
+        disk.addFileEntry(tableid, file.getAbsolutePath());
+        SlottedPageMaker maker = new SlottedPageMaker(TestUtility.getTupleDesc(1), pageSize);
+        for (int i = 0; i < 6; i++) {
+            SlottedPage page = (SlottedPage) maker.makePage(new SimplePageId(tableid, i));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i}));
+            disk.allocatePage(page.getId());
+            disk.writePage(page);
+        }
+        PageArena arena = new PageArena(3, pageSize);
+        BufferManagerImpl impl = new BufferManagerImpl(3, disk, new LRUPolicy(), arena);
+        impl.evictDirty(true);
+        SlottedPage first = null;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 6; i++) {
+                PageId pid = new SimplePageId(tableid, i);
+                SlottedPage page = (SlottedPage) impl.pinPage(pid, maker);
+                assertTrue(page.getPageBuffer().isDirect());   // the page lives in its slot
+                PageTestUtility.assertEqualTuples(TestUtility.getIntTuple(new int[]{i + round * 10}), page.getTuple(0));
+                if (round == 1 && i == 0) {
+                    first = page;
+                }
+                if (round == 0) {
+                    page.deleteTuple(page.getTuple(0));
+                    page.insertTuple(TestUtility.getIntTuple(new int[]{i + 10}));
+                }
+                impl.unpinPage(pid, round == 0);
+            }
+        }
+        impl.waitForPrefetches();
+        // evicted, its slot reused by another page, yet the old reference still reads its own bytes
+        assertFalse(impl.inBufferPool(first.getId()));
+        PageTestUtility.assertEqualTuples(TestUtility.getIntTuple(new int[]{10}), first.getTuple(0));
+        int resident = 0;
+        for (int i = 0; i < 6; i++) {
+            resident += impl.inBufferPool(new SimplePageId(tableid, i)) ? 1 : 0;
+        }
+        assertEquals(3 - resident, arena.getNumFree());
+        impl.discardPage(new SimplePageId(tableid, 5));
+        assertEquals(4 - resident, arena.getNumFree());
+        impl.shutdown();
+        disk.close();
+    }
+
+    /**
+     * Tests that the background writer cleans dirty, unpinned pages, forcing the log first,
+     * and leaves pinned pages alone.
+     */
+    @Test
+    public void backgroundWriter() throws InterruptedException {
+        initializeBufferManager(3);
+        BufferManagerImpl impl = (BufferManagerImpl) buffMgr;
+        final AtomicInteger logForces = new AtomicInteger();
+        impl.setLogFile((LogFile) Proxy.newProxyInstance(LogFile.class.getClassLoader(),
+                new Class<?>[]{LogFile.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("force")) {
+                            logForces.incrementAndGet();
+                        }
+                        return null;
+                    }
+                }));
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.pinPage(pid2, pm);
+        buffMgr.unpinPage(pid0, true);
+        buffMgr.unpinPage(pid1, true);
+        // pid2 stays pinned and dirty
+        buffMgr.unpinPage(pid2, true);
+        buffMgr.pinPage(pid2, pm);
+
+        impl.startBackgroundWriter(3, 1000);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (impl.getStats().getWriterWrites() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        impl.stopBackgroundWriter();
+        assertEquals(2, impl.getStats().getWriterWrites());
+        assertFalse(buffMgr.isDirty(pid0));
+        assertFalse(buffMgr.isDirty(pid1));
+        assertTrue(buffMgr.isDirty(pid2));
+        assertEquals(1, dm.getWriteCount(pid0));
+        assertEquals(1, dm.getWriteCount(pid1));
+        assertEquals(0, dm.getWriteCount(pid2));
+        assertTrue(logForces.get() > 0);
+        assertEquals(0, impl.getStats().getDirtyEvictions());
+    }
+
     /**
      * MockDiskManager is a fake disk manager used for testing purposes.
      *
@@ -416,6 +818,9 @@ public class BufferManagerTest {
 
         // keep track of reads and writes (and allocations?)
         List<PageContainer> pages = new ArrayList<>();
+        Durability durability = Durability.SYNC_EVERY_WRITE;
+        int forceCount = 0;
+        List<List<Integer>> runs = new ArrayList<>();   // page numbers passed to each writePages call
 
         @Override
         public void allocatePage(PageId pid) {
@@ -424,6 +829,12 @@ public class BufferManagerTest {
             pages.add(new PageContainer());
         }
 
+        @Override
+        public int getNumPages(int tableid) {
+            assertEquals(BufferManagerTest.this.tableid, tableid);
+            return pages.size();
+        }
+
         @Override
         public Page readPage(PageId pid, PageMaker pageMaker) {
             assertEquals(this, pageMaker);
@@ -432,6 +843,11 @@ public class BufferManagerTest {
             return new MockPage(pid, container.pageDatum);
         }
 
+        @Override
+        public void readPageInto(PageId pid, ByteBuffer dst) {
+            throw new UnsupportedOperationException("these tests use no arena");
+        }
+
         @Override
         public void writePage(Page page) {
             PageId pid = page.getId();
@@ -440,6 +856,26 @@ public class BufferManagerTest {
             container.pageDatum = ((MockPage)page).datum;
         }
 
+        @Override
+        public void writePages(List<Page> pages) {
+            List<Integer> run = new ArrayList<>();
+            for (Page page : pages) {
+                writePage(page);
+                run.add(page.getId().pageNumber());
+            }
+            runs.add(run);
+        }
+
+        @Override
+        public Durability getDurability() {
+            return durability;
+        }
+
+        @Override
+        public void force() {
+            forceCount++;
+        }
+
         public PageContainer getPageContainer(PageId pid) {
             assertTrue(0 <= pid.pageNumber() && pid.pageNumber() < pages.size());
             return pages.get(pid.pageNumber());
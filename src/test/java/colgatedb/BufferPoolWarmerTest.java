@@ -0,0 +1,128 @@
+package colgatedb;
+
+import colgatedb.dbfile.HeapFile;
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class BufferPoolWarmerTest {
+
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private HeapFile hf;
+
+    @Before
+    public void setUp() throws IOException, TransactionAbortedException {
+        Database.reset();
+        Database.setBufferPoolSize(20);
+        File file = File.createTempFile("warmup", ".dat");
+        file.deleteOnExit();
+        hf = Catalog.addHeapFile("warmup", td, file);
+        TransactionId tid = new TransactionId();
+        int numTuples = 0;
+        while (hf.numPages() < 8) {
+            hf.insertTuple(tid, TestUtility.getIntTuple(new int[]{numTuples, numTuples}));
+            numTuples++;
+        }
+        Database.getBufferManager().flushAllPages();
+    }
+
+    @After
+    public void tearDown() {
+        Database.reset();
+    }
+
+    private PageId pid(int pageno) {
+        return new SimplePageId(hf.getId(), pageno);
+    }
+
+    private void access(BufferManager bm, int pageno) {
+        bm.pinPage(pid(pageno), hf.getPageMaker());
+        bm.unpinPage(pid(pageno), false);
+    }
+
+    /**
+     * Resident pages are listed most recently used first, and survive a save and load.
+     */
+    @Test
+    public void saveAndLoad() throws IOException {
+        BufferManagerImpl bm = new BufferManagerImpl(4, Database.getDiskManager());
+        bm.setReadahead(0, 0);
+        access(bm, 5);
+        access(bm, 1);
+        access(bm, 3);
+        access(bm, 5);
+        List<PageId> pids = bm.residentPages();
+        assertEquals(Arrays.asList(pid(5), pid(3), pid(1)), pids);
+
+        File file = File.createTempFile("bufferpool", ".warmup");
+        file.deleteOnExit();
+        BufferPoolWarmer.save(pids, file);
+        assertEquals(8 + 3 * 8, file.length());
+        assertEquals(pids, BufferPoolWarmer.load(file));
+    }
+
+    /**
+     * The warm-up reads the most recent pages that fit, skipping pages that no longer exist.
+     */
+    @Test
+    public void warmUp() throws InterruptedException {
+        BufferManagerImpl bm = new BufferManagerImpl(3, Database.getDiskManager());
+        bm.setReadahead(0, 0);
+        List<PageId> snapshot = Arrays.asList(pid(6), pid(100), pid(2), pid(4), pid(0));
+        Thread thread = BufferPoolWarmer.warmUp(bm, Database.getCatalog(), snapshot, 3, 1000);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(bm.inBufferPool(pid(6)));
+        assertTrue(bm.inBufferPool(pid(2)));
+        assertFalse(bm.inBufferPool(pid(4)));
+        assertFalse(bm.inBufferPool(pid(0)));
+        assertEquals(2, bm.getStats().getMisses());
+        bm.shutdown();
+    }
+
+    /**
+     * Closing the database records the pages in the buffer pool.
+     */
+    @Test
+    public void closeSavesSnapshot() throws IOException {
+        BufferManager bm = Database.getBufferManager();
+        access(bm, 2);
+        access(bm, 7);
+        List<PageId> resident = ((BufferManagerImpl) bm).residentPages();
+        File snapshot = new File("bufferpool.warmup");
+        Database.setLogFile(null);   // its checkpoint needs an access manager
+        try {
+            Database.close();
+            assertEquals(resident, BufferPoolWarmer.load(snapshot));
+        } finally {
+            snapshot.delete();
+        }
+    }
+}
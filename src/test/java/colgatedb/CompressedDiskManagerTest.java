@@ -0,0 +1,290 @@
+package colgatedb;
+
+import colgatedb.dbfile.DbFileIterator;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPage;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class CompressedDiskManagerTest {
+
+    private final int pageSize = 1024;
+    private final int tableid = 5;
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+    private final SlottedPageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File dataFile;
+    private CompressedDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = File.createTempFile("compressed", ".dat");
+        dataFile.deleteOnExit();
+        new File(dataFile.getAbsolutePath() + CompressedDiskManager.MAP_SUFFIX).deleteOnExit();
+        dm = new CompressedDiskManager(pageSize, Durability.FORCE_ON_FLUSH_ALL);
+        dm.addFileEntry(tableid, dataFile.getAbsolutePath());
+    }
+
+    private Tuple makeTuple(int i, String s) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s));
+        return t;
+    }
+
+    private SlottedPage makePage(int pageno, int numTuples) {
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, pageno));
+        for (int i = 0; i < numTuples; i++) {
+            page.insertTuple(makeTuple(i, "page " + pageno));
+        }
+        return page;
+    }
+
+    /**
+     * @return a full page of random strings, which barely compress
+     */
+    private SlottedPage makeNoisyPage(int pageno) {
+        Random random = new Random(pageno);
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, pageno));
+        while (page.getNumEmptySlots() > 0) {
+            char[] chars = new char[Type.STRING_LEN];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) random.nextInt(256);
+            }
+            page.insertTuple(makeTuple(random.nextInt(), new String(chars)));
+        }
+        return page;
+    }
+
+    /**
+     * Pages of padded strings shrink to a small fraction of their size, and read back intact.
+     */
+    @Test
+    public void writeThenRead() {
+        int numPages = 20;
+        for (int i = 0; i < numPages; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            dm.writePage(makePage(i, 7));
+        }
+        assertEquals(numPages, dm.getNumPages(tableid));
+        assertTrue(dm.getStoredBytes(tableid) <= numPages * pageSize / 8);
+        for (int i = numPages - 1; i >= 0; i--) {
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm);
+            assertEquals(7, page.getNumSlots() - page.getNumEmptySlots());
+            assertArrayEquals(makePage(i, 7).getPageData(), page.getPageData());
+        }
+    }
+
+    /**
+     * An allocated page takes no space and reads as zeros, into a page or a caller's buffer.
+     */
+    @Test
+    public void allocatedPageIsEmpty() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        assertEquals(0, dm.getStoredBytes(tableid));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pageSize);
+        dm.readPageInto(new SimplePageId(tableid, 0), buffer);
+        assertEquals(pageSize, buffer.position());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            assertEquals(0, buffer.get());
+        }
+        try {
+            dm.allocatePage(new SimplePageId(tableid, 2));
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A page that compresses worse than before moves to the end of the file; one that still
+     * fits stays put.
+     */
+    @Test
+    public void pagesGrowAndShrink() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.allocatePage(new SimplePageId(tableid, 1));
+        dm.writePage(makePage(0, 1));
+        dm.writePage(makePage(1, 1));
+        long stored = dm.getStoredBytes(tableid);
+
+        SlottedPage noisy = makeNoisyPage(0);
+        dm.writePage(noisy);
+        assertTrue(dm.getStoredBytes(tableid) >= stored + pageSize * 3 / 4);
+        assertArrayEquals(noisy.getPageData(),
+                dm.readPage(new SimplePageId(tableid, 0), pm).getPageData());
+
+        stored = dm.getStoredBytes(tableid);
+        dm.writePage(makePage(0, 2));
+        dm.writePage(makePage(1, 1));
+        assertEquals(stored, dm.getStoredBytes(tableid));
+        assertArrayEquals(makePage(0, 2).getPageData(),
+                dm.readPage(new SimplePageId(tableid, 0), pm).getPageData());
+        assertArrayEquals(makePage(1, 1).getPageData(),
+                dm.readPage(new SimplePageId(tableid, 1), pm).getPageData());
+    }
+
+    /**
+     * The room a page moved out of is reused once the file has been forced, and is found
+     * again when the file is reopened.
+     */
+    @Test
+    public void freedRoomIsReused() {
+        for (int i = 0; i < 4; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        dm.writePage(makePage(0, 1));
+        dm.writePage(makePage(1, 1));
+        long stored = dm.getStoredBytes(tableid);
+        dm.writePage(makeNoisyPage(0));   // moves, leaving page 0's old room behind
+        assertTrue(dm.getStoredBytes(tableid) > stored);
+
+        stored = dm.getStoredBytes(tableid);
+        dm.writePage(makePage(2, 1));   // not yet: the page map on disk may still point there
+        assertTrue(dm.getStoredBytes(tableid) > stored);
+        dm.force();
+        stored = dm.getStoredBytes(tableid);
+        dm.writePage(makePage(3, 1));
+        assertEquals(stored, dm.getStoredBytes(tableid));
+        assertArrayEquals(makeNoisyPage(0).getPageData(),
+                dm.readPage(new SimplePageId(tableid, 0), pm).getPageData());
+        for (int i = 1; i < 4; i++) {
+            assertArrayEquals(makePage(i, 1).getPageData(),
+                    dm.readPage(new SimplePageId(tableid, i), pm).getPageData());
+        }
+
+        dm.writePage(makeNoisyPage(1));   // frees page 1's room, then reopen before reusing it
+        dm.close();
+        CompressedDiskManager other = new CompressedDiskManager(pageSize, Durability.FORCE_ON_FLUSH_ALL);
+        other.addFileEntry(tableid, dataFile.getAbsolutePath());
+        stored = other.getStoredBytes(tableid);
+        other.allocatePage(new SimplePageId(tableid, 4));
+        other.writePage(makePage(4, 1));
+        assertEquals(stored, other.getStoredBytes(tableid));
+        assertArrayEquals(makeNoisyPage(1).getPageData(),
+                other.readPage(new SimplePageId(tableid, 1), pm).getPageData());
+        assertArrayEquals(makePage(4, 1).getPageData(),
+                other.readPage(new SimplePageId(tableid, 4), pm).getPageData());
+        other.close();
+    }
+
+    /**
+     * A moved page's entry in the page map file keeps pointing at its old room until the data
+     * file has been forced, which happens at once when every write is synchronous.
+     */
+    @Test
+    public void movedPageMapWaitsForData() throws IOException {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.allocatePage(new SimplePageId(tableid, 1));
+        dm.writePage(makePage(0, 1));
+        dm.force();
+        long[] small = readMapEntry(0);
+
+        dm.writePage(makeNoisyPage(0));
+        assertArrayEquals(small, readMapEntry(0));
+        dm.force();
+        long[] moved = readMapEntry(0);
+        assertTrue(moved[1] > small[1]);
+
+        dm.setDurability(Durability.SYNC_EVERY_WRITE);
+        dm.writePage(makeNoisyPage(1));
+        assertTrue(readMapEntry(1)[1] > small[1]);
+        assertArrayEquals(moved, readMapEntry(0));
+    }
+
+    /**
+     * @return the page's entry as the page map file holds it: offset, length and room
+     */
+    private long[] readMapEntry(int pageno) throws IOException {
+        RandomAccessFile map = new RandomAccessFile(dataFile.getAbsolutePath() + CompressedDiskManager.MAP_SUFFIX, "r");
+        try {
+            map.seek((long) pageno * CompressedDiskManager.MAP_ENTRY_SIZE);
+            return new long[]{map.readLong(), map.readInt(), map.readInt()};
+        } finally {
+            map.close();
+        }
+    }
+
+    /**
+     * The page map is kept on disk, so a disk manager opened later finds every page.
+     */
+    @Test
+    public void reopen() {
+        for (int i = 0; i < 5; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            dm.writePage(makePage(i, i + 1));
+        }
+        dm.close();
+        CompressedDiskManager other = new CompressedDiskManager(pageSize);
+        other.addFileEntry(tableid, dataFile.getAbsolutePath());
+        assertEquals(5, other.getNumPages(tableid));
+        for (int i = 0; i < 5; i++) {
+            SlottedPage page = (SlottedPage) other.readPage(new SimplePageId(tableid, i), pm);
+            assertEqualTuples(makeTuple(i, "page " + i), page.getTuple(i));
+        }
+        other.close();
+    }
+
+    /**
+     * A heap file added with the compressed option is stored by the compressed disk manager.
+     */
+    @Test
+    public void heapFileThroughCatalog() throws IOException, TransactionAbortedException {
+        Database.reset();
+        File file = File.createTempFile("compressedtable", ".dat");
+        file.deleteOnExit();
+        new File(file.getAbsolutePath() + CompressedDiskManager.MAP_SUFFIX).deleteOnExit();
+        HeapFile hf = Catalog.addHeapFile("compressed", td, "", file, new TableOptions().compressed(true));
+        TransactionId tid = new TransactionId();
+        int numTuples = 200;
+        for (int i = 0; i < numTuples; i++) {
+            hf.insertTuple(tid, makeTuple(i, "name" + i));
+        }
+        Database.getBufferManager().flushAllPages();
+
+        DbFileIterator iterator = hf.iterator(tid);
+        iterator.open();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        iterator.close();
+        assertEquals(numTuples, count);
+        assertTrue(file.length() < (long) hf.numPages() * Database.getPageSize() / 4);
+        Database.reset();
+    }
+}
@@ -0,0 +1,281 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPage;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class DiskManagerImplTest {
+
+    private final int pageSize = 512;
+    private final int tableid = 7;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final SlottedPageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File dataFile;
+    private DiskManagerImpl dm;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = File.createTempFile("diskmanager", ".dat");
+        dataFile.deleteOnExit();
+        dm = new DiskManagerImpl(pageSize);
+        dm.addFileEntry(tableid, dataFile.getAbsolutePath());
+    }
+
+    private SlottedPage makePage(int pageno, int value) {
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, pageno));
+        page.insertTuple(TestUtility.getIntTuple(new int[]{pageno, value}));
+        return page;
+    }
+
+    @Test
+    public void allocateGrowsFile() {
+        assertEquals(0, dm.getNumPages(tableid));
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.allocatePage(new SimplePageId(tableid, 1));
+        assertEquals(2, dm.getNumPages(tableid));
+        assertEquals(2 * pageSize, dataFile.length());
+    }
+
+    @Test
+    public void writeThenRead() {
+        for (int i = 0; i < 3; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            dm.writePage(makePage(i, 10 * i));
+        }
+        for (int i = 2; i >= 0; i--) {
+            PageId pid = new SimplePageId(tableid, i);
+            SlottedPage page = (SlottedPage) dm.readPage(pid, pm);
+            assertEquals(pid, page.getId());
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{i, 10 * i}), page.getTuple(0));
+        }
+    }
+
+    @Test
+    public void readPagesInOneBatch() {
+        for (int i = 0; i < 5; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            dm.writePage(makePage(i, 100 + i));
+        }
+        List<Page> pages = dm.readPages(tableid, 1, 3, pm);
+        assertEquals(3, pages.size());
+        for (int i = 0; i < 3; i++) {
+            SlottedPage page = (SlottedPage) pages.get(i);
+            assertEquals(new SimplePageId(tableid, i + 1), page.getId());
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{i + 1, 101 + i}), page.getTuple(0));
+        }
+        // the run is cut short at the end of the file
+        assertEquals(2, dm.readPages(tableid, 3, 10, pm).size());
+        assertEquals(0, dm.readPages(tableid, 5, 10, pm).size());
+    }
+
+    /**
+     * Reading into a caller's buffer puts the page's bytes at the buffer's position.
+     */
+    @Test
+    public void readPageInto() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.writePage(makePage(0, 5));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pageSize + 8);
+        buffer.position(8);
+        dm.readPageInto(new SimplePageId(tableid, 0), buffer);
+        assertEquals(pageSize + 8, buffer.position());
+        buffer.position(8);
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, 0), buffer);
+        assertEqualTuples(TestUtility.getIntTuple(new int[]{0, 5}), page.getTuple(0));
+    }
+
+    /**
+     * A run written in one request reads back page by page, and runs must be consecutive.
+     */
+    @Test
+    public void writePagesAsOneRun() {
+        List<Page> run = new ArrayList<Page>();
+        for (int i = 0; i < 4; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            if (i > 0) {
+                run.add(makePage(i, 20 + i));
+            }
+        }
+        dm.writePages(run);
+        for (int i = 1; i < 4; i++) {
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm);
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{i, 20 + i}), page.getTuple(0));
+        }
+        assertEquals(4 * pageSize, dataFile.length());
+        try {
+            dm.writePages(Arrays.<Page>asList(makePage(0, 0), makePage(2, 0)));
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Interrupting a reader closes the shared channel under a writer; both calls still
+     * succeed, and the reader keeps its interrupt.
+     */
+    @Test(timeout = 30000)
+    public void interruptedReaderDuringWrites() throws InterruptedException {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.allocatePage(new SimplePageId(tableid, 1));
+        dm.writePage(makePage(1, 1));
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; !done.get(); i++) {
+                        dm.writePage(makePage(0, i));
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 200; i++) {
+            Thread.currentThread().interrupt();
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, 1), pm);
+            assertTrue(Thread.interrupted());
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{1, 1}), page.getTuple(0));
+        }
+        done.set(true);
+        writer.join();
+        assertNull(error.get());
+        assertEquals(2, dm.getNumPages(tableid));
+    }
+
+    @Test
+    public void readBeyondEndOfFile() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        try {
+            dm.readPage(new SimplePageId(tableid, 1), pm);
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void unknownTable() {
+        try {
+            dm.readPage(new SimplePageId(tableid + 1, 0), pm);
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * After close, the disk manager reopens files on demand and sees everything written before.
+     */
+    @Test
+    public void reopenAfterClose() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.writePage(makePage(0, 42));
+        dm.close();
+        SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, 0), pm);
+        assertEqualTuples(TestUtility.getIntTuple(new int[]{0, 42}), page.getTuple(0));
+
+        // and a separate disk manager over the same file sees the same bytes
+        DiskManagerImpl other = new DiskManagerImpl(pageSize);
+        other.addFileEntry(tableid, dataFile.getAbsolutePath());
+        page = (SlottedPage) other.readPage(new SimplePageId(tableid, 0), pm);
+        assertEqualTuples(TestUtility.getIntTuple(new int[]{0, 42}), page.getTuple(0));
+        other.close();
+    }
+
+    /**
+     * Switching durability settings forces buffered writes and keeps the file readable.
+     */
+    @Test
+    public void changeDurability() {
+        dm.setDurability(Durability.FORCE_ON_CHECKPOINT);
+        assertEquals(Durability.FORCE_ON_CHECKPOINT, dm.getDurability());
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.writePage(makePage(0, 7));
+        dm.force();
+
+        dm.setDurability(Durability.SYNC_EVERY_WRITE);
+        dm.writePage(makePage(0, 8));
+        dm.force();  // nothing buffered, nothing to do
+        SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, 0), pm);
+        assertEqualTuples(TestUtility.getIntTuple(new int[]{0, 8}), page.getTuple(0));
+        assertEquals(pageSize, dataFile.length());
+    }
+
+    /**
+     * Many threads reading and writing distinct pages through the shared channel.
+     */
+    @Test
+    public void concurrentReadsAndWrites() throws InterruptedException {
+        final int numPages = 16;
+        for (int i = 0; i < numPages; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int round = 0; round < 50; round++) {
+                            for (int i = thread; i < numPages; i += 4) {
+                                dm.writePage(makePage(i, round));
+                                SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm);
+                                Tuple t = page.getTuple(0);
+                                assertEqualTuples(TestUtility.getIntTuple(new int[]{i, round}), t);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
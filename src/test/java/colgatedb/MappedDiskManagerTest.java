@@ -0,0 +1,123 @@
+package colgatedb;
+
+import colgatedb.dbfile.DbFileIterator;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPage;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.TupleDesc;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class MappedDiskManagerTest {
+
+    private final int pageSize = 256;
+    private final int tableid = 3;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final SlottedPageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File dataFile;
+    private MappedDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = File.createTempFile("mapped", ".dat");
+        dataFile.deleteOnExit();
+        dm = new MappedDiskManager(pageSize, Durability.FORCE_ON_FLUSH_ALL);
+        dm.addFileEntry(tableid, dataFile.getAbsolutePath());
+    }
+
+    private SlottedPage makePage(int pageno, int value) {
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, pageno));
+        page.insertTuple(TestUtility.getIntTuple(new int[]{pageno, value}));
+        return page;
+    }
+
+    /**
+     * Pages are written and read back across several segments while the file grows.
+     */
+    @Test
+    public void growAcrossSegments() {
+        int numPages = MappedDiskManager.SEGMENT_PAGES * 2 + 3;
+        for (int i = 0; i < numPages; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            dm.writePage(makePage(i, -i));
+            // read back immediately: the segment holding page i was just remapped
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm);
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{i, -i}), page.getTuple(0));
+        }
+        assertEquals(numPages, dm.getNumPages(tableid));
+        dm.force();
+        assertEquals((long) numPages * pageSize, dataFile.length());
+
+        // a conventional disk manager sees the same file contents
+        DiskManagerImpl plain = new DiskManagerImpl(pageSize);
+        plain.addFileEntry(tableid, dataFile.getAbsolutePath());
+        for (int i = 0; i < numPages; i += 17) {
+            SlottedPage page = (SlottedPage) plain.readPage(new SimplePageId(tableid, i), pm);
+            assertEqualTuples(TestUtility.getIntTuple(new int[]{i, -i}), page.getTuple(0));
+        }
+        plain.close();
+    }
+
+    @Test
+    public void readBeyondEndOfFile() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        try {
+            dm.readPage(new SimplePageId(tableid, 1), pm);
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A heap file added with the memoryMapped option is stored by the mapped disk manager.
+     */
+    @Test
+    public void heapFileThroughCatalog() throws IOException, TransactionAbortedException {
+        Database.reset();
+        File file = File.createTempFile("mappedtable", ".dat");
+        file.deleteOnExit();
+        HeapFile hf = Catalog.addHeapFile("mapped", td, "", file, new TableOptions().memoryMapped(true));
+        TransactionId tid = new TransactionId();
+        int numTuples = 100;
+        for (int i = 0; i < numTuples; i++) {
+            hf.insertTuple(tid, TestUtility.getIntTuple(new int[]{i, i}));
+        }
+        Database.getBufferManager().flushAllPages();
+
+        DbFileIterator iterator = hf.iterator(tid);
+        iterator.open();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        iterator.close();
+        assertEquals(numTuples, count);
+        assertEquals(hf.numPages(), Database.getDiskManager().getNumPages(hf.getId()));
+        Database.reset();
+    }
+}
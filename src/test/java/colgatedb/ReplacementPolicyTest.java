@@ -0,0 +1,280 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class ReplacementPolicyTest {
+
+    private final int tableid = 1;
+    private final PageMaker pm = new SlottedPageMaker(TestUtility.getTupleDesc(1), 64);
+    private BufferManagerImpl buffMgr;
+
+    private void initializeBufferManager(int numPages, ReplacementPolicyType type) {
+        buffMgr = new BufferManagerImpl(numPages, new EmptyDiskManager(), type.newPolicy(numPages));
+        buffMgr.setReadahead(0, 0);
+        buffMgr.evictDirty(true);
+    }
+
+    private PageId pid(int pageno) {
+        return new SimplePageId(tableid, pageno);
+    }
+
+    private void access(int pageno) {
+        buffMgr.pinPage(pid(pageno), pm);
+        buffMgr.unpinPage(pid(pageno), false);
+    }
+
+    /**
+     * CLOCK gives a recently pinned page a second chance.
+     */
+    @Test
+    public void clockSecondChance() {
+        initializeBufferManager(3, ReplacementPolicyType.CLOCK);
+        access(0);
+        access(1);
+        access(2);
+        access(3);   // one sweep clears every bit, then evicts 0
+        assertFalse(buffMgr.inBufferPool(pid(0)));
+
+        access(1);   // sets 1's bit again
+        access(4);   // the hand passes over 1 and takes 2
+        assertTrue(buffMgr.inBufferPool(pid(1)));
+        assertFalse(buffMgr.inBufferPool(pid(2)));
+    }
+
+    /**
+     * Every policy skips pinned pages, and fails only when all pages are pinned.
+     */
+    @Test
+    public void pinnedPagesAreNotEvicted() {
+        for (ReplacementPolicyType type : ReplacementPolicyType.values()) {
+            initializeBufferManager(2, type);
+            buffMgr.pinPage(pid(0), pm);
+            access(1);
+            access(2);
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(0)));
+            assertFalse(type.toString(), buffMgr.inBufferPool(pid(1)));
+            buffMgr.pinPage(pid(2), pm);
+            try {
+                buffMgr.pinPage(pid(3), pm);
+                fail("Should have raised exception!");
+            } catch (BufferManagerException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * When dirty pages may not be evicted, LRU, 2Q and ARC take the least recently used
+     * clean page, and a dirty page becomes a candidate once it has been written.
+     */
+    @Test
+    public void passOverDirtyPages() {
+        for (ReplacementPolicyType type : new ReplacementPolicyType[]{ReplacementPolicyType.LRU,
+                ReplacementPolicyType.TWO_Q, ReplacementPolicyType.ARC}) {
+            initializeBufferManager(4, type);
+            buffMgr.evictDirty(false);
+            for (int pageno = 0; pageno < 4; pageno++) {
+                buffMgr.pinPage(pid(pageno), pm);
+                buffMgr.unpinPage(pid(pageno), pageno < 3);
+            }
+            access(4);   // 3 is the only clean page
+            assertFalse(type.toString(), buffMgr.inBufferPool(pid(3)));
+            buffMgr.flushPage(pid(1));
+            access(5);   // 1 is now clean, and used before 4
+            assertFalse(type.toString(), buffMgr.inBufferPool(pid(1)));
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(0)));
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(2)));
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(4)));
+        }
+    }
+
+    /**
+     * 2Q and ARC keep pages that were used more than once when a scan passes through the pool.
+     */
+    @Test
+    public void scanResistance() {
+        for (ReplacementPolicyType type : new ReplacementPolicyType[]{ReplacementPolicyType.TWO_Q,
+                ReplacementPolicyType.ARC}) {
+            initializeBufferManager(8, type);
+            // pages 0 and 1 are used repeatedly: twice while resident (which ARC counts), and
+            // again after other pages have pushed them out of 2Q's first-use queue
+            access(0);
+            access(1);
+            access(0);
+            access(1);
+            for (int pageno = 2; pageno < 10; pageno++) {
+                access(pageno);
+            }
+            access(0);
+            access(1);
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(0)));
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(1)));
+
+            // a scan of pages touched once
+            for (int pageno = 100; pageno < 150; pageno++) {
+                access(pageno);
+            }
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(0)));
+            assertTrue(type.toString(), buffMgr.inBufferPool(pid(1)));
+        }
+    }
+
+    /**
+     * ARC does not count a page pinned again before any other page was used as frequent,
+     * so a scan that pins each page twice in a row leaves T2 alone.
+     */
+    @Test
+    public void arcIgnoresCorrelatedPins() {
+        initializeBufferManager(8, ReplacementPolicyType.ARC);
+        access(0);
+        access(1);
+        access(0);   // a new reference: 0 becomes frequent
+        for (int pageno = 100; pageno < 150; pageno++) {
+            access(pageno);
+            access(pageno);
+        }
+        assertTrue(buffMgr.inBufferPool(pid(0)));
+        for (int pageno = 100; pageno < 142; pageno++) {
+            assertFalse(buffMgr.inBufferPool(pid(pageno)));
+        }
+    }
+
+    /**
+     * Every policy keeps working as the pool shrinks and grows.
+     */
+    @Test
+    public void resize() {
+        for (ReplacementPolicyType type : ReplacementPolicyType.values()) {
+            initializeBufferManager(8, type);
+            for (int pageno = 0; pageno < 8; pageno++) {
+                access(pageno);
+            }
+            buffMgr.resize(4);
+            assertEquals(type.toString(), 4, residentPages(0, 8));
+            for (int pageno = 8; pageno < 20; pageno++) {
+                access(pageno);
+            }
+            buffMgr.resize(16);
+            for (int pageno = 100; pageno < 116; pageno++) {
+                access(pageno);
+            }
+            assertEquals(type.toString(), 16, residentPages(100, 116));
+        }
+    }
+
+    private int residentPages(int from, int to) {
+        int count = 0;
+        for (int pageno = from; pageno < to; pageno++) {
+            count += buffMgr.inBufferPool(pid(pageno)) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * A partition at its minimum keeps its pages through a scan of another table, and a
+     * partition at its maximum evicts its own pages.
+     */
+    @Test
+    public void partitions() {
+        initializeBufferManager(8, ReplacementPolicyType.LRU);
+        BufferPartition hot = buffMgr.addPartition("hot", 3, 4, new LRUPolicy());
+        buffMgr.assignTable(1, "hot");
+        assertSame(hot, buffMgr.getPartition(1));
+        for (int pageno = 0; pageno < 3; pageno++) {
+            accessTable(1, pageno);
+        }
+        for (int pageno = 0; pageno < 100; pageno++) {
+            accessTable(2, pageno);
+        }
+        for (int pageno = 0; pageno < 3; pageno++) {
+            assertTrue(buffMgr.inBufferPool(new SimplePageId(1, pageno)));
+            accessTable(1, pageno);
+        }
+        assertEquals(3, hot.getHits());
+        assertEquals(3, hot.getMisses());
+        assertEquals(0.5, hot.getHitRatio(), 1e-9);
+
+        for (int pageno = 3; pageno < 10; pageno++) {
+            accessTable(1, pageno);
+            assertTrue(hot.getResidentPages() <= 4);
+        }
+        assertEquals(4, hot.getResidentPages());
+        assertEquals(8, hot.getResidentPages() + buffMgr.getPartition(2).getResidentPages());
+
+        try {
+            buffMgr.addPartition("big", 6, 8, new LRUPolicy());   // 3 + 6 minimum pages > 8
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected
+        }
+    }
+
+    private void accessTable(int tableid, int pageno) {
+        PageId pid = new SimplePageId(tableid, pageno);
+        buffMgr.pinPage(pid, pm);
+        buffMgr.unpinPage(pid, false);
+    }
+
+    /**
+     * Database builds its buffer pool with the configured policy.
+     */
+    @Test
+    public void selectThroughDatabase() {
+        Database.setReplacementPolicy(ReplacementPolicyType.ARC);
+        assertEquals(ReplacementPolicyType.ARC, Database.getReplacementPolicy());
+        Database.reset();
+        assertEquals(ReplacementPolicyType.LRU, Database.getReplacementPolicy());
+    }
+
+    /**
+     * A disk manager whose pages are always empty.
+     */
+    private static class EmptyDiskManager implements DiskManager {
+        @Override
+        public void allocatePage(PageId pid) {
+        }
+
+        @Override
+        public int getNumPages(int tableid) {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public Page readPage(PageId pid, PageMaker pageMaker) {
+            return pageMaker.makePage(pid);
+        }
+
+        @Override
+        public void readPageInto(PageId pid, ByteBuffer dst) {
+            throw new UnsupportedOperationException("these tests use no arena");
+        }
+
+        @Override
+        public void writePage(Page page) {
+        }
+    }
+}
@@ -4,9 +4,17 @@ import colgatedb.*;
 import colgatedb.page.*;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
+import colgatedb.operators.Predicate;
+import colgatedb.operators.SeqScan;
+import colgatedb.tuple.DictStringField;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
 import colgatedb.tuple.RecordId;
+import colgatedb.tuple.StringDictionary;
+import colgatedb.tuple.StringField;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
 import com.gradescope.jh61b.grader.GradedTest;
 import org.junit.Before;
 import org.junit.Test;
@@ -159,6 +167,125 @@ public class HeapFileMoreTest {
         assertIteratorsMatch(tups, iterator);
     }
 
+    /**
+     * A scan of a PAX table that reads one column returns tuples with only that column set,
+     * and a pushed-down filter on another column still applies.
+     */
+    @Test
+    public void paxColumnScan() throws IOException, TransactionAbortedException, DbException {
+        File file = File.createTempFile("paxtable", ".dat");
+        file.deleteOnExit();
+        TupleDesc wide = TestUtility.getTupleDesc(5);
+        HeapFile hf = Catalog.addHeapFile("pax", wide, "", file, new TableOptions().pageLayout(PageLayout.PAX));
+        int numTuples = 500;
+        for (int i = 0; i < numTuples; i++) {
+            hf.insertTuple(tid, TestUtility.getIntTuple(new int[]{i, 2 * i, 3 * i, 4 * i, 5 * i}));
+        }
+        assertTrue(hf.numPages() > 1);
+
+        SeqScan scan = new SeqScan(tid, hf.getId());
+        scan.pushDownColumns(3);
+        scan.pushDownPredicate(new Predicate(0, Op.GREATER_THAN_OR_EQ, new IntField(numTuples - 10)));
+        scan.open();
+        int count = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            int i = ((IntField) t.getField(0)).getValue();
+            assertTrue(i >= numTuples - 10);
+            assertEquals(new IntField(4 * i), t.getField(3));
+            assertNull(t.getField(1));
+            count++;
+        }
+        scan.close();
+        assertEquals(10, count);
+    }
+
+    /**
+     * A dictionary-encoded string column is stored as codes: pages hold many more tuples, the
+     * strings come back as DictStringFields, and a pushed-down equality filter is applied to
+     * the codes.  The dictionary outlives the catalog, and the catalog opens one dictionary
+     * per file.
+     */
+    @Test
+    public void dictionaryEncodedTable() throws IOException, TransactionAbortedException, DbException {
+        File file = File.createTempFile("dicttable", ".dat");
+        file.deleteOnExit();
+        new File(file.getAbsolutePath() + Catalog.DICTIONARY_SUFFIX).deleteOnExit();
+        TupleDesc genreTd = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE}, new String[]{"mid", "genre"});
+        TableOptions options = new TableOptions().dictionaryEncoded(1);
+        HeapFile hf = Catalog.addHeapFile("genre", genreTd, "", file, options);
+        String[] genres = {"Drama", "Comedy", "Horror"};
+        int numTuples = 300;
+        for (int i = 0; i < numTuples; i++) {
+            Tuple t = new Tuple(genreTd);
+            t.setField(0, new IntField(i));
+            t.setField(1, new StringField(genres[i % genres.length]));
+            hf.insertTuple(tid, t);
+            assertNotNull(t.getRecordId());
+        }
+        assertEquals(genres.length, hf.getDictionary().size());
+        int slotsPerPage = ((TuplePage) hf.getPageMaker().makePage(new SimplePageId(hf.getId(), 0))).getNumSlots();
+        assertEquals(SlottedPageFormatter.computePageCapacity(Database.getPageSize(), TestUtility.getTupleDesc(2)),
+                slotsPerPage);
+
+        SeqScan scan = new SeqScan(tid, hf.getId());
+        scan.pushDownPredicate(new Predicate(1, Op.EQUALS, new StringField("Horror")));
+        scan.open();
+        int count = 0;
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            assertTrue(t.getField(1) instanceof DictStringField);
+            assertEquals("Horror", t.getField(1).toString());
+            count++;
+        }
+        scan.close();
+        assertEquals(numTuples / genres.length, count);
+        Database.getBufferManager().flushAllPages();
+
+        StringDictionary dictionary = hf.getDictionary();
+        assertSame(dictionary, Catalog.addHeapFile("genre", genreTd, "", file, options).getDictionary());
+
+        // the table reopened from disk decodes the same strings
+        Database.getCatalog().clear();
+        hf = Catalog.addHeapFile("genre", genreTd, "", file, options);
+        assertNotSame(dictionary, hf.getDictionary());
+        DbFileIterator iterator = hf.iterator(tid);
+        iterator.open();
+        for (int i = 0; i < numTuples; i++) {
+            assertTrue(iterator.hasNext());
+            Tuple t = iterator.next();
+            assertEquals(genres[((IntField) t.getField(0)).getValue() % genres.length], t.getField(1).toString());
+        }
+        assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    /**
+     * Resetting the buffer pool throws away the old pool's dirty pages: they may belong to
+     * transactions that have not committed, so the new pool does not see the inserts.
+     */
+    @Test
+    public void resetBufferPoolDropsDirtyPages() throws IOException, TransactionAbortedException {
+        File file = File.createTempFile("resettable", ".dat");
+        file.deleteOnExit();
+        HeapFile hf = Catalog.addHeapFile(tableName, td, "", file, new TableOptions());
+        BufferManager old = Database.getBufferManager();
+        for (int i = 0; i < 10; i++) {
+            hf.insertTuple(tid, TestUtility.getIntTuple(new int[]{i, i}));
+        }
+        Database.resetBufferPool();
+        assertNotSame(old, Database.getBufferManager());
+        DbFileIterator iterator = hf.iterator(tid);
+        iterator.open();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        iterator.close();
+        assertEquals(0, count);
+    }
+
     /**
      * Given a list of expectedTuples and an *open* DBFileIterator, check that
      * the DBFileIterator's output matches the contents of expectedTuples.
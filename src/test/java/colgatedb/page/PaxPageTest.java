@@ -0,0 +1,120 @@
+package colgatedb.page;
+
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class PaxPageTest {
+    private final PageId pid = new SimplePageId(0, 0);
+    private final int pageSize = 1024;
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE});
+
+    private Tuple makeTuple(int i) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField("row " + i));
+        t.setField(2, new IntField(-i));
+        return t;
+    }
+
+    private PaxPage makeFullPage() {
+        PaxPage page = new PaxPage(pid, td, pageSize);
+        for (int i = 0; i < page.getNumSlots(); i++) {
+            page.insertTuple(makeTuple(i));
+        }
+        return page;
+    }
+
+    /**
+     * A PAX page holds as many tuples as a slotted page of the same size, and each field of a
+     * slot lies in that field's mini-page.
+     */
+    @Test
+    public void columnLayout() {
+        PaxPage page = makeFullPage();
+        int numSlots = page.getNumSlots();
+        assertEquals(new SlottedPage(pid, td, pageSize).getNumSlots(), numSlots);
+        assertEquals(0, page.getNumEmptySlots());
+
+        ByteBuffer bytes = page.getPageBuffer();
+        int headerSize = SlottedPageFormatter.getHeaderSize(numSlots);
+        int thirdColumn = headerSize + numSlots * (Type.INT_TYPE.getLen() + Type.STRING_TYPE.getLen());
+        for (int i = 0; i < numSlots; i++) {
+            assertEquals(i, bytes.getInt(headerSize + i * Type.INT_TYPE.getLen()));
+            assertEquals(-i, bytes.getInt(thirdColumn + i * Type.INT_TYPE.getLen()));
+            assertEquals(-i, page.getInt(i, 2));
+        }
+    }
+
+    @Test
+    public void roundTripThroughBytes() {
+        PaxPage page = makeFullPage();
+        page.deleteTuple(page.getTuple(1));
+        PaxPage copy = new PaxPage(pid, td, pageSize, page.getPageBuffer());
+        assertEquals(1, copy.getNumEmptySlots());
+        assertTrue(copy.isSlotEmpty(1));
+        assertArrayEquals(page.getPageData(), copy.getPageData());
+        for (int i = 0; i < copy.getNumSlots(); i++) {
+            if (i != 1) {
+                assertEqualTuples(makeTuple(i), copy.getTuple(i));
+            }
+        }
+        Tuple t = makeTuple(99);
+        copy.insertTuple(t);
+        assertEquals(1, t.getRecordId().tupleno());
+    }
+
+    /**
+     * Scanning some columns leaves the others unset, and a filter on another column still works.
+     */
+    @Test
+    public void columnScan() {
+        PaxPage page = makeFullPage();
+        BitSet columns = new BitSet();
+        columns.set(2);
+        Iterator<Tuple> it = page.iterator(columns, 0, Op.LESS_THAN, new IntField(3));
+        for (int i = 0; i < 3; i++) {
+            Tuple t = it.next();
+            assertNull(t.getField(0));
+            assertNull(t.getField(1));
+            assertEquals(new IntField(-i), t.getField(2));
+            assertEquals(i, t.getRecordId().tupleno());
+        }
+        assertFalse(it.hasNext());
+
+        it = page.iterator(1, Op.EQUALS, new StringField("row 5"));
+        assertEqualTuples(makeTuple(5), it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected = PageException.class)
+    public void insertIntoFullPage() {
+        makeFullPage().insertTuple(makeTuple(0));
+    }
+}
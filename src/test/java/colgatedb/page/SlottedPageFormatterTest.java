@@ -8,10 +8,14 @@ import org.junit.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 
 import static colgatedb.page.PageTestUtility.assertEqualPages;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * ColgateDB
@@ -288,6 +292,127 @@ public class SlottedPageFormatterTest {
         }
     }
 
+    /**
+     * A page read from bytes decodes tuples on demand, tests int fields in place, and writes
+     * its changes back out.
+     */
+    @Test
+    public void lazyPageFromBytes() {
+        TupleDesc td = TestUtility.getTupleDesc(2);
+        SlottedPage page = new SlottedPage(pid, td, 1024);
+        for (int i = 0; i < 20; i++) {
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+        }
+        byte[] data = page.getPageData();
+        SlottedPage pageFromBytes = new SlottedPage(pid, td, 1024, data);
+        assertArrayEquals(data, pageFromBytes.getPageData());
+        assertEquals(page.getNumEmptySlots(), pageFromBytes.getNumEmptySlots());
+
+        Iterator<Tuple> iterator = pageFromBytes.iterator(0, Op.GREATER_THAN_OR_EQ, new IntField(17));
+        for (int i = 17; i < 20; i++) {
+            Tuple t = iterator.next();
+            assertEquals(new IntField(-i), t.getField(1));
+            assertEquals(i, t.getRecordId().tupleno());
+        }
+        assertFalse(iterator.hasNext());
+        assertTrue(pageFromBytes.matches(3, 1, Op.EQUALS, new IntField(-3)));
+
+        pageFromBytes.deleteTuple(pageFromBytes.getTuple(5));
+        pageFromBytes.insertTuple(25, TestUtility.getIntTuple(new int[]{99, 99}));
+        page.deleteTuple(page.getTuple(5));
+        page.insertTuple(25, TestUtility.getIntTuple(new int[]{99, 99}));
+        assertArrayEquals(page.getPageData(), pageFromBytes.getPageData());
+    }
+
+    /**
+     * A page made from a buffer reads the buffer's bytes without copying them, but copies
+     * them before its first change, so a read-only view (as a mapped file gives) can be used
+     * and the buffer is left as it was.
+     */
+    @Test
+    public void pageFromBufferCopiesOnWrite() {
+        TupleDesc td = TestUtility.getTupleDesc(2);
+        SlottedPage page = new SlottedPage(pid, td, 1024);
+        for (int i = 0; i < 5; i++) {
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+        }
+        byte[] data = page.getPageData();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        SlottedPage pageFromBuffer = new SlottedPage(pid, td, 1024, buffer.asReadOnlyBuffer());
+        buffer.putInt(SlottedPageFormatter.getTupleOffset(page.getNumSlots(), 0, td), 42);
+        assertEquals(new IntField(42), pageFromBuffer.getTuple(0).getField(0));  // not copied yet
+
+        byte[] before = data.clone();
+        pageFromBuffer.deleteTuple(pageFromBuffer.getTuple(1));
+        pageFromBuffer.insertTuple(7, TestUtility.getIntTuple(new int[]{7, 7}));
+        assertArrayEquals(before, data);
+        assertEquals(new IntField(42), pageFromBuffer.getTuple(0).getField(0));
+        assertEquals(new IntField(7), pageFromBuffer.getTuple(7).getField(0));
+        assertFalse(pageFromBuffer.isSlotUsed(1));
+    }
+
+    /**
+     * The bytes a page keeps up to date as tuples come and go match a full serialization.
+     */
+    @Test
+    public void incrementalPageBytes() {
+        TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+        SlottedPage page = new SlottedPage(pid, td, 2048);
+        Tuple[] tuples = new Tuple[page.getNumSlots()];
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i] = new Tuple(td);
+            tuples[i].setField(0, new IntField(i));
+            tuples[i].setField(1, new StringField("row" + i));
+            page.insertTuple(tuples[i]);
+        }
+        for (int i = 0; i < tuples.length; i += 3) {
+            page.deleteTuple(tuples[i]);
+        }
+        byte[] expected = SlottedPageFormatter.pageToBytes(page, td, 2048);
+        assertArrayEquals(expected, page.getPageData());
+        ByteBuffer buffer = page.getPageBuffer();
+        assertEquals(2048, buffer.remaining());
+        byte[] viewed = new byte[2048];
+        buffer.get(viewed);
+        assertArrayEquals(expected, viewed);
+        assertEqualPages(page, new SlottedPage(pid, td, 2048, expected));
+    }
+
+    /**
+     * Slots are found through the header bitmap: the next used and empty slots, the count of
+     * empty slots, and stray bits in the padding of the last header byte are ignored.
+     */
+    @Test
+    public void headerBitmap() {
+        TupleDesc td = TestUtility.getTupleDesc(1);
+        int pageSize = 1000;   // 242 slots, so 31 header bytes with 2 padding bits
+        SlottedPage page = new SlottedPage(pid, td, pageSize);
+        int numSlots = page.getNumSlots();
+        assertEquals(242, numSlots);
+        int[] usedSlots = {0, 1, 63, 64, 65, 130, numSlots - 1};
+        for (int slot : usedSlots) {
+            page.insertTuple(slot, TestUtility.getIntTuple(slot, 1));
+        }
+        byte[] bytes = page.getPageData();
+        bytes[SlottedPageFormatter.getHeaderSize(numSlots) - 1] |= (byte) 0xC0;
+        SlottedPage copy = new SlottedPage(pid, td, pageSize, bytes);
+        assertEquals(numSlots - usedSlots.length, copy.getNumEmptySlots());
+        int i = 0;
+        for (int slot = copy.nextUsedSlot(0); slot >= 0; slot = copy.nextUsedSlot(slot + 1)) {
+            assertEquals(usedSlots[i++], slot);
+        }
+        assertEquals(usedSlots.length, i);
+        assertEquals(2, copy.nextEmptySlot(0));
+        assertEquals(66, copy.nextEmptySlot(63));
+        assertEquals(-1, copy.nextEmptySlot(numSlots - 1));
+
+        Iterator<Tuple> it = copy.iterator();
+        for (int slot : usedSlots) {
+            assertEquals(slot, it.next().getRecordId().tupleno());
+        }
+        assertFalse(it.hasNext());
+    }
+
     private static byte[] hexStringToByteArray(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
@@ -0,0 +1,149 @@
+package colgatedb.page;
+
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class VariableSlottedPageTest {
+    private final PageId pid = new SimplePageId(0, 0);
+    private final int pageSize = 512;
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+
+    private Tuple makeTuple(int i, String s) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s));
+        return t;
+    }
+
+    private int fill(TuplePage page) {
+        int count = 0;
+        while (page.hasRoomFor(makeTuple(count, "abc"))) {
+            page.insertTuple(makeTuple(count, "abc"));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Short strings take only the bytes they need, so many more tuples fit than with the
+     * fixed layout, which reserves the maximum length for every string.
+     */
+    @Test
+    public void holdsMoreShortStrings() {
+        int fixed = fill(new SlottedPage(pid, td, pageSize));
+        int variable = fill(new VariableSlottedPage(pid, td, pageSize));
+        assertEquals(3, fixed);
+        assertEquals((pageSize - VariableSlottedPage.HEADER_SIZE) / (VariableSlottedPage.ENTRY_SIZE + 4 + 2 + 3),
+                variable);
+    }
+
+    @Test
+    public void roundTripThroughBytes() {
+        VariableSlottedPage page = new VariableSlottedPage(pid, td, pageSize);
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 10; i++) {
+            Tuple t = makeTuple(i, "s" + i + "xxxxxxxxxx".substring(i));
+            tuples.add(t);
+            page.insertTuple(t);
+        }
+        VariableSlottedPage copy = new VariableSlottedPage(pid, td, pageSize, page.getPageBuffer());
+        assertEquals(page.getNumEmptySlots(), copy.getNumEmptySlots());
+        assertEquals(page.getFreeSpace(), copy.getFreeSpace());
+        for (int i = 0; i < 10; i++) {
+            assertEqualTuples(tuples.get(i), copy.getTuple(i));
+            assertEquals(i, copy.getTuple(i).getRecordId().tupleno());
+        }
+    }
+
+    /**
+     * Deleting a tuple gives its bytes back at once and leaves the other tuples, and their
+     * slot numbers, intact.
+     */
+    @Test
+    public void deleteCompacts() {
+        VariableSlottedPage page = new VariableSlottedPage(pid, td, pageSize);
+        int free = page.getFreeSpace();
+        Tuple[] tuples = new Tuple[5];
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i] = makeTuple(i, "tuple number " + i);
+            page.insertTuple(tuples[i]);
+        }
+        page.deleteTuple(tuples[1]);
+        page.deleteTuple(tuples[3]);
+        assertTrue(page.isSlotEmpty(1));
+        assertTrue(page.isSlotEmpty(3));
+
+        VariableSlottedPage copy = new VariableSlottedPage(pid, td, pageSize, page.getPageBuffer());
+        for (int i : new int[]{0, 2, 4}) {
+            assertEqualTuples(tuples[i], copy.getTuple(i));
+        }
+
+        // a longer tuple goes in the first empty slot, and deleting everything frees the page
+        Tuple longer = makeTuple(9, "a much longer string than before");
+        copy.insertTuple(longer);
+        assertEquals(1, longer.getRecordId().tupleno());
+        for (int i : new int[]{0, 2, 4}) {
+            copy.deleteTuple(copy.getTuple(i));
+        }
+        copy.deleteTuple(longer);
+        assertEquals(free, copy.getFreeSpace());
+        assertEquals(copy.getNumSlots(), copy.getNumEmptySlots());
+    }
+
+    @Test
+    public void filteredIterator() {
+        VariableSlottedPage page = new VariableSlottedPage(pid, td, pageSize);
+        for (int i = 0; i < 20; i++) {
+            page.insertTuple(makeTuple(i, i % 2 == 0 ? "even" : "odd"));
+        }
+        Iterator<Tuple> it = page.iterator(0, Op.GREATER_THAN_OR_EQ, new IntField(15));
+        int count = 0;
+        while (it.hasNext()) {
+            assertTrue(((IntField) it.next().getField(0)).getValue() >= 15);
+            count++;
+        }
+        assertEquals(5, count);
+
+        it = page.iterator(1, Op.EQUALS, new StringField("odd"));
+        count = 0;
+        while (it.hasNext()) {
+            assertEquals("odd", it.next().getField(1).toString());
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test(expected = PageException.class)
+    public void insertWithoutRoom() {
+        VariableSlottedPage page = new VariableSlottedPage(pid, td, pageSize);
+        fill(page);
+        page.insertTuple(makeTuple(0, "abc"));
+    }
+}
@@ -0,0 +1,117 @@
+package colgatedb.tuple;
+
+import colgatedb.operators.JoinPredicate;
+import colgatedb.operators.Predicate;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+public class StringDictionaryTest {
+
+    @Test
+    public void encodeAndDecode() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(0, dictionary.encode("Drama"));
+        assertEquals(1, dictionary.encode("Comedy"));
+        assertEquals(0, dictionary.encode("Drama"));
+        assertEquals(2, dictionary.size());
+        assertEquals("Comedy", dictionary.decode(1));
+        assertEquals(1, dictionary.lookup("Comedy"));
+        assertEquals(-1, dictionary.lookup("Horror"));
+        assertEquals(2, dictionary.size());
+    }
+
+    /**
+     * A dictionary kept in a file gives the same codes when it is opened again.
+     */
+    @Test
+    public void reopen() throws IOException {
+        File file = File.createTempFile("dictionary", ".dict");
+        file.deleteOnExit();
+        StringDictionary dictionary = new StringDictionary(file);
+        String[] genres = {"Drama", "Comedy", "", "Sci-Fi"};
+        for (String genre : genres) {
+            dictionary.encode(genre);
+        }
+        dictionary.close();
+
+        dictionary = new StringDictionary(file);
+        assertEquals(genres.length, dictionary.size());
+        for (int i = 0; i < genres.length; i++) {
+            assertEquals(i, dictionary.lookup(genres[i]));
+            assertEquals(genres[i], dictionary.decode(i));
+        }
+        assertEquals(genres.length, dictionary.encode("Western"));
+        dictionary.close();
+    }
+
+    /**
+     * Strings from the same dictionary compare equal by code; otherwise they compare as strings.
+     */
+    @Test
+    public void dictStringFields() {
+        StringDictionary dictionary = new StringDictionary();
+        DictStringField drama = new DictStringField(dictionary, dictionary.encode("Drama"));
+        DictStringField drama2 = new DictStringField(dictionary, dictionary.encode("Drama"));
+        DictStringField comedy = new DictStringField(dictionary, dictionary.encode("Comedy"));
+        assertTrue(drama.compare(Op.EQUALS, drama2));
+        assertTrue(drama.compare(Op.NOT_EQUALS, comedy));
+        assertTrue(drama.compare(Op.GREATER_THAN, comedy));   // ordered as strings, not codes
+        assertEquals(drama, drama2);
+        assertEquals(new StringField("Drama"), drama);
+        assertEquals(new StringField("Drama").hashCode(), drama.hashCode());
+
+        StringDictionary other = new StringDictionary();
+        other.encode("Comedy");
+        DictStringField otherDrama = new DictStringField(other, other.encode("Drama"));
+        assertTrue(drama.compare(Op.EQUALS, otherDrama));
+        assertEquals(drama, otherDrama);
+    }
+
+    @Test
+    public void predicatesOnCodes() {
+        StringDictionary dictionary = new StringDictionary();
+        TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+        Tuple t1 = new Tuple(td);
+        t1.setField(0, new IntField(1));
+        t1.setField(1, new DictStringField(dictionary, dictionary.encode("Drama")));
+        Tuple t2 = new Tuple(td);
+        t2.setField(0, new IntField(2));
+        t2.setField(1, new DictStringField(dictionary, dictionary.encode("Comedy")));
+
+        Predicate isHorror = new Predicate(1, Op.EQUALS, new StringField("Horror"));
+        assertFalse(isHorror.filter(t1));
+        Predicate isDrama = new Predicate(1, Op.EQUALS, new StringField("Drama"));
+        assertTrue(isDrama.filter(t1));
+        assertFalse(isDrama.filter(t2));
+        assertTrue(new Predicate(1, Op.NOT_EQUALS, new StringField("Drama")).filter(t2));
+
+        // a string added after a predicate found it missing is still matched
+        Tuple t3 = new Tuple(td);
+        t3.setField(0, new IntField(3));
+        t3.setField(1, new DictStringField(dictionary, dictionary.encode("Horror")));
+        assertTrue(isHorror.filter(t3));
+
+        JoinPredicate sameGenre = new JoinPredicate(1, Op.EQUALS, 1);
+        assertTrue(sameGenre.filter(t1, t1));
+        assertFalse(sameGenre.filter(t1, t2));
+    }
+}